@@ -0,0 +1,286 @@
+package hello.itemservice.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@code @Entity} 클래스마다 리플렉션 없이 동작하는 JDBC 매핑 코드를 컴파일 시점에 생성한다.
+ * : Querydsl 의 Q클래스 생성(querydsl-apt)과 같은 방식이다. build.gradle 의 annotationProcessor 로 등록한다.
+ *
+ * 생성되는 코드 (엔티티와 같은 패키지)
+ * : {Entity}RowMapper - ResultSet 을 컬럼 이름이 아닌 인덱스로 읽는다. select 절은 COLUMNS 상수의 순서를 따라야 한다.
+ * : {Entity}SqlParameterSource - 파라미터 이름을 switch 로 getter 에 연결한다. (BeanPropertySqlParameterSource 대체)
+ *
+ * 매핑 규칙
+ * : static, transient, @Transient 필드는 제외한다.
+ * : 컬럼 이름은 @Column(name) 이 있으면 그 값을, 없으면 필드 이름을 snake_case 로 바꾼 값을 사용한다.
+ * : getter, setter 는 자바빈 규약(롬복 @Data 포함)을 따른다고 가정한다.
+ */
+@SupportedAnnotationTypes("javax.persistence.Entity")
+public class EntityMapperProcessor extends AbstractProcessor {
+
+    private static final String GENERATED = "@javax.annotation.processing.Generated(\"" + EntityMapperProcessor.class.getName() + "\")";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS) {
+                    generate((TypeElement) element);
+                }
+            }
+        }
+        return false;//Querydsl 등 다른 프로세서도 @Entity 를 처리할 수 있도록 선점하지 않는다.
+    }
+
+    private void generate(TypeElement entity) {
+        List<Property> properties = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(entity.getEnclosedElements())) {
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)
+                    || annotation(field, "javax.persistence.Transient") != null) {
+                continue;
+            }
+            properties.add(new Property(field.getSimpleName().toString(), columnName(field), field.asType().toString()));
+        }
+
+        String packageName = ((PackageElement) processingEnv.getElementUtils().getPackageOf(entity)).getQualifiedName().toString();
+        String entityName = entity.getSimpleName().toString();
+        try {
+            write(packageName, entityName + "RowMapper", rowMapper(packageName, entityName, properties));
+            write(packageName, entityName + "SqlParameterSource", parameterSource(packageName, entityName, properties));
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "failed to generate mapper: " + e.getMessage(), entity);
+        }
+    }
+
+    private String rowMapper(String packageName, String entityName, List<Property> properties) {
+        StringBuilder columns = new StringBuilder();
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < properties.size(); i++) {
+            Property property = properties.get(i);
+            columns.append(i == 0 ? "" : ", ").append(property.column);
+            body.append(property.readStatement(i + 1));
+        }
+
+        return "package " + packageName + ";\n\n" +
+                "import org.springframework.jdbc.core.RowMapper;\n\n" +
+                "import java.sql.ResultSet;\n" +
+                "import java.sql.SQLException;\n\n" +
+                "/**\n" +
+                " * {@link " + entityName + "} 인덱스 기반 RowMapper (컴파일 시점 생성 코드, 직접 수정하지 않는다)\n" +
+                " * : select 절의 컬럼 순서는 {@link #COLUMNS} 와 같아야 한다.\n" +
+                " */\n" +
+                GENERATED + "\n" +
+                "public final class " + entityName + "RowMapper implements RowMapper<" + entityName + "> {\n\n" +
+                "    public static final String COLUMNS = \"" + columns + "\";\n\n" +
+                "    public static final " + entityName + "RowMapper INSTANCE = new " + entityName + "RowMapper();\n\n" +
+                "    @Override\n" +
+                "    public " + entityName + " mapRow(ResultSet rs, int rowNum) throws SQLException {\n" +
+                "        " + entityName + " entity = new " + entityName + "();\n" +
+                body +
+                "        return entity;\n" +
+                "    }\n" +
+                "}\n";
+    }
+
+    private String parameterSource(String packageName, String entityName, List<Property> properties) {
+        StringBuilder labels = new StringBuilder();
+        StringBuilder cases = new StringBuilder();
+        StringBuilder names = new StringBuilder();
+        for (int i = 0; i < properties.size(); i++) {
+            Property property = properties.get(i);
+            String label = property.caseLabels();
+            labels.append(label);
+            cases.append(label).append("                return entity.").append(property.getter()).append("();\n");
+            names.append(i == 0 ? "" : ", ").append('"').append(property.name).append('"');
+        }
+
+        return "package " + packageName + ";\n\n" +
+                "import org.springframework.jdbc.core.namedparam.AbstractSqlParameterSource;\n\n" +
+                "/**\n" +
+                " * {@link " + entityName + "} SqlParameterSource (컴파일 시점 생성 코드, 직접 수정하지 않는다)\n" +
+                " * : 프로퍼티 이름(camelCase)과 컬럼 이름(snake_case) 모두 getter 로 연결한다. (SimpleJdbcInsert 는 컬럼 이름으로 조회한다)\n" +
+                " */\n" +
+                GENERATED + "\n" +
+                "public final class " + entityName + "SqlParameterSource extends AbstractSqlParameterSource {\n\n" +
+                "    private static final String[] PARAMETER_NAMES = {" + names + "};\n\n" +
+                "    private final " + entityName + " entity;\n\n" +
+                "    public " + entityName + "SqlParameterSource(" + entityName + " entity) {\n" +
+                "        this.entity = entity;\n" +
+                "    }\n\n" +
+                "    @Override\n" +
+                "    public boolean hasValue(String paramName) {\n" +
+                "        switch (paramName) {\n" +
+                labels +
+                "                return true;\n" +
+                "            default:\n" +
+                "                return false;\n" +
+                "        }\n" +
+                "    }\n\n" +
+                "    @Override\n" +
+                "    public Object getValue(String paramName) {\n" +
+                "        switch (paramName) {\n" +
+                cases +
+                "            default:\n" +
+                "                throw new IllegalArgumentException(\"No value registered for key '\" + paramName + \"'\");\n" +
+                "        }\n" +
+                "    }\n\n" +
+                "    @Override\n" +
+                "    public String[] getParameterNames() {\n" +
+                "        return PARAMETER_NAMES.clone();\n" +
+                "    }\n" +
+                "}\n";
+    }
+
+    private void write(String packageName, String className, String source) throws IOException {
+        String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName).openWriter()) {
+            writer.write(source);
+        }
+    }
+
+    private String columnName(VariableElement field) {
+        AnnotationMirror column = annotation(field, "javax.persistence.Column");
+        if (column != null) {
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : column.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("name")) {
+                    String name = entry.getValue().getValue().toString();
+                    if (!name.isEmpty()) {
+                        return name;
+                    }
+                }
+            }
+        }
+        return toSnakeCase(field.getSimpleName().toString());
+    }
+
+    private static AnnotationMirror annotation(Element element, String annotationType) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (mirror.getAnnotationType().toString().equals(annotationType)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    static String toSnakeCase(String name) {
+        StringBuilder result = new StringBuilder();
+        for (char c : name.toCharArray()) {
+            if (Character.isUpperCase(c)) {
+                result.append('_').append(Character.toLowerCase(c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    private static final class Property {
+        final String name;
+        final String column;
+        final String type;
+
+        Property(String name, String column, String type) {
+            this.name = name;
+            this.column = column;
+            this.type = type;
+        }
+
+        String caseLabels() {
+            String label = "            case \"" + name + "\":\n";
+            return column.equals(name) ? label : label + "            case \"" + column + "\":\n";
+        }
+
+        String getter() {
+            return (type.equals("boolean") ? "is" : "get") + capitalize(name);
+        }
+
+        String setter() {
+            return "set" + capitalize(name);
+        }
+
+        /**
+         * 타입별 ResultSet getter. 래퍼 타입은 primitive 로 읽은 뒤 wasNull 로 null 을 복원한다.
+         */
+        String readStatement(int index) {
+            String primitive = primitiveOf(type);
+            if (type.equals("java.lang.String")) {
+                return "        entity." + setter() + "(rs.getString(" + index + "));\n";
+            }
+            if (isPrimitive(type)) {
+                return "        entity." + setter() + "(rs.get" + capitalize(type) + "(" + index + "));\n";
+            }
+            if (primitive != null) {
+                String value = name + "Value";
+                return "        " + primitive + " " + value + " = rs.get" + capitalize(primitive) + "(" + index + ");\n" +
+                        "        entity." + setter() + "(rs.wasNull() ? null : " + value + ");\n";
+            }
+            return "        entity." + setter() + "(rs.getObject(" + index + ", " + type + ".class));\n";
+        }
+
+        private static boolean isPrimitive(String type) {
+            switch (type) {
+                case "long":
+                case "int":
+                case "short":
+                case "byte":
+                case "double":
+                case "float":
+                case "boolean":
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private static String primitiveOf(String type) {
+            switch (type) {
+                case "java.lang.Long":
+                    return "long";
+                case "java.lang.Integer":
+                    return "int";
+                case "java.lang.Short":
+                    return "short";
+                case "java.lang.Byte":
+                    return "byte";
+                case "java.lang.Double":
+                    return "double";
+                case "java.lang.Float":
+                    return "float";
+                case "java.lang.Boolean":
+                    return "boolean";
+                default:
+                    return null;
+            }
+        }
+
+        private static String capitalize(String value) {
+            return Character.toUpperCase(value.charAt(0)) + value.substring(1);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+drop table if exists item CASCADE;
+drop sequence if exists item_seq;
+/*JPA 배치 insert 모드(batch 프로필)용 시퀀스, increment by 는 orm-sequence.xml 의 allocation-size 와 같아야 한다*/
+create sequence item_seq start with 1 increment by 50;
+create table item
+(
+    id        bigint default next value for item_seq, /*JdbcTemplate, MyBatis 처럼 id 없이 insert 하면 시퀀스에서 하나를 받는다*/
+    item_name varchar(10),
+    price     integer,
+    quantity  integer,
+    primary key (id)
+);
+
+/*itemName 부분 일치 검색용 n-gram 역색인 (JdbcTemplateItemRepositoryV3 + ItemNgramTable 사용시)*/
+drop table if exists item_ngram CASCADE;
+create table item_ngram
+(
+    gram    varchar(2),
+    item_id bigint,
+    primary key (gram, item_id)
+);
+create index item_ngram_item_id on item_ngram (item_id);
+
+/*
+SEQUENCE(pooled) 와 다른 리포지토리를 함께 사용하는 경우
+: 하이버네이트는 시퀀스 값 v 를 받으면 (v - 49) ~ v 범위를 자신이 쓸 id 로 예약한다.
+: id 없이 insert 하는 리포지토리는 default 로 시퀀스 값 하나를 그대로 쓴다. 이 값은 다른 누구의 예약 범위에도 속하지 않으므로 id 가 겹치지 않는다.
+*/
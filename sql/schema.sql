@@ -8,6 +8,25 @@ create table item
     primary key (id)
 );
 
+/*itemName 부분 일치 검색용 n-gram 역색인 (JdbcTemplateItemRepositoryV3 + ItemNgramTable 사용시)*/
+drop table if exists item_ngram CASCADE;
+create table item_ngram
+(
+    gram    varchar(2),
+    item_id bigint,
+    primary key (gram, item_id)
+);
+create index item_ngram_item_id on item_ngram (item_id);
+
+/*id 블록 예약 테이블 (HiLoItemIdAllocator 사용시), 행이 없으면 발급기가 max(id) 다음 값으로 만든다*/
+drop table if exists id_block CASCADE;
+create table id_block
+(
+    name     varchar(30),
+    next_val bigint not null,
+    primary key (name)
+);
+
 /*
 테이블의 기본 키를 선택하는 전략은 크게 2가지가 있다.
 
@@ -1,5 +1,6 @@
 package hello.itemservice;
 
+import hello.itemservice.config.ItemDecoratorConfig;
 import hello.itemservice.config.JdbcTemplateV2Config;
 import hello.itemservice.config.QueryDslConfig;
 import hello.itemservice.config.SpringDataJpaConfig;
@@ -31,14 +32,19 @@ import org.springframework.context.annotation.Profile;
  * : https://docs.spring.io/spring-boot/docs/current/reference/html/features.html#features.profiles
  */
 //@Import(MemoryConfig.class)
+//@Import(ColumnarConfig.class)
+//@Import(DurableMemoryConfig.class)
 //@Import(JdbcTemplateV1Config.class)
 //@Import(JdbcTemplateV2Config.class)
 //@Import(JdbcTemplateV3Config.class)
+//@Import(WriteBehindConfig.class)
+//@Import(GroupCommitConfig.class)
+//@Import(BatchLoaderConfig.class)
 //@Import(MyBatisConfig.class)
 //@Import(JpaConfig.class)
 //@Import(SpringDataJpaConfig.class)
 //@Import(QueryDslConfig.class)
-@Import(V2Config.class)
+@Import({V2Config.class, ItemDecoratorConfig.class})//ItemDecoratorConfig 는 위의 어떤 Config 와도 함께 import 한다. (캐시 등 ItemService 데코레이터, 기본 비활성)
 @Slf4j
 @SpringBootApplication(scanBasePackages = "hello.itemservice.web")
 public class ItemServiceApplication {
@@ -0,0 +1,46 @@
+package hello.itemservice.config;
+
+import hello.itemservice.repository.ItemIdBatches;
+import hello.itemservice.repository.batch.BatchingItemRepository;
+import hello.itemservice.repository.jdbctemplate.JdbcTemplateItemRepositoryV3;
+import hello.itemservice.service.ItemService;
+import hello.itemservice.service.ItemServiceV1;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * JdbcTemplateItemRepositoryV3 + findById 묶음 조회 Config
+ * : 동시에 들어온 findById 를 window 단위로 모아서 in 목록 조회 한 번으로 가져온다. ({@link BatchingItemRepository})
+ * : itemservice.batch-loader.window (기본 2ms), itemservice.batch-loader.max-batch-size (기본 {@link ItemIdBatches#MAX_BATCH_SIZE})
+ * : window 를 0 으로 두면 자동으로 묶지 않는다. BatchingItemRepository 의 load, dispatch 를 직접 호출한다.
+ * : 트랜잭션 안의 findById 는 묶지 않고 바로 조회한다. (로더 스레드는 호출자의 트랜잭션에 참여하지 않는다)
+ * : BatchingItemRepository 는 Closeable 이므로 컨테이너 종료 시 close() 가 호출되어 모인 조회를 마저 처리한다.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class BatchLoaderConfig {
+
+    private final DataSource dataSource;
+
+    @Value("${itemservice.batch-loader.window:2ms}")
+    private Duration window;
+
+    @Value("${itemservice.batch-loader.max-batch-size:" + ItemIdBatches.MAX_BATCH_SIZE + "}")
+    private int maxBatchSize;
+
+    @Bean
+    public ItemService itemService() {
+        return new ItemServiceV1(itemRepository());
+    }
+
+    @Bean
+    public BatchingItemRepository itemRepository() {
+        return new BatchingItemRepository(new JdbcTemplateItemRepositoryV3(dataSource), window, maxBatchSize);
+    }
+
+}
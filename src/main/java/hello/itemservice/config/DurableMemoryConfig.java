@@ -0,0 +1,47 @@
+package hello.itemservice.config;
+
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.memory.ItemJournal;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import hello.itemservice.service.ItemService;
+import hello.itemservice.service.ItemServiceV1;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * MemoryItemRepository + write-ahead log/snapshot Config
+ * : 애플리케이션을 재시작해도 journal-dir 의 스냅샷 + 로그로 상품을 복구한다.
+ * : ItemJournal 은 Closeable 이므로 컨테이너 종료 시 close() 가 호출되어 남은 로그를 fsync 한다.
+ */
+@Configuration
+public class DurableMemoryConfig {
+
+    @Value("${itemservice.memory.journal-dir:./item-journal}")
+    private Path journalDir;
+
+    @Value("${itemservice.memory.sync-interval:10ms}")
+    private Duration syncInterval;
+
+    @Value("${itemservice.memory.snapshot-interval:5m}")
+    private Duration snapshotInterval;
+
+    @Bean
+    public ItemService itemService() {
+        return new ItemServiceV1(itemRepository());
+    }
+
+    @Bean
+    public ItemRepository itemRepository() {
+        return new MemoryItemRepository(itemJournal());
+    }
+
+    @Bean
+    public ItemJournal itemJournal() {
+        return new ItemJournal(journalDir, syncInterval, snapshotInterval);
+    }
+
+}
@@ -0,0 +1,49 @@
+package hello.itemservice.config;
+
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.jdbctemplate.JdbcTemplateItemRepositoryV3;
+import hello.itemservice.service.GroupCommitItemService;
+import hello.itemservice.service.ItemServiceV1;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * JdbcTemplateItemRepositoryV3 + 그룹 커밋 Config
+ * : 상품 등록(save)은 큐에 모아 최대 max-batch-size 건씩 한 트랜잭션으로 배치 insert 한다.
+ * : save 는 커밋을 최대 timeout 동안 기다린다.
+ * : GroupCommitItemService 는 Closeable 이므로 컨테이너 종료 시 close() 가 호출되어 큐에 남은 상품을 저장한다.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class GroupCommitConfig {
+
+    private final DataSource dataSource;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${itemservice.group-commit.capacity:4096}")
+    private int capacity;
+
+    @Value("${itemservice.group-commit.max-batch-size:256}")
+    private int maxBatchSize;
+
+    @Value("${itemservice.group-commit.timeout:10s}")
+    private Duration timeout;
+
+    @Bean
+    public GroupCommitItemService itemService() {
+        return new GroupCommitItemService(new ItemServiceV1(itemRepository()), itemRepository(),
+                transactionManager, capacity, maxBatchSize, timeout);
+    }
+
+    @Bean
+    public ItemRepository itemRepository() {
+        return new JdbcTemplateItemRepositoryV3(dataSource);
+    }
+
+}
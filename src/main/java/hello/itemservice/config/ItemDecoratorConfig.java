@@ -0,0 +1,88 @@
+package hello.itemservice.config;
+
+import hello.itemservice.repository.cache.ItemCache;
+import hello.itemservice.repository.cache.ItemSearchCache;
+import hello.itemservice.service.CachingItemService;
+import hello.itemservice.service.ItemService;
+import hello.itemservice.service.SearchCachingItemService;
+import hello.itemservice.service.SingleFlightItemService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * ItemService 데코레이터 Config
+ * : 어떤 Config(V2Config, JpaConfig, MyBatisConfig ...)를 import 하든 함께 import 한다. 저장소나 Config 를 바꾸지 않고
+ *   각 Config 가 등록한 itemService 빈을 감싼 decoratedItemService 빈을 @Primary 로 추가 등록한다.
+ * : ItemService 로 주입받는 쪽(ItemController 등)은 감싼 빈을 받는다.
+ * : 원래 itemService 빈은 그대로 남는다. ItemServiceV2 처럼 구체 타입으로 주입받을 수 있고,
+ *   GroupCommitItemService 처럼 Closeable 인 빈은 컨테이너 종료 시 close() 가 그대로 호출된다.
+ *   (BeanPostProcessor 로 빈 자체를 바꾸면 빈의 타입이 ItemService 로 바뀌고 close() 가 호출되지 않는다)
+ * : 기본은 모두 비활성이다. application.properties 에서 켠다. 하나도 켜지 않으면 decoratedItemService 는 등록되지 않는다.
+ *
+ * findById 캐시 ({@link CachingItemService})
+ * : itemservice.cache.find-by-id.enabled=true
+ * : itemservice.cache.find-by-id.max-size (기본 10000), itemservice.cache.find-by-id.ttl (기본 5m)
+ * : 적중/미스/내보냄 횟수는 {@link ItemCache} 빈에서 조회한다.
+ *
+ * 검색 결과 캐시 ({@link SearchCachingItemService})
+ * : itemservice.cache.search.enabled=true
+ * : itemservice.cache.search.max-size (결과 크기로 계산한 메모리 한도, 기본 16MB)
+ * : 무효화는 애플리케이션(JVM) 하나 안에서만 동작한다. 서버를 여러 대 띄우면 다른 서버의 쓰기는 반영되지 않는다.
+ *
+ * 동시 조회 합치기 ({@link SingleFlightItemService})
+ * : itemservice.single-flight.enabled=true
+ * : itemservice.single-flight.timeout (실행 중인 같은 조회를 기다리는 최대 시간, 기본 3s)
+ * : 캐시보다 안쪽에 둔다. 캐시를 켜면 같은 키의 동시 캐시 미스가 저장소 조회 한 번으로 합쳐진다.
+ */
+@Slf4j
+@Configuration
+public class ItemDecoratorConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "itemservice.cache.find-by-id.enabled", havingValue = "true")
+    public ItemCache itemCache(@Value("${itemservice.cache.find-by-id.max-size:10000}") int maxSize,
+                               @Value("${itemservice.cache.find-by-id.ttl:5m}") Duration ttl) {
+        return new ItemCache(maxSize, ttl);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "itemservice.cache.search.enabled", havingValue = "true")
+    public ItemSearchCache itemSearchCache(@Value("${itemservice.cache.search.max-size:16MB}") DataSize maxSize) {
+        return new ItemSearchCache(maxSize.toBytes());
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnExpression("${itemservice.cache.find-by-id.enabled:false} or ${itemservice.cache.search.enabled:false} or ${itemservice.single-flight.enabled:false}")
+    public ItemService decoratedItemService(@Qualifier("itemService") ItemService itemService,
+                                            ObjectProvider<ItemCache> itemCache,
+                                            ObjectProvider<ItemSearchCache> itemSearchCache,
+                                            @Value("${itemservice.single-flight.enabled:false}") boolean singleFlight,
+                                            @Value("${itemservice.single-flight.timeout:3s}") Duration singleFlightTimeout) {
+        if (singleFlight) {
+            log.info("single flight enabled");
+            itemService = new SingleFlightItemService(itemService, singleFlightTimeout);
+        }
+        ItemCache cache = itemCache.getIfAvailable();
+        if (cache != null) {
+            log.info("findById cache enabled");
+            itemService = new CachingItemService(itemService, cache);
+        }
+        ItemSearchCache searchCache = itemSearchCache.getIfAvailable();
+        if (searchCache != null) {
+            log.info("search cache enabled");
+            itemService = new SearchCachingItemService(itemService, searchCache);
+        }
+        return itemService;
+    }
+}
@@ -13,6 +13,11 @@ import javax.sql.DataSource;
 
 /**
  * JdbcRepository Config
+ *
+ * item_ngram 사이드 테이블 (주석 처리된 ItemNgramTable 사용)
+ * : 켜는 시점에 item_ngram 행이 없는 기존 상품을 채운다. 상품이 많으면 애플리케이션 시작이 그만큼 느려진다.
+ * : item 테이블의 모든 쓰기가 이 저장소를 거쳐야 한다. 다른 저장소나 직접 SQL 로 이름을 바꾸면 item_ngram 이 어긋나고,
+ *   시작 시점의 backfill 로도 고쳐지지 않는다. (item_ngram 을 비우고 다시 시작하면 전부 새로 채운다)
  */
 @Configuration
 @RequiredArgsConstructor
@@ -28,6 +33,8 @@ public class JdbcTemplateV3Config {
     @Bean
     public ItemRepository itemRepository() {
         return new JdbcTemplateItemRepositoryV3(dataSource);
+//        return new JdbcTemplateItemRepositoryV3(dataSource, new ItemNgramTable(dataSource));//item_ngram 사이드 테이블 사용
+//        return new JdbcTemplateItemRepositoryV3(dataSource, null, new HiLoItemIdAllocator(dataSource, "item", 1000));//id 블록 예약(hi/lo) 발급기 사용
     }
 
 }
@@ -2,8 +2,10 @@ package hello.itemservice.config;
 
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.memory.MemoryItemRepository;
+import hello.itemservice.repository.memory.VersionedMemoryItemRepository;
 import hello.itemservice.service.ItemService;
 import hello.itemservice.service.ItemServiceV1;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -11,10 +13,16 @@ import org.springframework.context.annotation.Configuration;
  * 서비스와 리포지토리는 구현체를 편리하게 변경하기 위해, 이렇게 수동으로 빈을 등록한다.
  *
  * 컨트롤러는 컴포넌트 스캔을 사용한다.
+ *
+ * itemservice.memory.versioned=true
+ * : findAll 을 한 시점의 스냅샷으로 조회하는 {@link VersionedMemoryItemRepository} 를 사용한다. (기본값 false)
  */
 @Configuration
 public class MemoryConfig {
 
+    @Value("${itemservice.memory.versioned:false}")
+    private boolean versioned;
+
     @Bean
     public ItemService itemService() {
         return new ItemServiceV1(itemRepository());
@@ -22,7 +30,7 @@ public class MemoryConfig {
 
     @Bean
     public ItemRepository itemRepository() {
-        return new MemoryItemRepository();
+        return versioned ? new VersionedMemoryItemRepository() : new MemoryItemRepository();
     }
 
 }
@@ -6,6 +6,7 @@ import hello.itemservice.repository.mybatis.MyBatisItemRepository;
 import hello.itemservice.service.ItemService;
 import hello.itemservice.service.ItemServiceV1;
 import lombok.RequiredArgsConstructor;
+import org.mybatis.spring.SqlSessionTemplate;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -19,6 +20,7 @@ import javax.sql.DataSource;
 public class MyBatisConfig {
 
     private final ItemMapper itemMapper;
+    private final SqlSessionTemplate sqlSessionTemplate;
 
     @Bean
     public ItemService itemService() {
@@ -27,7 +29,7 @@ public class MyBatisConfig {
 
     @Bean
     public ItemRepository itemRepository() {
-        return new MyBatisItemRepository(itemMapper);
+        return new MyBatisItemRepository(itemMapper, sqlSessionTemplate);
     }
 
 }
@@ -0,0 +1,40 @@
+package hello.itemservice.config;
+
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.jdbctemplate.JdbcTemplateItemRepositoryV3;
+import hello.itemservice.repository.writebehind.WriteBehindItemRepository;
+import hello.itemservice.service.ItemService;
+import hello.itemservice.service.ItemServiceV1;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * JdbcTemplateItemRepositoryV3 + write-behind 수량 반영 Config
+ * : 수량 변경(adjustQuantity, reserve)은 메모리에 모았다가 flush-interval 마다 상품별 update 한 번으로 반영한다.
+ * : WriteBehindItemRepository 는 Closeable 이므로 컨테이너 종료 시 close() 가 호출되어 남은 변화량을 반영한다.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class WriteBehindConfig {
+
+    private final DataSource dataSource;
+
+    @Value("${itemservice.write-behind.flush-interval:100ms}")
+    private Duration flushInterval;
+
+    @Bean
+    public ItemService itemService() {
+        return new ItemServiceV1(itemRepository());
+    }
+
+    @Bean
+    public ItemRepository itemRepository() {
+        return new WriteBehindItemRepository(new JdbcTemplateItemRepositoryV3(dataSource), flushInterval);
+    }
+
+}
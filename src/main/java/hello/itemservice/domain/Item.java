@@ -1,15 +1,34 @@
 package hello.itemservice.domain;
 
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 
 import javax.persistence.*;
 
+/**
+ * {@link DynamicUpdate}
+ * : update SQL 에 실제로 값이 바뀐 컬럼만 포함한다. (기본은 모든 컬럼을 항상 update)
+ * : 빌드 시점 바이트코드 향상(build.gradle 의 hibernate.enhance, enableDirtyTracking)과 함께 사용한다.
+ *   setter 가 바뀐 필드를 기록해 두므로, flush 시점에 스냅샷 비교 없이 바뀐 컬럼을 알 수 있다.
+ * : 바뀐 컬럼 조합마다 SQL 이 달라지므로, 여러 건을 수정할 때 같은 조합끼리만 JDBC 배치로 묶인다.
+ *
+ * {@link Cacheable}, {@link Cache}
+ * : 2차 캐시 대상 엔티티. 2차 캐시는 cache 프로필(application-cache.properties)에서만 켜진다.
+ * : 트랜잭션이 달라도 em.find 는 영역(region) hello.itemservice.domain.Item 에서 먼저 찾는다. 영역의 크기, 만료는 ehcache.xml 에서 정한다.
+ * : READ_WRITE - 수정 중인 항목은 잠그고(soft lock) 커밋 후 갱신하므로, 다른 트랜잭션이 커밋 전 값을 읽지 않는다.
+ * : 벌크 update(update, adjustQuantity)는 어떤 행이 바뀌었는지 하이버네이트가 모르므로 영역 전체를 비운다.
+ */
 @Data
 @Entity
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Item {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)//pk 생성값을 데이터베이스에서 생성하는 IDENTITY 방식을 사용한다. ex. MySQL Auto increment
+    @GeneratedValue(strategy = GenerationType.IDENTITY)//pk 생성값을 데이터베이스에서 생성하는 IDENTITY 방식을 사용한다. ex. MySQL Auto increment (batch 프로필에서는 META-INF/orm-sequence.xml 이 SEQUENCE 로 덮어쓴다)
     private Long id;
 
     @Column(name = "item_name", length = 10)//name = "item_name" 은 jpa 에서 자동으로 camelcase 로 변환해 준다. 즉, 명시하지 않아도 된다.
@@ -25,4 +44,13 @@ public class Item {
         this.price = price;
         this.quantity = quantity;
     }
+
+    /**
+     * 같은 값을 가진 새 인스턴스 (캐시처럼 인스턴스를 보관하는 쪽이 호출자와 인스턴스를 공유하지 않도록)
+     */
+    public Item copy() {
+        Item copy = new Item(getItemName(), getPrice(), getQuantity());
+        copy.setId(getId());
+        return copy;
+    }
 }
@@ -0,0 +1,114 @@
+package hello.itemservice.repository;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 블록 단위(hi/lo) id 발급기
+ * : id_block 테이블의 카운터를 blockSize 만큼 올려서 [next_val - blockSize, next_val) 구간을 예약하고, 그 안의 id 는 메모리에서 발급한다.
+ *   DB 왕복은 blockSize 건마다 한 번이다.
+ * : 예약은 카운터 행의 update (행 잠금) 로 이루어지므로 여러 노드가 동시에 예약해도 구간이 겹치지 않는다.
+ * : 예약은 호출자의 트랜잭션과 별개의 커넥션에서 바로 커밋한다. 호출자의 트랜잭션이 롤백되어도 예약한 구간은 돌려주지 않는다.
+ *   (다른 노드가 이미 다음 구간을 받았을 수 있으므로) 따라서 id 에 빈 구간이 생길 수 있다.
+ * : 카운터 행이 없으면 대상 테이블의 max(id) 다음 값부터 시작하는 행을 만든다. (기존 데이터가 있는 DB 에 적용할 때)
+ *
+ * create table id_block (name varchar(30) primary key, next_val bigint not null);
+ */
+@Slf4j
+public class HiLoItemIdAllocator implements ItemIdAllocator {
+
+    private final DataSource dataSource;
+    private final String name;
+    private final int blockSize;
+
+    private long next;
+    private long limit;//next == limit 이면 새 블록을 예약한다.
+
+    /**
+     * @param name 카운터 이름이자 id 를 발급할 테이블 이름
+     */
+    public HiLoItemIdAllocator(DataSource dataSource, String name, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize must be positive: " + blockSize);
+        }
+        this.dataSource = dataSource;
+        this.name = name;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public synchronized long nextId() {
+        if (next == limit) {
+            limit = reserveBlock();
+            next = limit - blockSize;
+        }
+        return next++;
+    }
+
+    /**
+     * 블록 하나를 예약하고 블록의 끝(exclusive)을 반환한다.
+     */
+    private long reserveBlock() {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                long end = increment(connection);
+                connection.commit();
+                log.debug("reserved id block. name={}, [{}, {})", name, end - blockSize, end);
+                return end;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("failed to reserve id block: " + name, e);
+        }
+    }
+
+    private long increment(Connection connection) throws SQLException {
+        while (true) {
+            try (PreparedStatement update = connection.prepareStatement("update id_block set next_val = next_val + ? where name = ?")) {
+                update.setLong(1, blockSize);
+                update.setString(2, name);
+                if (update.executeUpdate() == 1) {
+                    try (PreparedStatement select = connection.prepareStatement("select next_val from id_block where name = ?")) {
+                        select.setString(1, name);
+                        try (ResultSet rs = select.executeQuery()) {
+                            rs.next();
+                            return rs.getLong(1);
+                        }
+                    }
+                }
+            }
+            if (initialize(connection)) {
+                connection.commit();
+            }
+        }
+    }
+
+    /**
+     * 카운터 행을 만든다. 다른 노드가 먼저 만들었으면 false
+     */
+    private boolean initialize(Connection connection) throws SQLException {
+        String sql = "insert into id_block(name, next_val) select ?, coalesce(max(id), 0) + 1 from " + name;
+        try (PreparedStatement insert = connection.prepareStatement(sql)) {
+            insert.setString(1, name);
+            insert.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            if (e.getSQLState() != null && e.getSQLState().startsWith("23")) {//무결성 제약 조건 위반 (드라이버마다 예외 타입이 다르다)
+                connection.rollback();
+                return false;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package hello.itemservice.repository;
+
+/**
+ * 상품 id 발급기 (insert 전에 애플리케이션에서 id 를 정한다)
+ * : DB 가 id 를 생성하면(identity, useGeneratedKeys) 행마다 생성된 키를 돌려받아야 해서 배치, 파이프라이닝이 어렵다.
+ * : id 를 미리 정해 두면 insert 는 결과를 기다릴 필요가 없는 단순 문장이 되고, 여러 행을 그대로 배치로 묶을 수 있다.
+ * : 저장소 생성자로 전달한다. 전달하지 않으면 기존처럼 DB(또는 저장소)가 id 를 생성한다.
+ *
+ * 구현체
+ * : {@link HiLoItemIdAllocator} - 공유 테이블에서 id 블록을 예약한다. 여러 애플리케이션 노드가 같은 DB 를 써도 id 가 겹치지 않는다.
+ *
+ * 주의
+ * : 같은 테이블에 쓰는 모든 저장소(노드)가 같은 발급기를 사용해야 한다. DB 의 identity 와 섞어 쓰면 id 가 충돌할 수 있다.
+ */
+public interface ItemIdAllocator {
+
+    long nextId();
+}
@@ -0,0 +1,59 @@
+package hello.itemservice.repository;
+
+import hello.itemservice.domain.Item;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * {@link ItemRepository#findAllById(Collection)} 의 in 목록 공용 로직
+ * : 중복, null id 를 제거하고 {@link #MAX_BATCH_SIZE} 개씩 나눈다. (DB 마다 in 목록/바인드 변수 개수 제한이 있다)
+ * : 각 묶음의 길이를 2의 거듭제곱으로 맞춘다. 남는 자리는 마지막 id 를 반복한다. (결과에는 영향이 없다)
+ *   in 목록 길이마다 SQL 문자열이 달라지므로, 길이를 몇 가지로 제한해서 DB 실행 계획 캐시와 PreparedStatement 캐시를 재사용한다.
+ */
+public final class ItemIdBatches {
+
+    public static final int MAX_BATCH_SIZE = 512;
+
+    private ItemIdBatches() {
+    }
+
+    public static List<List<Long>> partition(Collection<Long> ids) {
+        Set<Long> distinct = new LinkedHashSet<>(ids);
+        distinct.remove(null);
+        List<Long> all = new ArrayList<>(distinct);
+
+        List<List<Long>> batches = new ArrayList<>((all.size() + MAX_BATCH_SIZE - 1) / MAX_BATCH_SIZE);
+        for (int from = 0; from < all.size(); from += MAX_BATCH_SIZE) {
+            List<Long> batch = new ArrayList<>(all.subList(from, Math.min(from + MAX_BATCH_SIZE, all.size())));
+            Long last = batch.get(batch.size() - 1);
+            for (int padded = paddedSize(batch.size()); batch.size() < padded; ) {
+                batch.add(last);
+            }
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * 묶음마다 finder(in 목록 조회 한 번)를 호출하고 결과를 합친다.
+     */
+    public static List<Item> findAll(Collection<Long> ids, Function<List<Long>, ? extends Collection<Item>> finder) {
+        List<Item> result = new ArrayList<>(ids.size());
+        for (List<Long> batch : partition(ids)) {
+            result.addAll(finder.apply(batch));
+        }
+        return result;
+    }
+
+    /**
+     * size 이상의 가장 작은 2의 거듭제곱
+     */
+    static int paddedSize(int size) {
+        return size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+    }
+}
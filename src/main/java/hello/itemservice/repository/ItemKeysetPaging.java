@@ -0,0 +1,62 @@
+package hello.itemservice.repository;
+
+import hello.itemservice.domain.Item;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link ItemSearchCond} 키셋 페이징 공용 로직
+ * : DB 구현체는 where/order by/limit 로 페이징하고, 이전 페이지(beforeId)만 {@link #toAscending(List, ItemSearchCond)} 로 뒤집는다.
+ * : 메모리 구현체는 {@link #inRange(long, ItemSearchCond)}, {@link #page(List, ItemSearchCond)} 로 같은 결과를 만든다.
+ */
+public final class ItemKeysetPaging {
+
+    private ItemKeysetPaging() {
+    }
+
+    /**
+     * 커서나 size 가 있으면 id 순으로 정렬해야 한다.
+     */
+    public static boolean isPaged(ItemSearchCond cond) {
+        return cond.getAfterId() != null || cond.getBeforeId() != null || cond.getSize() != null;
+    }
+
+    public static boolean isBackward(ItemSearchCond cond) {
+        return cond.getBeforeId() != null;
+    }
+
+    public static boolean inRange(long id, ItemSearchCond cond) {
+        return (cond.getAfterId() == null || id > cond.getAfterId())
+                && (cond.getBeforeId() == null || id < cond.getBeforeId());
+    }
+
+    /**
+     * id 내림차순으로 조회한 이전 페이지를 오름차순으로 되돌린다.
+     */
+    public static <T> List<T> toAscending(List<T> result, ItemSearchCond cond) {
+        if (isBackward(cond)) {
+            Collections.reverse(result);
+        }
+        return result;
+    }
+
+    /**
+     * id 오름차순 목록에서 커서 범위의 한 페이지를 잘라낸다.
+     * : 다음 페이지는 앞에서부터, 이전 페이지는 커서에 가까운 뒤쪽부터 size 건이다.
+     */
+    public static List<Item> page(List<Item> ascending, ItemSearchCond cond) {
+        if (!isPaged(cond)) {
+            return ascending;
+        }
+        ascending.removeIf(item -> !inRange(item.getId(), cond));
+        Integer size = cond.getSize();
+        if (size == null || ascending.size() <= size) {
+            return ascending;
+        }
+        return isBackward(cond)
+                ? new ArrayList<>(ascending.subList(ascending.size() - size, ascending.size()))
+                : new ArrayList<>(ascending.subList(0, size));
+    }
+}
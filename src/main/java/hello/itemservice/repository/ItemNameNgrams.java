@@ -0,0 +1,53 @@
+package hello.itemservice.repository;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * itemName 부분 일치(contains, like '%?%') 검색용 n-gram 추출
+ * : 앞에 와일드카드가 붙은 like 는 B-tree 인덱스를 탈 수 없다.
+ * : 상품명을 1글자(unigram) + 2글자(bigram) 조각으로 나눠 역색인을 만들고, 검색어의 조각이 모두 들어있는 상품만 후보로 본다.
+ * : item_name 은 varchar(10) 이라 상품 하나당 조각은 최대 19개다. 한글/영문 모두 글자(code point) 단위로 자른다.
+ *
+ * 후보는 조각만 일치하는 것이므로, 실제 결과는 반드시 contains 로 한번 더 확인해야 한다.
+ */
+public final class ItemNameNgrams {
+
+    private ItemNameNgrams() {
+    }
+
+    /**
+     * 색인할 조각: 모든 unigram + 모든 bigram
+     */
+    public static Set<String> indexGrams(String itemName) {
+        Set<String> grams = new LinkedHashSet<>();
+        if (itemName == null) {
+            return grams;
+        }
+        int[] codePoints = itemName.codePoints().toArray();
+        for (int i = 0; i < codePoints.length; i++) {
+            grams.add(new String(codePoints, i, 1));
+            if (i + 1 < codePoints.length) {
+                grams.add(new String(codePoints, i, 2));
+            }
+        }
+        return grams;
+    }
+
+    /**
+     * 검색할 조각: 1글자 검색어는 unigram, 그 외에는 bigram
+     * : 검색어의 bigram 이 모두 포함된 상품이 후보가 된다.
+     */
+    public static Set<String> queryGrams(String keyword) {
+        Set<String> grams = new LinkedHashSet<>();
+        int[] codePoints = keyword.codePoints().toArray();
+        if (codePoints.length == 1) {
+            grams.add(keyword);
+            return grams;
+        }
+        for (int i = 0; i + 1 < codePoints.length; i++) {
+            grams.add(new String(codePoints, i, 2));
+        }
+        return grams;
+    }
+}
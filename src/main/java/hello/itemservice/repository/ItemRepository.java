@@ -2,8 +2,14 @@ package hello.itemservice.repository;
 
 import hello.itemservice.domain.Item;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 메모리 구현체에서 향후 다양한 데이터 접근 기술 구현체로 손쉽게 변경하기 위해 리포지토리에 인터페이스를 도입했다.
@@ -14,8 +20,97 @@ public interface ItemRepository {
 
     void update(Long itemId, ItemUpdateDto updateParam);
 
+    /**
+     * 재고 수량을 원자적으로 증감한다. (quantity = quantity + delta)
+     * : 조회 후 수정(read-modify-write)하지 않고, 조건(quantity + delta >= 0)과 수정을 한 번에 수행한다.
+     *   동시에 여러 요청이 같은 상품의 수량을 바꿔도 수정이 유실되거나 수량이 음수가 되지 않는다.
+     * : DB 구현체는 조건부 update 한 문장, 메모리 구현체는 compare-and-set 으로 구현한다.
+     * : 수량이 null 이면 0 으로 본다.
+     *
+     * @return 반영되었으면 true, 수량이 음수가 되어 반영하지 않았으면 false
+     * @throws java.util.NoSuchElementException 상품이 없으면
+     */
+    boolean adjustQuantity(Long itemId, int delta);
+
+    /**
+     * 재고가 충분할 때만 quantity 만큼 차감한다. (주문 시 재고 확보)
+     *
+     * @return 차감했으면 true, 재고가 부족하면 false
+     */
+    default boolean reserve(Long itemId, int quantity) {
+        return adjustQuantity(itemId, reservationDelta(quantity));
+    }
+
+    /**
+     * reserve(quantity) 에 해당하는 adjustQuantity 의 증감량. ItemRepository 를 구현하지 않는 서비스(ItemServiceV2)도 같은 규칙을 사용한다.
+     *
+     * @throws IllegalArgumentException quantity 가 0 이하이면
+     */
+    static int reservationDelta(int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("quantity must be positive: " + quantity);
+        }
+        return -quantity;
+    }
+
     Optional<Item> findById(Long id);
 
+    /**
+     * 여러 상품을 id 로 한 번에 조회한다. (장바구니, 비교, 최근 본 상품처럼 특정 상품 여러 개를 보여주는 화면)
+     * : 없는 id 는 결과에서 빠진다. 중복 id, null id 는 무시한다. 결과 순서는 보장하지 않는다.
+     * : 기본 구현은 findById 를 반복한다. DB 구현체는 in 목록 조회 한 번으로 가져온다. ({@link ItemIdBatches})
+     */
+    default List<Item> findAllById(Collection<Long> ids) {
+        List<Item> result = new ArrayList<>(ids.size());
+        for (Long id : new LinkedHashSet<>(ids)) {
+            if (id != null) {
+                findById(id).ifPresent(result::add);
+            }
+        }
+        return result;
+    }
+
     List<Item> findAll(ItemSearchCond cond);
 
+    /**
+     * findAll 의 조회 전용 DTO 버전. (상품 목록 화면)
+     * : 기본 구현은 findAll 결과를 {@link ItemSummary} 로 변환한다. JPA 구현체는 엔티티를 만들지 않고 DTO 로 바로 조회한다.
+     */
+    default List<ItemSummary> findSummaries(ItemSearchCond cond) {
+        return findAll(cond).stream()
+                .map(ItemSummary::of)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * findAll 의 스트리밍 버전. 전체 결과를 List 로 모으지 않고 한 건씩 읽는다. (대량 export, 전체 스캔 용도)
+     * : 반환된 Stream 은 커서, 커넥션 등의 자원을 잡고 있으므로 반드시 닫아야 한다. (try-with-resources)
+     * : DB 구현체는 트랜잭션 안에서 호출해야 한다. 트랜잭션이 끝나면 커서도 닫힌다.
+     * : 키셋 페이징 조건(afterId, beforeId, size)도 findAll 과 똑같이 적용되어, 어떤 구현체든 같은 한 페이지를 id 순으로 돌려준다.
+     *   (이전 페이지(beforeId)는 id 내림차순으로 읽어 뒤집어야 하므로 스트리밍하지 않고 findAll 결과를 감싼다)
+     * : 기본 구현은 findAll 결과를 그대로 스트림으로 감싼다.
+     */
+    default Stream<Item> streamAll(ItemSearchCond cond) {
+        return findAll(cond).stream();
+    }
+
+    /**
+     * 여러 상품을 한 번에 저장하고, 생성된 id 를 각 Item 에 채워서 반환한다.
+     * : 기본 구현은 save 를 반복한다. DB 구현체는 JDBC 배치로 한 번에 전송한다.
+     */
+    default List<Item> saveAll(List<Item> items) {
+        for (Item item : items) {
+            save(item);
+        }
+        return items;
+    }
+
+    /**
+     * 여러 상품을 한 번에 수정한다. (key: itemId)
+     * : 기본 구현은 update 를 반복한다. DB 구현체는 JDBC 배치로 한 번에 전송한다.
+     */
+    default void updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        updateParams.forEach(this::update);
+    }
+
 }
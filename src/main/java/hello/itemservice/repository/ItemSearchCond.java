@@ -9,6 +9,13 @@ import lombok.Data;
  *      : 가장 마지막에 호출되는 package 에 넣는다.
  *      : MVC 의 경우 Controller -> Service -> Repository 순으로 호출이 되기 때문에,
  *          Repository 까지 영향이 있는 Dto 일 경우 itemservice.repository 에 저장하는게
+ *
+ * 키셋(keyset) 페이징
+ * : offset 방식은 앞 페이지의 행을 모두 읽고 버려야 하므로 뒤로 갈수록 느려진다.
+ * : 대신 마지막으로 본 id 를 커서로 사용한다. 정렬 키는 id(pk) 이므로 인덱스 범위 조회로 바로 다음 페이지를 찾는다.
+ * : afterId - 다음 페이지. id > afterId 를 id 오름차순으로 size 건 조회한다.
+ * : beforeId - 이전 페이지. id < beforeId 를 id 내림차순으로 size 건 조회한 뒤 다시 오름차순으로 뒤집는다.
+ * : size - 조회 건수. 셋 다 없으면 기존처럼 조건에 맞는 전체를 조회한다. ({@link ItemKeysetPaging})
  */
 @Data
 public class ItemSearchCond {
@@ -16,6 +23,10 @@ public class ItemSearchCond {
     private String itemName;
     private Integer maxPrice;
 
+    private Long afterId;
+    private Long beforeId;
+    private Integer size;
+
     public ItemSearchCond() {
     }
 
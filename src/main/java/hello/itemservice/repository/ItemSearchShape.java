@@ -0,0 +1,61 @@
+package hello.itemservice.repository;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * {@link ItemSearchCond} 의 조건 조합(shape)을 비트마스크로 표현한다.
+ * : 동적 쿼리의 문장 구조는 어떤 조건이 "있는지"에만 달라지고, 조건의 "값"과는 무관하다.
+ * : 조건은 5개이므로 가능한 문장은 최대 {@link #COUNT}(32) 개다. {@link QueryVariantRegistry} 가 shape 별로 미리 만들어 둔다.
+ */
+public final class ItemSearchShape {
+
+    public static final int ITEM_NAME = 1;
+    public static final int MAX_PRICE = 1 << 1;
+    public static final int AFTER_ID = 1 << 2;
+    public static final int BEFORE_ID = 1 << 3;
+    public static final int SIZE = 1 << 4;
+
+    public static final int COUNT = 1 << 5;
+
+    private ItemSearchShape() {
+    }
+
+    public static int of(ItemSearchCond cond) {
+        int shape = 0;
+        if (StringUtils.hasText(cond.getItemName())) {
+            shape |= ITEM_NAME;
+        }
+        if (cond.getMaxPrice() != null) {
+            shape |= MAX_PRICE;
+        }
+        if (cond.getAfterId() != null) {
+            shape |= AFTER_ID;
+        }
+        if (cond.getBeforeId() != null) {
+            shape |= BEFORE_ID;
+        }
+        if (cond.getSize() != null) {
+            shape |= SIZE;
+        }
+        return shape;
+    }
+
+    public static boolean has(int shape, int condition) {
+        return (shape & condition) != 0;
+    }
+
+    /**
+     * {@link ItemKeysetPaging#isPaged(ItemSearchCond)} 와 같다.
+     */
+    public static boolean isPaged(int shape) {
+        return has(shape, AFTER_ID | BEFORE_ID | SIZE);
+    }
+
+    public static boolean isBackward(int shape) {
+        return has(shape, BEFORE_ID);
+    }
+
+    public static boolean hasWhere(int shape) {
+        return has(shape, ITEM_NAME | MAX_PRICE | AFTER_ID | BEFORE_ID);
+    }
+}
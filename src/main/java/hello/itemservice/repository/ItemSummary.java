@@ -0,0 +1,30 @@
+package hello.itemservice.repository;
+
+import hello.itemservice.domain.Item;
+import lombok.Data;
+
+/**
+ * 상품 목록 화면용 조회 전용 DTO (프로젝션)
+ * : 목록 화면은 id, 상품명, 가격, 수량만 보여준다. 엔티티를 조회하면 하이버네이트는 행마다 영속성 컨텍스트에
+ *   엔티티와 변경 감지용 스냅샷(필드 값 복사본)을 함께 보관하고, flush 시점에 모두 비교한다.
+ * : DTO 로 바로 조회하면 영속성 컨텍스트에 아무것도 남지 않는다. 스냅샷이 없으므로 메모리는 절반 정도, 변경 감지 비용은 0 이다.
+ * : 불변 객체다. 수정은 엔티티(Item)를 조회해서 한다.
+ *
+ * 조회 방법
+ * : JPQL - select new hello.itemservice.repository.ItemSummary(i.id, i.itemName, i.price, i.quantity) ...
+ * : Querydsl - Projections.constructor(ItemSummary.class, item.id, item.itemName, item.price, item.quantity)
+ * : 스프링 데이터 JPA - 인터페이스 기반 프로젝션 (ItemSummaryView)
+ * : MyBatis - resultMap 의 constructor 매핑 (itemSummaryMap)
+ */
+@Data
+public class ItemSummary {
+
+    private final Long id;
+    private final String itemName;
+    private final Integer price;
+    private final Integer quantity;
+
+    public static ItemSummary of(Item item) {
+        return new ItemSummary(item.getId(), item.getItemName(), item.getPrice(), item.getQuantity());
+    }
+}
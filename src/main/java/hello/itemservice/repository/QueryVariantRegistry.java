@@ -0,0 +1,76 @@
+package hello.itemservice.repository;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * 검색 조건 조합({@link ItemSearchShape}) 별로 미리 만들어 둔 쿼리(SQL, JPQL 문자열 또는 실행 함수)를 보관한다.
+ * : 요청마다 문자열을 이어 붙이지 않는다.
+ * : 같은 shape 는 항상 같은 문자열이므로 NamedParameterJdbcTemplate 의 ParsedSql 캐시, 하이버네이트의 QueryPlanCache,
+ *   H2 세션의 쿼리 캐시처럼 SQL 문자열을 키로 하는 캐시도 그대로 적중한다.
+ *
+ * 생성 시점
+ * : precompile = true 이면 생성자에서 모든 shape 를 만든다. (애플리케이션 시작 시점)
+ * : false 이면 처음 요청될 때 만든다. 동시에 만들어도 결과가 같으므로 먼저 저장된 값을 사용한다.
+ *
+ * 지표
+ * : hits - 만들어 둔 쿼리를 그대로 사용한 횟수, misses - 요청 시점에 만들어야 했던 횟수
+ * : 저장소마다 getFindAllQueries() 로 조회한다. (JdbcTemplateItemRepositoryV1~V3, JpaItemRepository, JpaItemRepositoryV2)
+ *   precompile 한 레지스트리에서 misses 가 0 이 아니면 미리 만들지 못한 shape 가 있다는 뜻이다.
+ */
+@Slf4j
+public class QueryVariantRegistry<T> {
+
+    private final String name;
+    private final IntFunction<T> compiler;
+    private final AtomicReferenceArray<T> variants = new AtomicReferenceArray<>(ItemSearchShape.COUNT);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public QueryVariantRegistry(String name, IntFunction<T> compiler) {
+        this(name, compiler, true);
+    }
+
+    public QueryVariantRegistry(String name, IntFunction<T> compiler, boolean precompile) {
+        this.name = name;
+        this.compiler = compiler;
+        if (precompile) {
+            for (int shape = 0; shape < ItemSearchShape.COUNT; shape++) {
+                variants.set(shape, compiler.apply(shape));
+            }
+            log.info("{}: precompiled {} query variants", name, ItemSearchShape.COUNT);
+        }
+    }
+
+    public T get(ItemSearchCond cond) {
+        return get(ItemSearchShape.of(cond));
+    }
+
+    public T get(int shape) {
+        T variant = variants.get(shape);
+        if (variant != null) {
+            hits.increment();
+            return variant;
+        }
+        misses.increment();
+        T compiled = compiler.apply(shape);
+        log.debug("{}: compiled shape={} variant={}", name, shape, compiled);
+        return variants.compareAndSet(shape, null, compiled) ? compiled : variants.get(shape);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        return name + "{hits=" + getHits() + ", misses=" + getMisses() + "}";
+    }
+}
@@ -0,0 +1,135 @@
+package hello.itemservice.repository.batch;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemSummary;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+/**
+ * findById 묶음 조회 저장소 (다른 ItemRepository 앞에 두는 데코레이터)
+ * : findById 를 {@link ItemBatchLoader} 로 보낸다. 동시에 들어온 단건 조회가 window 단위로 delegate 의 findAllById 한 번으로 묶인다.
+ * : 호출자는 자신의 상품이 포함된 묶음이 조회될 때까지(최대 window) 기다린다. 요청이 드물면 window 만큼 지연만 늘어나므로
+ *   window 는 DB 왕복 시간보다 짧게 둔다.
+ * : 그 외의 메서드는 delegate 에 그대로 위임한다.
+ *
+ * 트랜잭션
+ * : window 로 묶은 조회는 로더 스레드에서 실행되므로 호출자의 트랜잭션에 참여하지 않는다. (커밋 전의 변경을 보지 못하고, 읽기 일관성도 달라진다)
+ * : 그래서 트랜잭션 안에서 호출한 findById 는 묶지 않고 delegate.findById 로 바로 조회한다.
+ *
+ * 직접 dispatch (window 가 0)
+ * : 자동으로 조회하지 않는다. {@link #load(Long)} 로 필요한 id 를 모두 예약한 뒤 {@link #dispatch()} 를 호출하면
+ *   호출한 스레드(호출자의 트랜잭션)에서 findAllById 한 번으로 조회한다.
+ * : 이때 findById 는 dispatch 할 곳이 없으므로 delegate.findById 로 바로 조회한다.
+ * : 로더는 저장소 하나에 하나이므로 여러 스레드가 동시에 load 하면 한 묶음에 섞일 수 있다. (결과는 각자의 future 로 정확히 전달된다)
+ */
+public class BatchingItemRepository implements ItemRepository, Closeable {
+
+    private final ItemRepository delegate;
+    private final ItemBatchLoader loader;
+    private final boolean manualDispatch;
+
+    public BatchingItemRepository(ItemRepository delegate, Duration window, int maxBatchSize) {
+        if (window.isNegative()) {
+            throw new IllegalArgumentException("window must not be negative: " + window);
+        }
+        this.delegate = delegate;
+        this.loader = new ItemBatchLoader(delegate::findAllById, window, maxBatchSize);
+        this.manualDispatch = window.isZero();
+    }
+
+    @Override
+    public Item save(Item item) {
+        return delegate.save(item);
+    }
+
+    @Override
+    public List<Item> saveAll(List<Item> items) {
+        return delegate.saveAll(items);
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        delegate.update(itemId, updateParam);
+    }
+
+    @Override
+    public void updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        delegate.updateAll(updateParams);
+    }
+
+    @Override
+    public boolean adjustQuantity(Long itemId, int delta) {
+        return delegate.adjustQuantity(itemId, delta);
+    }
+
+    @Override
+    public boolean reserve(Long itemId, int quantity) {
+        return delegate.reserve(itemId, quantity);
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        if (manualDispatch || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return delegate.findById(id);
+        }
+        try {
+            return loader.load(id).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 묶음 조회에 id 를 예약한다. window 가 0 이면 {@link #dispatch()} 를 호출할 때 조회한다.
+     */
+    public CompletableFuture<Optional<Item>> load(Long id) {
+        return loader.load(id);
+    }
+
+    /**
+     * 예약된 id 를 지금, 호출한 스레드에서 조회한다.
+     */
+    public void dispatch() {
+        loader.dispatch();
+    }
+
+    @Override
+    public List<Item> findAllById(Collection<Long> ids) {
+        return delegate.findAllById(ids);
+    }
+
+    @Override
+    public List<Item> findAll(ItemSearchCond cond) {
+        return delegate.findAll(cond);
+    }
+
+    @Override
+    public List<ItemSummary> findSummaries(ItemSearchCond cond) {
+        return delegate.findSummaries(cond);
+    }
+
+    @Override
+    public Stream<Item> streamAll(ItemSearchCond cond) {
+        return delegate.streamAll(cond);
+    }
+
+    @Override
+    public void close() {
+        loader.close();
+    }
+}
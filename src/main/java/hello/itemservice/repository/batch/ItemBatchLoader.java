@@ -0,0 +1,138 @@
+package hello.itemservice.repository.batch;
+
+import hello.itemservice.domain.Item;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 단건 조회 묶음 로더 (DataLoader 방식)
+ * : 장바구니, 비교, 최근 본 상품처럼 여러 곳에서 findById 를 한 건씩 호출하면 상품 수만큼 쿼리가 나간다.
+ * : load(id) 는 바로 조회하지 않고 id 를 모아 둔 뒤 future 를 반환한다. 모인 id 는 한 번의 findAllById(in 목록 조회)로 가져와서
+ *   각 future 를 완료한다. 없는 상품은 Optional.empty() 로 완료된다.
+ * : 같은 묶음 안에서 같은 id 를 여러 번 요청하면 한 번만 조회한다. 호출자마다 Item 복사본을 받는다.
+ *
+ * 묶는 시점 (dispatch)
+ * : window 를 지정하면 첫 load 로부터 window 가 지나면 모인 id 를 조회한다. (동시 요청을 짧은 시간 단위로 묶는다)
+ * : 모인 id 가 maxBatchSize 에 이르면 window 를 기다리지 않고 load 를 호출한 스레드에서 바로 조회한다.
+ * : window 가 0 이면 자동으로 조회하지 않는다. 요청 범위(request scope)처럼 필요한 id 를 모두 load 한 뒤 dispatch() 를 직접 호출한다.
+ *   (이때 dispatch 전에 future 를 join 하면 끝나지 않는다)
+ *
+ * 주의
+ * : window 로 조회할 때는 로더 스레드에서 batchLoader 를 호출하므로 호출자의 트랜잭션에 참여하지 않는다. ({@link BatchingItemRepository} 참고)
+ * : 이미 조회를 시작한 묶음에는 합류하지 않는다. load 이후에 시작한 조회의 결과만 받으므로, load 전에 끝난 수정은 항상 보인다.
+ * : close() 는 모인 id 를 조회한 뒤 로더 스레드를 종료한다. 이후의 load 는 바로 조회한다.
+ */
+@Slf4j
+public class ItemBatchLoader implements Closeable {
+
+    private final Function<Collection<Long>, List<Item>> batchLoader;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+
+    private Map<Long, CompletableFuture<Optional<Item>>> pending = new HashMap<>();
+    private boolean scheduled;
+    private boolean closed;
+
+    /**
+     * @param batchLoader 보통 ItemRepository::findAllById
+     */
+    public ItemBatchLoader(Function<Collection<Long>, List<Item>> batchLoader, Duration window, int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive: " + maxBatchSize);
+        }
+        this.batchLoader = batchLoader;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = windowNanos > 0 ? Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "item-batch-loader");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    public CompletableFuture<Optional<Item>> load(Long id) {
+        if (id == null) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        CompletableFuture<Optional<Item>> future;
+        Map<Long, CompletableFuture<Optional<Item>>> full = null;
+        synchronized (this) {
+            future = pending.computeIfAbsent(id, key -> new CompletableFuture<>());
+            if (pending.size() >= maxBatchSize || closed) {
+                full = take();
+            } else if (scheduler != null && !scheduled) {
+                scheduled = true;
+                scheduler.schedule(this::dispatch, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (full != null) {
+            execute(full);
+        }
+        return future.thenApply(found -> found.map(Item::copy));
+    }
+
+    /**
+     * 모인 id 를 지금 조회한다.
+     */
+    public void dispatch() {
+        Map<Long, CompletableFuture<Optional<Item>>> batch;
+        synchronized (this) {
+            batch = take();
+        }
+        execute(batch);
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;//이후의 load 는 로더 스레드에 예약하지 않는다.
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        dispatch();
+    }
+
+    private Map<Long, CompletableFuture<Optional<Item>>> take() {
+        Map<Long, CompletableFuture<Optional<Item>>> batch = pending;
+        pending = new HashMap<>();
+        scheduled = false;
+        return batch;
+    }
+
+    private void execute(Map<Long, CompletableFuture<Optional<Item>>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            for (Item item : batchLoader.apply(batch.keySet())) {
+                CompletableFuture<Optional<Item>> future = batch.get(item.getId());
+                if (future != null) {
+                    future.complete(Optional.of(item));
+                }
+            }
+            batch.values().forEach(future -> future.complete(Optional.empty()));//결과에 없는 id
+        } catch (RuntimeException | Error e) {
+            log.warn("batch load of {} items failed", batch.size(), e);
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+}
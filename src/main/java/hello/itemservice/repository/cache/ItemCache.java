@@ -0,0 +1,276 @@
+package hello.itemservice.repository.cache;
+
+import hello.itemservice.domain.Item;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+/**
+ * 상품 단건 캐시 (segmented LRU + TTL)
+ * : 최대 maxSize 건을 보관한다. 넘치면 segmented LRU 정책으로 내보낸다(evict).
+ * : 저장 후 ttl 이 지난 항목은 조회 시점에 버린다.
+ *
+ * segmented LRU
+ * : 처음 들어온 항목은 probation 구간에 둔다. probation 에서 한 번 더 조회되면 protected 구간(전체의 80%)으로 올린다.
+ * : 내보낼 때는 probation 의 가장 오래된 항목부터 내보낸다. protected 가 넘치면 가장 오래된 항목을 probation 으로 내린다.
+ * : 목록을 한 번 훑는 식의 일회성 조회가 자주 조회되는 상품(protected)을 밀어내지 못한다. (단순 LRU 의 약점)
+ *
+ * 동시성
+ * : id 해시로 나눈 stripe 마다 독립된 segmented LRU 와 락을 둔다. 서로 다른 stripe 의 조회는 경합하지 않는다.
+ * : stripe 하나가 최소 {@link #MIN_STRIPE_SIZE} 건은 보관하도록, maxSize 가 작으면 stripe 수를 줄인다. (최대 {@link #MAX_STRIPES})
+ *   stripe 당 1~2 건이면 probation, protected 구간이 의미가 없어 segmented LRU 가 단순 LRU 보다도 나빠진다.
+ *
+ * 무효화와 조회의 경합
+ * : 캐시 미스 -> 저장소 조회 -> 캐시 저장 사이에 같은 상품이 수정되어 무효화되면, 조회한 값은 이미 오래된 값이다.
+ * : stripe 마다 무효화 횟수(stamp)를 두고, 조회 전의 stamp 가 저장 시점에도 같을 때만 저장한다.
+ *
+ * 보관하는 Item 은 복사본이다. 조회 결과도 복사본을 반환하므로 호출자가 수정해도 캐시에 영향이 없다.
+ */
+public class ItemCache {
+
+    static final int MAX_STRIPES = 16;
+    static final int MIN_STRIPE_SIZE = 8;
+
+    private final Stripe[] stripes;
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ItemCache(int maxSize, Duration ttl) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        int stripeCount = MAX_STRIPES;
+        while (stripeCount > 1 && maxSize / stripeCount < MIN_STRIPE_SIZE) {
+            stripeCount >>= 1;
+        }
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(maxSize / stripeCount + (i < maxSize % stripeCount ? 1 : 0));//합계가 maxSize
+        }
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * 캐시에 있으면 반환하고, 없으면 loader 로 조회해서 저장한다. (read-through)
+     * : loader 는 락 밖에서 호출한다. 같은 상품을 동시에 조회하면 loader 가 여러 번 호출될 수 있다.
+     */
+    public Optional<Item> get(Long id, LongFunction<Optional<Item>> loader) {
+        Stripe stripe = stripeOf(id);
+        long stamp;
+        synchronized (stripe) {
+            Item cached = stripe.get(id, System.nanoTime());
+            if (cached != null) {
+                hits.increment();
+                return Optional.of(cached.copy());
+            }
+            stamp = stripe.stamp;
+        }
+        misses.increment();
+
+        Optional<Item> loaded = loader.apply(id);
+        loaded.ifPresent(item -> {
+            synchronized (stripe) {
+                if (stripe.stamp == stamp) {
+                    stripe.put(id, item.copy(), System.nanoTime() + ttlNanos);
+                }
+            }
+        });
+        return loaded;
+    }
+
+    /**
+     * 여러 상품을 한 번에 조회한다. 캐시에 없는 상품만 모아서 loader 를 한 번 호출한다. (loader: 저장소의 findAllById)
+     * : 저장 조건은 get 과 같다. 상품마다 조회 전의 stripe stamp 가 저장 시점에도 같을 때만 저장한다.
+     */
+    public List<Item> getAll(Collection<Long> ids, Function<Collection<Long>, List<Item>> loader) {
+        List<Item> result = new ArrayList<>(ids.size());
+        Map<Long, Long> missedStamps = new LinkedHashMap<>();
+        long now = System.nanoTime();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            if (id == null) {
+                continue;
+            }
+            Stripe stripe = stripeOf(id);
+            synchronized (stripe) {
+                Item cached = stripe.get(id, now);
+                if (cached == null) {
+                    missedStamps.put(id, stripe.stamp);
+                } else {
+                    hits.increment();
+                    result.add(cached.copy());
+                }
+            }
+        }
+        if (missedStamps.isEmpty()) {
+            return result;
+        }
+        misses.add(missedStamps.size());
+
+        List<Item> loaded = loader.apply(missedStamps.keySet());
+        long expiresAt = System.nanoTime() + ttlNanos;
+        for (Item item : loaded) {
+            Long stamp = missedStamps.get(item.getId());
+            if (stamp == null) {
+                continue;
+            }
+            Stripe stripe = stripeOf(item.getId());
+            synchronized (stripe) {
+                if (stripe.stamp == stamp) {
+                    stripe.put(item.getId(), item.copy(), expiresAt);
+                }
+            }
+        }
+        result.addAll(loaded);
+        return result;
+    }
+
+    public void invalidate(Long id) {
+        if (id == null) {
+            return;
+        }
+        Stripe stripe = stripeOf(id);
+        synchronized (stripe) {
+            stripe.remove(id);
+        }
+    }
+
+    public void invalidateAll() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.probation.size() + stripe.protectedSegment.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "ItemCache{size=" + size() + ", hits=" + hitCount() + ", misses=" + missCount() + ", evictions=" + evictionCount() + "}";
+    }
+
+    private Stripe stripeOf(Long id) {
+        long h = id * 0x9E3779B97F4A7C15L;//연속된 id 가 고르게 흩어지도록
+        return stripes[(int) (h >>> 60) & (stripes.length - 1)];
+    }
+
+    /**
+     * stripe 하나의 segmented LRU. stripe 락 안에서만 사용한다.
+     * : LinkedHashMap(accessOrder=true) 은 get 할 때마다 항목을 가장 최근 위치로 옮긴다. 순회 순서의 첫 항목이 가장 오래된 항목이다.
+     */
+    private final class Stripe {
+        final int maxSize;
+        final int protectedMaxSize;
+        final LinkedHashMap<Long, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+        final LinkedHashMap<Long, Entry> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+        long stamp;
+
+        Stripe(int maxSize) {
+            this.maxSize = maxSize;
+            this.protectedMaxSize = Math.max(1, maxSize * 4 / 5);
+        }
+
+        Item get(Long id, long now) {
+            Entry entry = protectedSegment.get(id);
+            if (entry != null) {
+                if (entry.expired(now)) {
+                    protectedSegment.remove(id);
+                    return null;
+                }
+                return entry.item;
+            }
+            entry = probation.remove(id);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expired(now)) {
+                return null;
+            }
+            //probation 에서 다시 조회되었으므로 protected 로 올린다.
+            protectedSegment.put(id, entry);
+            if (protectedSegment.size() > protectedMaxSize) {
+                Map.Entry<Long, Entry> eldest = eldest(protectedSegment);
+                protectedSegment.remove(eldest.getKey());
+                probation.put(eldest.getKey(), eldest.getValue());
+            }
+            return entry.item;
+        }
+
+        void put(Long id, Item item, long expiresAt) {
+            Entry entry = new Entry(item, expiresAt);
+            if (protectedSegment.containsKey(id)) {
+                protectedSegment.put(id, entry);
+                return;
+            }
+            probation.put(id, entry);
+            while (probation.size() + protectedSegment.size() > maxSize) {
+                LinkedHashMap<Long, Entry> victims = probation.isEmpty() ? protectedSegment : probation;
+                victims.remove(eldest(victims).getKey());
+                evictions.increment();
+            }
+        }
+
+        void remove(Long id) {
+            stamp++;
+            if (probation.remove(id) == null) {
+                protectedSegment.remove(id);
+            }
+        }
+
+        void clear() {
+            stamp++;
+            probation.clear();
+            protectedSegment.clear();
+        }
+
+        private Map.Entry<Long, Entry> eldest(LinkedHashMap<Long, Entry> segment) {
+            return segment.entrySet().iterator().next();
+        }
+    }
+
+    private static final class Entry {
+        final Item item;
+        final long expiresAt;
+
+        Entry(Item item, long expiresAt) {
+            this.item = item;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean expired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package hello.itemservice.repository.cache;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemSummary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 검색 결과 캐시 (버전 기반 무효화)
+ * : /items 의 조회는 대부분 같은 몇 가지 검색(조건 없음, 인기 검색어)이다. 같은 조건의 결과를 메모리에서 반환한다.
+ * : 키는 검색 조건의 값이다. 빈 문자열 itemName 은 null 과 같은 조건으로 본다. (저장소도 둘을 같게 처리한다)
+ *
+ * 가격 구간 버전
+ * : 가격을 2의 거듭제곱 구간(0 이하, 1, 2~3, 4~7, ...)과 null 로 나누고 구간마다 버전을 둔다.
+ * : maxPrice = M 인 검색의 결과는 M 이하의 가격 구간에 있는 상품만 포함하므로, 0 ~ bucket(M) 구간 버전의 합을 stamp 로 저장한다.
+ *   maxPrice 가 없으면 모든 구간(null 포함) 버전의 합이다.
+ * : 버전은 증가만 하므로 stamp 가 같으면 그 사이에 관련 구간의 쓰기가 없었다는 뜻이다. 다르면 다시 조회한다.
+ *   비싼 상품을 수정해도 싼 가격대 검색의 캐시는 유지된다.
+ *
+ * 어떤 구간을 올리나
+ * : 새 상품 저장은 그 가격 구간만 올린다. ({@link #invalidate(Integer)})
+ * : 기존 상품 수정은 수정 후 가격 구간(결과에 새로 들어갈 수 있는 검색)과, 캐시된 결과에 그 상품이 들어 있던 가격 구간을 올린다. ({@link #write})
+ *   수정 전 가격을 저장소에서 다시 읽지 않는다. 결과를 저장할 때 상품 id 별로 어느 구간에 들어 있었는지(hint)를 기록해 두고 그것을 사용한다.
+ * : hint 가 없는 상품은 캐시된 어떤 결과에도 들어 있지 않다. 그 상품이 빠지거나 바뀌어서 달라질 캐시 결과가 없다.
+ *
+ * 조회와 쓰기의 경합
+ * : stamp 는 저장소를 조회하기 전에 계산한다. 조회 도중 쓰기가 끝나 버전이 올라가면, 저장된 결과는 다음 조회에서 stamp 가 달라 버려진다.
+ * : 쓰는 쪽은 저장소 반영(커밋)이 끝난 뒤 버전을 올려야 한다. 그러면 쓰기가 반환된 뒤의 검색은 이전 결과를 보지 않는다.
+ * : 조회 도중 결과에 든 상품이 수정되면, 그 쓰기는 아직 hint 가 없어 결과가 든 구간을 올리지 못할 수 있다.
+ *   상품 id 로 나눈 stripe 마다 쓰기 시작/종료 횟수를 세고, 조회 시작 전에 끝난 쓰기 말고 다른 쓰기가 있었으면 결과를 저장하지 않는다.
+ *
+ * JVM 하나 안에서만 동작한다
+ * : 버전과 hint 는 이 인스턴스의 메모리에만 있다. 같은 DB 를 쓰는 다른 서버(JVM)의 쓰기나,
+ *   이 캐시를 거치지 않는 쓰기(저장소 직접 사용, SQL 직접 실행)는 무효화하지 못한다.
+ * : 서버를 여러 대 띄우면 각 서버의 캐시가 다른 서버의 쓰기를 모른다. 그때는 쓰기를 모든 서버에 알리는 수단(메시지 브로커 등)을 따로 두거나 이 캐시를 끈다.
+ *
+ * 동시성
+ * : 검색 조건 해시로 나눈 stripe 마다 독립된 LRU 와 락을 둔다. 서로 다른 stripe 의 조회는 경합하지 않는다.
+ * : stripe 하나가 최소 {@link #MIN_STRIPE_BYTES} 는 쓰도록, maxBytes 가 작으면 stripe 수를 줄인다. (최대 {@link #MAX_STRIPES})
+ *
+ * 메모리 한도
+ * : 결과 크기(상품 수, 상품명 길이)로 대략의 바이트 수를 계산해서, stripe 마다 합이 maxBytes / stripe 수를 넘지 않게 오래 사용하지 않은 결과부터 내보낸다.
+ * : 그보다 큰 결과는 캐시하지 않는다.
+ */
+public class ItemSearchCache {
+
+    static final int MAX_STRIPES = 16;
+    static final long MIN_STRIPE_BYTES = 64 * 1024;
+
+    private static final int NULL_PRICE_BUCKET = 32;
+    private static final int BUCKETS = 33;
+    private static final int WRITE_STRIPES = 256;
+
+    private static final long ENTRY_BYTES = 128;
+    private static final long ITEM_BYTES = 96;
+
+    private final Stripe[] stripes;
+    private final long stripeMaxBytes;
+    private final AtomicLongArray versions = new AtomicLongArray(BUCKETS);
+    private final ConcurrentHashMap<Long, Hint> hints = new ConcurrentHashMap<>();
+    private final AtomicLongArray writesStarted = new AtomicLongArray(WRITE_STRIPES);
+    private final AtomicLongArray writesFinished = new AtomicLongArray(WRITE_STRIPES);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ItemSearchCache(long maxBytes) {
+        int stripeCount = MAX_STRIPES;
+        while (stripeCount > 1 && maxBytes / stripeCount < MIN_STRIPE_BYTES) {
+            stripeCount >>= 1;
+        }
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.stripeMaxBytes = maxBytes / stripeCount;
+    }
+
+    /**
+     * 조회한 Item 은 복사본을 반환한다. (호출자가 수정해도 캐시에 영향이 없도록)
+     */
+    public List<Item> findItems(ItemSearchCond cond, Function<ItemSearchCond, List<Item>> loader) {
+        return get(new SearchKey(false, cond), cond, loader, ItemSearchCache::copyOf, ItemSearchCache::copyOf);
+    }
+
+    /**
+     * ItemSummary 는 불변이므로 같은 (수정할 수 없는) 목록을 공유한다.
+     */
+    public List<ItemSummary> findSummaries(ItemSearchCond cond, Function<ItemSearchCond, List<ItemSummary>> loader) {
+        return get(new SearchKey(true, cond), cond, loader, ArrayList::new, Function.identity());
+    }
+
+    /**
+     * 가격이 price 인 새 상품이 저장되었다. 그 가격 구간을 포함하는 검색의 결과를 무효화한다.
+     */
+    public void invalidate(Integer price) {
+        versions.incrementAndGet(bucketOf(price));
+    }
+
+    /**
+     * 기존 상품의 가격은 그대로 두고 수정한다. (수량 변경)
+     * : operation 이 반환된 뒤(커밋 뒤) 그 상품이 들어 있는 캐시 결과를 무효화한다.
+     */
+    public <T> T write(Long itemId, Supplier<T> operation) {
+        return write(itemId, 0L, operation);
+    }
+
+    /**
+     * 기존 상품을 수정한다. 수정 후 가격은 newPrice 다.
+     * : operation 이 반환된 뒤(커밋 뒤) 그 상품이 들어 있는 캐시 결과와 newPrice 구간을 포함하는 검색의 결과를 무효화한다.
+     */
+    public <T> T write(Long itemId, Integer newPrice, Supplier<T> operation) {
+        return write(itemId, 1L << bucketOf(newPrice), operation);
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public long weightedBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            bytes += stripe.weightedBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "ItemSearchCache{bytes=" + weightedBytes() + ", hits=" + hitCount() + ", misses=" + missCount() + ", evictions=" + evictionCount() + "}";
+    }
+
+    /**
+     * @param snapshot 캐시에 저장할 목록을 만든다. (miss)
+     * @param view     캐시에 저장된 목록으로 반환할 목록을 만든다. (hit)
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> get(SearchKey key, ItemSearchCond cond, Function<ItemSearchCond, List<T>> loader,
+                            Function<List<T>, List<T>> snapshot, Function<List<T>, List<T>> view) {
+        Stripe stripe = stripeOf(key);
+        long stamp = stamp(key.maxPrice);
+        Entry cached = stripe.lookup(key, stamp);
+        if (cached != null) {
+            hits.increment();
+            return view.apply((List<T>) cached.result);
+        }
+        misses.increment();
+
+        long[] finishedBefore = new long[WRITE_STRIPES];
+        for (int i = 0; i < WRITE_STRIPES; i++) {
+            finishedBefore[i] = writesFinished.get(i);
+        }
+        List<T> result = loader.apply(cond);
+        List<T> stored = Collections.unmodifiableList(snapshot.apply(result));
+        put(stripe, key, new Entry(stamp, stored), finishedBefore);
+        return result;
+    }
+
+    private void put(Stripe stripe, SearchKey key, Entry entry, long[] finishedBefore) {
+        if (entry.bytes > stripeMaxBytes) {
+            return;
+        }
+        addHints(entry);
+        for (Long itemId : entry.itemIds) {
+            int writeStripe = writeStripeOf(itemId);
+            if (writesStarted.get(writeStripe) != finishedBefore[writeStripe]) {
+                removeHints(entry);//조회 도중 이 상품(또는 같은 stripe 의 상품)의 쓰기가 있었다.
+                return;
+            }
+        }
+        stripe.put(key, entry).forEach(this::removeHints);
+    }
+
+    private <T> T write(Long itemId, long newBuckets, Supplier<T> operation) {
+        if (itemId == null) {
+            return operation.get();
+        }
+        int writeStripe = writeStripeOf(itemId);
+        writesStarted.incrementAndGet(writeStripe);
+        try {
+            return operation.get();
+        } finally {
+            Hint hint = hints.get(itemId);
+            long buckets = hint == null ? newBuckets : newBuckets | hint.buckets;
+            for (int i = 0; i < BUCKETS; i++) {
+                if ((buckets & 1L << i) != 0) {
+                    versions.incrementAndGet(i);
+                }
+            }
+            writesFinished.incrementAndGet(writeStripe);
+        }
+    }
+
+    private void addHints(Entry entry) {
+        for (int i = 0; i < entry.itemIds.size(); i++) {
+            hints.merge(entry.itemIds.get(i), new Hint(1L << entry.buckets[i], 1), Hint::merge);
+        }
+    }
+
+    private void removeHints(Entry entry) {
+        for (Long itemId : entry.itemIds) {
+            hints.computeIfPresent(itemId, (id, hint) -> hint.refs == 1 ? null : new Hint(hint.buckets, hint.refs - 1));
+        }
+    }
+
+    private long stamp(Integer maxPrice) {
+        int last = maxPrice == null ? BUCKETS - 1 : bucketOf(maxPrice);
+        long stamp = 0;
+        for (int i = 0; i <= last; i++) {
+            stamp += versions.get(i);
+        }
+        return stamp;
+    }
+
+    private Stripe stripeOf(SearchKey key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ hash >>> 16) & (stripes.length - 1)];
+    }
+
+    private static int writeStripeOf(Long itemId) {
+        return (int) (itemId * 0x9E3779B97F4A7C15L >>> 56);//WRITE_STRIPES = 2^8
+    }
+
+    private static int bucketOf(Integer price) {
+        if (price == null) {
+            return NULL_PRICE_BUCKET;
+        }
+        return price <= 0 ? 0 : 32 - Integer.numberOfLeadingZeros(price);
+    }
+
+    private static List<Item> copyOf(List<Item> items) {
+        List<Item> copies = new ArrayList<>(items.size());
+        items.forEach(item -> copies.add(item.copy()));
+        return copies;
+    }
+
+    /**
+     * 검색 조건 해시로 나눈 LRU 하나
+     */
+    private final class Stripe {
+        private final LinkedHashMap<SearchKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long weightedBytes;
+
+        synchronized Entry lookup(SearchKey key, long stamp) {
+            Entry entry = entries.get(key);
+            return entry != null && entry.stamp == stamp ? entry : null;
+        }
+
+        /**
+         * @return 캐시에서 빠진 결과 (교체되거나 내보낸 결과, 저장하지 않았으면 entry 자신)
+         */
+        synchronized List<Entry> put(SearchKey key, Entry entry) {
+            Entry old = entries.get(key);
+            if (old != null && old.stamp - entry.stamp > 0) {
+                return Collections.singletonList(entry);//더 최근 stamp 로 조회한 결과가 이미 있다.
+            }
+            List<Entry> removed = new ArrayList<>();
+            entries.put(key, entry);
+            weightedBytes += entry.bytes;
+            if (old != null) {
+                weightedBytes -= old.bytes;
+                removed.add(old);
+            }
+
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (weightedBytes > stripeMaxBytes) {
+                Entry evicted = eldest.next();
+                eldest.remove();
+                weightedBytes -= evicted.bytes;
+                evictions.increment();
+                removed.add(evicted);
+            }
+            return removed;
+        }
+
+        synchronized long weightedBytes() {
+            return weightedBytes;
+        }
+    }
+
+    private static final class Entry {
+        final long stamp;
+        final List<?> result;
+        final long bytes;
+        final List<Long> itemIds = new ArrayList<>();
+        final int[] buckets;
+
+        Entry(long stamp, List<?> result) {
+            this.stamp = stamp;
+            this.result = result;
+            this.buckets = new int[result.size()];
+            long bytes = ENTRY_BYTES;
+            for (Object value : result) {
+                Long id;
+                String itemName;
+                Integer price;
+                if (value instanceof Item) {
+                    Item item = (Item) value;
+                    id = item.getId();
+                    itemName = item.getItemName();
+                    price = item.getPrice();
+                } else {
+                    ItemSummary summary = (ItemSummary) value;
+                    id = summary.getId();
+                    itemName = summary.getItemName();
+                    price = summary.getPrice();
+                }
+                bytes += ITEM_BYTES + (itemName == null ? 0 : 2L * itemName.length());
+                if (id != null) {
+                    buckets[itemIds.size()] = bucketOf(price);
+                    itemIds.add(id);
+                }
+            }
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * 캐시된 결과에서 상품 하나가 들어 있는 가격 구간(비트)과, 그 상품이 들어 있는 결과 수
+     */
+    private static final class Hint {
+        final long buckets;
+        final int refs;
+
+        Hint(long buckets, int refs) {
+            this.buckets = buckets;
+            this.refs = refs;
+        }
+
+        Hint merge(Hint other) {
+            return new Hint(buckets | other.buckets, refs + other.refs);
+        }
+    }
+
+    /**
+     * 정규화한 검색 조건
+     */
+    private static final class SearchKey {
+        final boolean summary;
+        final String itemName;
+        final Integer maxPrice;
+        final Long afterId;
+        final Long beforeId;
+        final Integer size;
+
+        SearchKey(boolean summary, ItemSearchCond cond) {
+            this.summary = summary;
+            this.itemName = cond.getItemName() == null || cond.getItemName().isEmpty() ? null : cond.getItemName();
+            this.maxPrice = cond.getMaxPrice();
+            this.afterId = cond.getAfterId();
+            this.beforeId = cond.getBeforeId();
+            this.size = cond.getSize();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SearchKey)) {
+                return false;
+            }
+            SearchKey that = (SearchKey) o;
+            return summary == that.summary && Objects.equals(itemName, that.itemName) && Objects.equals(maxPrice, that.maxPrice)
+                    && Objects.equals(afterId, that.afterId) && Objects.equals(beforeId, that.beforeId) && Objects.equals(size, that.size);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(summary, itemName, maxPrice, afterId, beforeId, size);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package hello.itemservice.repository.columnar;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemKeysetPaging;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 컬럼 기반 메모리 저장소
+ * : MemoryItemRepository 는 상품마다 Item 객체(박싱된 Integer 필드 포함)를 힙에 보관한다.
+ *   수천만 건이 되면 객체 수 자체가 GC 부담이 된다.
+ * : price, quantity 는 off-heap primitive 컬럼({@link IntColumn})에, itemName 은 {@link NameDictionary} 코드로 저장한다.
+ * : Item 객체는 결과를 반환할 때만 만든다.
+ *
+ * 저장 구조
+ * : id 는 순차 발급되므로 행 번호 = id - idBase - 1 이다. id 컬럼 없이 findById 는 탐색 없이 바로 행을 읽는다.
+ * : idBase 는 clearStore 전까지 발급한 id 수다. clearStore 후에도 id 를 다시 쓰지 않는다. (다른 메모리 저장소의 sequence 와 같다)
+ * : price, quantity 의 null 은 컬럼의 null 비트셋으로 표현한다.
+ *
+ * 검색
+ * : itemName 조건은 사전 항목에 대해 한 번만 contains 를 수행해 코드 비트셋을 만든다.
+ * : 이후 행 단위로는 int 비교만 하는 단순한 컬럼 스캔이 된다.
+ * : 키셋 페이징은 커서 id 를 행 번호로 바꿔 그 위치부터 size 건을 채울 때까지만 스캔한다.
+ */
+@Repository
+public class ColumnarItemRepository implements ItemRepository {
+
+    private final IntColumn nameCodes = new IntColumn();
+    private final IntColumn prices = new IntColumn();
+    private final IntColumn quantities = new IntColumn();
+    private final NameDictionary dictionary = new NameDictionary();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int rowCount;
+    private long idBase;
+
+    @Override
+    public Item save(Item item) {
+        lock.writeLock().lock();
+        try {
+            int row = rowCount;
+            long id = idBase + row + 1;
+            nameCodes.set(row, dictionary.encode(item.getItemName()));
+            prices.setInteger(row, item.getPrice());
+            quantities.setInteger(row, item.getQuantity());
+            rowCount = row + 1;
+            item.setId(id);
+            return item;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(itemId);
+            if (row < 0) {
+                throw new NoSuchElementException("item not found: " + itemId);
+            }
+            int oldCode = nameCodes.get(row);
+            nameCodes.set(row, dictionary.encode(updateParam.getItemName()));
+            dictionary.release(oldCode);//새 코드를 먼저 얻는다. 이름이 같으면 같은 코드가 유지된다.
+            prices.setInteger(row, updateParam.getPrice());
+            quantities.setInteger(row, updateParam.getQuantity());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean adjustQuantity(Long itemId, int delta) {
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(itemId);
+            if (row < 0) {
+                throw new NoSuchElementException("item not found: " + itemId);
+            }
+            long quantity = (quantities.isNull(row) ? 0L : quantities.get(row)) + delta;
+            if (quantity < 0) {
+                return false;
+            }
+            quantities.set(row, Math.toIntExact(quantity));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        lock.readLock().lock();
+        try {
+            int row = rowOf(id);
+            return row < 0 ? Optional.empty() : Optional.of(toItem(row));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 읽기 락을 한 번만 잡고 id 마다 행을 바로 읽는다.
+     */
+    @Override
+    public List<Item> findAllById(Collection<Long> ids) {
+        List<Item> result = new ArrayList<>(ids.size());
+        lock.readLock().lock();
+        try {
+            for (Long id : new LinkedHashSet<>(ids)) {
+                int row = rowOf(id);
+                if (row >= 0) {
+                    result.add(toItem(row));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    @Override
+    public List<Item> findAll(ItemSearchCond cond) {
+        String itemName = cond.getItemName();
+        Integer maxPrice = cond.getMaxPrice();
+
+        lock.readLock().lock();
+        try {
+            BitSet nameMatches = StringUtils.hasText(itemName) ? dictionary.codesContaining(itemName) : null;
+            boolean priceFilter = maxPrice != null;
+            int max = priceFilter ? maxPrice : 0;
+
+            //키셋 페이징: 행 번호 = id - idBase - 1 이므로 커서를 바로 행 범위 [fromRow, toRow) 로 바꾼다.
+            int fromRow = cond.getAfterId() == null ? 0 : toRowBound(cond.getAfterId() - idBase);
+            int toRow = cond.getBeforeId() == null ? rowCount : toRowBound(cond.getBeforeId() - idBase - 1);
+            int limit = cond.getSize() == null ? Integer.MAX_VALUE : cond.getSize();
+            boolean backward = ItemKeysetPaging.isBackward(cond);
+
+            List<Item> result = new ArrayList<>();
+            for (int i = 0; i < toRow - fromRow && result.size() < limit; i++) {
+                int row = backward ? toRow - 1 - i : fromRow + i;
+                if (nameMatches != null) {
+                    int code = nameCodes.get(row);
+                    if (code == NameDictionary.NULL_CODE || !nameMatches.get(code)) {
+                        continue;
+                    }
+                }
+                if (priceFilter) {
+                    if (prices.isNull(row) || prices.get(row) > max) {
+                        continue;
+                    }
+                }
+                result.add(toItem(row));
+            }
+            return ItemKeysetPaging.toAscending(result, cond);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clearStore() {
+        lock.writeLock().lock();
+        try {
+            nameCodes.clear();
+            prices.clear();
+            quantities.clear();
+            dictionary.clear();
+            idBase += rowCount;
+            rowCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int rowOf(Long id) {
+        if (id == null || id <= idBase || id - idBase > rowCount) {
+            return -1;
+        }
+        return (int) (id - idBase - 1);
+    }
+
+    private int toRowBound(long row) {
+        return (int) Math.min(rowCount, Math.max(0, row));
+    }
+
+    private Item toItem(int row) {
+        Item item = new Item(
+                dictionary.decode(nameCodes.get(row)),
+                prices.getInteger(row),
+                quantities.getInteger(row));
+        item.setId(idBase + row + 1);
+        return item;
+    }
+}
@@ -0,0 +1,59 @@
+package hello.itemservice.repository.columnar;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * off-heap int 컬럼
+ * : 행을 CHUNK_ROWS 단위의 direct ByteBuffer 조각에 나눠 저장한다.
+ * : 커질 때 기존 데이터를 복사하지 않고 조각만 추가하므로, 수천만 행에서도 재할당 비용과 GC 대상 객체가 거의 없다.
+ * : null 은 값과 따로 {@link BitSet} 에 기록한다. int 값 하나를 null 표시로 예약하지 않으므로 모든 int 값을 저장할 수 있다.
+ *
+ * 동기화는 {@link ColumnarItemRepository} 의 락이 담당한다.
+ */
+final class IntColumn {
+
+    static final int CHUNK_SHIFT = 16;
+    static final int CHUNK_ROWS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_ROWS - 1;
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private final BitSet nulls = new BitSet();
+
+    int get(int row) {
+        return chunks.get(row >>> CHUNK_SHIFT).getInt((row & CHUNK_MASK) << 2);
+    }
+
+    boolean isNull(int row) {
+        return nulls.get(row);
+    }
+
+    Integer getInteger(int row) {
+        return isNull(row) ? null : get(row);
+    }
+
+    void set(int row, int value) {
+        int chunk = row >>> CHUNK_SHIFT;
+        while (chunks.size() <= chunk) {
+            chunks.add(ByteBuffer.allocateDirect(CHUNK_ROWS << 2));
+        }
+        chunks.get(chunk).putInt((row & CHUNK_MASK) << 2, value);
+        nulls.clear(row);
+    }
+
+    void setInteger(int row, Integer value) {
+        if (value == null) {
+            set(row, 0);
+            nulls.set(row);
+        } else {
+            set(row, value);
+        }
+    }
+
+    void clear() {
+        chunks.clear();
+        nulls.clear();
+    }
+}
@@ -0,0 +1,101 @@
+package hello.itemservice.repository.columnar;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * itemName 사전 인코딩
+ * : 같은 상품명은 String 하나만 보관하고, 행에는 int 코드만 저장한다.
+ * : contains 검색은 행마다가 아니라 사전 항목마다 한 번만 수행하고, 일치하는 코드를 {@link BitSet} 으로 돌려준다.
+ *
+ * 참조 수
+ * : 코드마다 그 이름을 쓰는 행의 수를 센다. update 로 이름이 바뀌면 이전 코드를 {@link #release(int)} 한다.
+ * : 0 이 된 코드는 사전에서 지우고 다음 encode 에서 다시 사용한다. 이름을 계속 바꿔도 사전은 현재 쓰이는 이름 수만큼만 유지된다.
+ *
+ * 동기화는 {@link ColumnarItemRepository} 의 락이 담당한다.
+ */
+final class NameDictionary {
+
+    static final int NULL_CODE = -1;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<Integer> refCounts = new ArrayList<>();
+    private final Deque<Integer> freeCodes = new ArrayDeque<>();
+
+    /**
+     * 이름의 코드를 돌려주고 참조 수를 하나 늘린다.
+     */
+    int encode(String name) {
+        if (name == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(name);
+        if (code != null) {
+            refCounts.set(code, refCounts.get(code) + 1);
+            return code;
+        }
+        Integer free = freeCodes.poll();
+        if (free != null) {
+            names.set(free, name);
+            refCounts.set(free, 1);
+            code = free;
+        } else {
+            names.add(name);
+            refCounts.add(1);
+            code = names.size() - 1;
+        }
+        codes.put(name, code);
+        return code;
+    }
+
+    /**
+     * 참조 수를 하나 줄이고, 0 이 되면 코드를 비운다.
+     */
+    void release(int code) {
+        if (code == NULL_CODE) {
+            return;
+        }
+        int count = refCounts.get(code) - 1;
+        refCounts.set(code, count);
+        if (count == 0) {
+            codes.remove(names.get(code));
+            names.set(code, null);
+            freeCodes.push(code);
+        }
+    }
+
+    String decode(int code) {
+        return code == NULL_CODE ? null : names.get(code);
+    }
+
+    BitSet codesContaining(String keyword) {
+        BitSet matches = new BitSet(names.size());
+        for (int code = 0; code < names.size(); code++) {
+            String name = names.get(code);
+            if (name != null && name.contains(keyword)) {
+                matches.set(code);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * 현재 사용 중인 이름 수
+     */
+    int size() {
+        return codes.size();
+    }
+
+    void clear() {
+        codes.clear();
+        names.clear();
+        refCounts.clear();
+        freeCodes.clear();
+    }
+}
@@ -0,0 +1,78 @@
+package hello.itemservice.repository.jdbctemplate;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemIdAllocator;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * JdbcTemplate 리포지토리 공용 배치 insert
+ * : JdbcTemplate.batchUpdate, SimpleJdbcInsert.executeBatch 는 영향받은 행 수(int[])만 반환하고 생성된 키는 돌려주지 않는다.
+ * : 그래서 {@link ConnectionCallback} 으로 PreparedStatement 를 직접 다룬다.
+ *   addBatch 로 묶어 executeBatch 로 한 번에 보내고, getGeneratedKeys 로 생성된 id 를 순서대로 받아 Item 에 채운다.
+ * : {@link #BATCH_SIZE} 건씩 나누어 전송한다. (드라이버 버퍼가 한없이 커지지 않도록)
+ *
+ * {@link ItemIdAllocator} 를 전달하면
+ * : id 를 미리 채워서 id 컬럼까지 insert 한다. 생성된 키를 받을 필요가 없으므로 JdbcTemplate.batchUpdate 로 보낸다.
+ */
+class ItemBatchInsert {
+
+    static final int BATCH_SIZE = 1000;
+
+    private static final String SQL = "insert into item(item_name, price, quantity) values(?,?,?)";
+    private static final String SQL_WITH_ID = "insert into item(id, item_name, price, quantity) values(?,?,?,?)";
+
+    private ItemBatchInsert() {
+    }
+
+    static List<Item> insert(JdbcTemplate template, List<Item> items, ItemIdAllocator idAllocator) {
+        if (items.isEmpty()) {
+            return items;
+        }
+        if (idAllocator != null) {
+            return insertWithIds(template, items, idAllocator);
+        }
+        return template.execute((ConnectionCallback<List<Item>>) connection -> {
+            try (PreparedStatement pstmt = connection.prepareStatement(SQL, new String[]{"id"})) {
+                for (int from = 0; from < items.size(); from += BATCH_SIZE) {
+                    List<Item> chunk = items.subList(from, Math.min(from + BATCH_SIZE, items.size()));
+                    for (Item item : chunk) {
+                        pstmt.setString(1, item.getItemName());
+                        pstmt.setObject(2, item.getPrice(), Types.INTEGER);
+                        pstmt.setObject(3, item.getQuantity(), Types.INTEGER);
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+
+                    try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                        for (Item item : chunk) {
+                            if (!keys.next()) {
+                                throw new IllegalStateException("generated keys are fewer than inserted rows");
+                            }
+                            item.setId(keys.getLong(1));
+                        }
+                    }
+                }
+            }
+            return items;
+        });
+    }
+
+    private static List<Item> insertWithIds(JdbcTemplate template, List<Item> items, ItemIdAllocator idAllocator) {
+        for (Item item : items) {
+            item.setId(idAllocator.nextId());
+        }
+        template.batchUpdate(SQL_WITH_ID, items, BATCH_SIZE, (pstmt, item) -> {
+            pstmt.setLong(1, item.getId());
+            pstmt.setString(2, item.getItemName());
+            pstmt.setObject(3, item.getPrice(), Types.INTEGER);
+            pstmt.setObject(4, item.getQuantity(), Types.INTEGER);
+        });
+        return items;
+    }
+}
@@ -0,0 +1,120 @@
+package hello.itemservice.repository.jdbctemplate;
+
+import hello.itemservice.repository.ItemNameNgrams;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * item_ngram 사이드 테이블 (sql/schema.sql 참고)
+ * : like concat('%',?,'%') 는 앞에 와일드카드가 있어 item_name 인덱스를 사용할 수 없다.
+ * : 상품명을 {@link ItemNameNgrams} 로 잘라 (gram, item_id) 로 저장해두고,
+ *   검색어의 조각을 모두 가진 item_id 만 후보로 뽑은 뒤 기존 like 조건으로 다시 확인한다.
+ *
+ * 사용법
+ * : save, update(이름 변경) 시 {@link #index(long, String)} 로 갱신한다. saveAll, updateAll 은 {@link #indexAll(Map)} 을 사용한다.
+ * : findAll 의 where 절에 {@link #CANDIDATE_CONDITION} 을 추가하고 {@link #addParams(MapSqlParameterSource, String)} 로 파라미터를 채운다.
+ * : 사이드 테이블을 처음 켜면 기존 상품은 item_ngram 행이 없어 검색되지 않는다. {@link #backfill()} 로 채운다.
+ *   ({@link JdbcTemplateItemRepositoryV3} 가 생성 시점에 호출한다)
+ *
+ * 한계
+ * : item 테이블을 이 클래스를 거치지 않고 바꾸면(다른 저장소, 직접 SQL) item_ngram 이 어긋난다.
+ *   backfill 은 행이 없는 상품만 채우므로, 이름이 바뀐 상품의 오래된 조각은 고치지 못한다.
+ */
+public class ItemNgramTable {
+
+    /**
+     * item_ngram 의 primary key 가 (gram, item_id) 이므로 count(*) 는 일치한 조각의 수와 같다.
+     */
+    public static final String CANDIDATE_CONDITION = "id in (" +
+            "select item_id from item_ngram where gram in (:grams) " +
+            "group by item_id having count(*)=:gramCount)";
+
+    static final int BACKFILL_BATCH_SIZE = 1000;
+
+    private final NamedParameterJdbcTemplate template;
+
+    public ItemNgramTable(DataSource dataSource) {
+        this.template = new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    public void index(long itemId, String itemName) {
+        template.update("delete from item_ngram where item_id=:itemId", Map.of("itemId", itemId));
+
+        Set<String> grams = ItemNameNgrams.indexGrams(itemName);
+        SqlParameterSource[] params = grams.stream()
+                .map(gram -> new MapSqlParameterSource()
+                        .addValue("gram", gram)
+                        .addValue("itemId", itemId))
+                .toArray(SqlParameterSource[]::new);
+        template.batchUpdate("insert into item_ngram(gram, item_id) values(:gram, :itemId)", params);
+    }
+
+    /**
+     * 여러 상품의 n-gram 을 배치로 갱신한다. (key: itemId, value: itemName)
+     */
+    public void indexAll(Map<Long, String> itemNames) {
+        if (itemNames.isEmpty()) {
+            return;
+        }
+        SqlParameterSource[] deleteParams = itemNames.keySet().stream()
+                .map(itemId -> new MapSqlParameterSource("itemId", itemId))
+                .toArray(SqlParameterSource[]::new);
+        template.batchUpdate("delete from item_ngram where item_id=:itemId", deleteParams);
+
+        List<SqlParameterSource> insertParams = new ArrayList<>();
+        itemNames.forEach((itemId, itemName) -> {
+            for (String gram : ItemNameNgrams.indexGrams(itemName)) {
+                insertParams.add(new MapSqlParameterSource()
+                        .addValue("gram", gram)
+                        .addValue("itemId", itemId));
+            }
+        });
+        template.batchUpdate("insert into item_ngram(gram, item_id) values(:gram, :itemId)",
+                insertParams.toArray(new SqlParameterSource[0]));
+    }
+
+    /**
+     * item_ngram 행이 하나도 없는 상품을 id 순으로 BACKFILL_BATCH_SIZE 건씩 색인한다.
+     * : 커서를 연 채로 쓰지 않도록 한 묶음을 읽고 색인한 뒤, 마지막 id 다음부터 다시 읽는다. (키셋)
+     * : 조각이 없는 이름(null, 빈 문자열)은 쓰는 행이 없으므로 다음 호출에서 다시 확인된다.
+     *
+     * @return 확인한 상품 수
+     */
+    public int backfill() {
+        int count = 0;
+        long lastId = 0;
+        while (true) {
+            Map<Long, String> batch = new LinkedHashMap<>();
+            template.query("select id, item_name from item where id > :lastId " +
+                            "and not exists (select 1 from item_ngram where item_ngram.item_id = item.id) " +
+                            "order by id limit :size",
+                    new MapSqlParameterSource()
+                            .addValue("lastId", lastId)
+                            .addValue("size", BACKFILL_BATCH_SIZE),
+                    (RowCallbackHandler) rs -> batch.put(rs.getLong("id"), rs.getString("item_name")));
+            if (batch.isEmpty()) {
+                return count;
+            }
+            indexAll(batch);
+            count += batch.size();
+            for (Long id : batch.keySet()) {
+                lastId = id;
+            }
+        }
+    }
+
+    public void addParams(MapSqlParameterSource param, String keyword) {
+        Set<String> grams = ItemNameNgrams.queryGrams(keyword);
+        param.addValue("grams", grams);
+        param.addValue("gramCount", grams.size());
+    }
+}
@@ -1,9 +1,14 @@
 package hello.itemservice.repository.jdbctemplate;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemIdAllocator;
+import hello.itemservice.repository.ItemIdBatches;
+import hello.itemservice.repository.ItemKeysetPaging;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemSearchShape;
 import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.QueryVariantRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -16,24 +21,60 @@ import org.springframework.util.StringUtils;
 import javax.sql.DataSource;
 import java.sql.PreparedStatement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * {@link JdbcTemplate}
+ *
+ * {@link ItemIdAllocator}
+ * : 생성자로 전달하면 id 를 미리 발급해서 id 컬럼까지 insert 한다. 생성된 키를 돌려받지 않는다.
+ *
+ * saveAll, updateAll
+ * : 여러 행을 JDBC 배치로 묶어서 보낸다. saveAll 은 생성된 키도 한 번에 받는다. ({@link ItemBatchInsert})
+ *
+ * streamAll
+ * : queryForStream 으로 ResultSet 을 열어둔 채 한 행씩 매핑한다. 드라이버가 {@link #FETCH_SIZE} 행씩 가져오도록 fetch size 를 지정한 별도 템플릿을 사용한다.
+ *
+ * findAll SQL
+ * : 조건 조합별 SQL 을 {@link QueryVariantRegistry} 에 미리 만들어 두고, 요청 시에는 파라미터만 채운다.
  */
 @Slf4j
 @Repository
 public class JdbcTemplateItemRepositoryV1 implements ItemRepository {
 
+    static final int FETCH_SIZE = 1000;
+
     private final JdbcTemplate template;
+    private final JdbcTemplate streamTemplate;
+    private final ItemIdAllocator idAllocator;
+    private final QueryVariantRegistry<String> findAllQueries = new QueryVariantRegistry<>("JdbcTemplateItemRepositoryV1.findAll", this::findAllSql);
 
     public JdbcTemplateItemRepositoryV1(DataSource dataSource) {
+        this(dataSource, null);
+    }
+
+    public JdbcTemplateItemRepositoryV1(DataSource dataSource, ItemIdAllocator idAllocator) {
+        this.idAllocator = idAllocator;
         this.template = new JdbcTemplate(dataSource);
+        this.streamTemplate = new JdbcTemplate(dataSource);
+        this.streamTemplate.setFetchSize(FETCH_SIZE);
     }
 
     @Override
     public Item save(Item item) {
+        if (idAllocator != null) {
+            item.setId(idAllocator.nextId());
+            template.update("insert into item(id, item_name, price, quantity) values(?,?,?,?)",
+                    item.getId(), item.getItemName(), item.getPrice(), item.getQuantity());
+            return item;
+        }
+
         String sql = "insert into item(item_name, price, quantity) values(?,?,?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();//db key column 값 확인
         template.update(connection -> {
@@ -62,6 +103,37 @@ public class JdbcTemplateItemRepositoryV1 implements ItemRepository {
                 itemId);
     }
 
+    /**
+     * 조건부 update 한 문장으로 증감한다. DB 가 행 잠금 안에서 조건 확인과 수정을 함께 처리한다.
+     * : 수정된 행이 없을 때만 상품이 있는지 다시 확인한다. (재고 부족과 상품 없음 구분)
+     */
+    @Override
+    public boolean adjustQuantity(Long itemId, int delta) {
+        String sql = "update item set quantity = coalesce(quantity, 0) + ? where id = ? and coalesce(quantity, 0) + ? >= 0";
+        int updated = template.update(sql, delta, itemId, delta);
+        if (updated == 0 && findById(itemId).isEmpty()) {
+            throw new NoSuchElementException("item not found: " + itemId);
+        }
+        return updated > 0;
+    }
+
+    @Override
+    public List<Item> saveAll(List<Item> items) {
+        return ItemBatchInsert.insert(template, items, idAllocator);
+    }
+
+    @Override
+    public void updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        String sql = "update item set item_name=?, price=?, quantity=? where id=?";
+        List<Object[]> batchArgs = new ArrayList<>(updateParams.size());
+        updateParams.forEach((itemId, updateParam) -> batchArgs.add(new Object[]{
+                updateParam.getItemName(),
+                updateParam.getPrice(),
+                updateParam.getQuantity(),
+                itemId}));
+        template.batchUpdate(sql, batchArgs);
+    }
+
     @Override
     public Optional<Item> findById(Long id) {
         String sql = "select id, item_name, price, quantity from item where id=?";
@@ -73,36 +145,110 @@ public class JdbcTemplateItemRepositoryV1 implements ItemRepository {
         }
     }
 
+    /**
+     * in 목록 조회. 묶음 길이({@link ItemIdBatches})마다 ? 개수가 다른 SQL 을 사용한다.
+     */
+    @Override
+    public List<Item> findAllById(Collection<Long> ids) {
+        return ItemIdBatches.findAll(ids, batch -> {
+            String sql = "select id, item_name, price, quantity from item where id in (" + String.join(",", Collections.nCopies(batch.size(), "?")) + ")";
+            return template.query(sql, itemRowMapper(), batch.toArray());
+        });
+    }
+
     @Override
     public List<Item> findAll(ItemSearchCond cond) {
+        String sql = findAllQueries.get(cond);
+        List<Item> items = template.query(sql, itemRowMapper(), findAllParams(cond));
+        return ItemKeysetPaging.toAscending(items, cond);
+    }
+
+    @Override
+    public Stream<Item> streamAll(ItemSearchCond cond) {
+        if (ItemKeysetPaging.isBackward(cond)) {
+            return findAll(cond).stream();//이전 페이지는 id 내림차순으로 읽어 뒤집어야 하므로 스트리밍하지 않는다.
+        }
+        return streamTemplate.queryForStream(findAllQueries.get(cond), itemRowMapper(), findAllParams(cond));
+    }
+
+    /**
+     * 조건 조합(shape)별 SQL. 애플리케이션 시작 시점에 {@link QueryVariantRegistry} 가 한 번씩만 호출한다.
+     */
+    private String findAllSql(int shape) {
         String sql = "select id, item_name, price, quantity from item";
-        String itemName = cond.getItemName();
-        Integer maxPrice = cond.getMaxPrice();
 
-        if (StringUtils.hasText(itemName) || maxPrice != null) {
+        if (ItemSearchShape.hasWhere(shape)) {
             sql += " where";
         }
 
         boolean andFlag = false;
-        List<Object> params = new ArrayList<>();
 
-        if (StringUtils.hasText(itemName)) {
+        if (ItemSearchShape.has(shape, ItemSearchShape.ITEM_NAME)) {
             sql += " item_name like concat('%',?,'%')";
-            params.add(itemName);
             andFlag = true;
         }
 
-        if (maxPrice != null) {
+        if (ItemSearchShape.has(shape, ItemSearchShape.MAX_PRICE)) {
             if (andFlag) {
                 sql += " and";
             }
             sql += " price<=?";
-            params.add(maxPrice);
+            andFlag = true;
+        }
+
+        //키셋 페이징
+        if (ItemSearchShape.has(shape, ItemSearchShape.AFTER_ID)) {
+            if (andFlag) {
+                sql += " and";
+            }
+            sql += " id>?";
+            andFlag = true;
+        }
+
+        if (ItemSearchShape.has(shape, ItemSearchShape.BEFORE_ID)) {
+            if (andFlag) {
+                sql += " and";
+            }
+            sql += " id<?";
         }
 
-        log.info("sql={}", sql);
-        List<Item> items = template.query(sql, itemRowMapper(), params.toArray());
-        return items;
+        if (ItemSearchShape.isPaged(shape)) {
+            sql += ItemSearchShape.isBackward(shape) ? " order by id desc" : " order by id";
+        }
+
+        if (ItemSearchShape.has(shape, ItemSearchShape.SIZE)) {
+            sql += " limit ?";
+        }
+
+        log.debug("shape={}, sql={}", shape, sql);
+        return sql;
+    }
+
+    /**
+     * findAllSql 의 ? 순서와 같은 순서로 값이 있는 조건만 담는다.
+     */
+    private Object[] findAllParams(ItemSearchCond cond) {
+        List<Object> params = new ArrayList<>();
+        if (StringUtils.hasText(cond.getItemName())) {
+            params.add(cond.getItemName());
+        }
+        if (cond.getMaxPrice() != null) {
+            params.add(cond.getMaxPrice());
+        }
+        if (cond.getAfterId() != null) {
+            params.add(cond.getAfterId());
+        }
+        if (cond.getBeforeId() != null) {
+            params.add(cond.getBeforeId());
+        }
+        if (cond.getSize() != null) {
+            params.add(cond.getSize());
+        }
+        return params.toArray();
+    }
+
+    public QueryVariantRegistry<String> getFindAllQueries() {
+        return findAllQueries;
     }
 
     private RowMapper<Item> itemRowMapper() {
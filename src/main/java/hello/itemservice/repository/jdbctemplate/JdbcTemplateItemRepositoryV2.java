@@ -1,9 +1,16 @@
 package hello.itemservice.repository.jdbctemplate;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.domain.ItemRowMapper;
+import hello.itemservice.domain.ItemSqlParameterSource;
+import hello.itemservice.repository.ItemIdAllocator;
+import hello.itemservice.repository.ItemIdBatches;
+import hello.itemservice.repository.ItemKeysetPaging;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemSearchShape;
 import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.QueryVariantRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
@@ -16,14 +23,15 @@ import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
-import org.springframework.util.StringUtils;
 
 import javax.sql.DataSource;
 import java.sql.PreparedStatement;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * {@link NamedParameterJdbcTemplate}
@@ -34,18 +42,45 @@ import java.util.Optional;
  *
  * {@link BeanPropertyRowMapper}: BeanPropertyRowMapper 는 ResultSet 의 결과를 받아서 자바빈 규약에 맞추어 데이터를 변환한다.
  *
+ * {@link ItemRowMapper}, {@link ItemSqlParameterSource}: item-mapper-processor 가 컴파일 시점에 생성한 코드이다.
+ * : BeanPropertyRowMapper 는 행마다 컬럼 이름으로 프로퍼티를 찾고 리플렉션으로 setter 를 호출한다.
+ * : 생성된 매퍼는 컬럼 인덱스로 읽고 setter 를 직접 호출한다. 그래서 select 절은 ItemRowMapper.COLUMNS 를 사용한다.
+ *
  * : SQL에서 다음과 같이 ? 대신에 :파라미터이름 을 받는 것을 확인할 수 있다.
  * : this.template = new NamedParameterJdbcTemplate(dataSource)
  * : NamedParameterJdbcTemplate 도 내부에 dataSource 가 필요하다.
+ *
+ * {@link ItemIdAllocator}
+ * : 생성자로 전달하면 id 를 미리 발급해서 id 컬럼까지 insert 한다. ({@link JdbcTemplateItemRepositoryV1} 참고)
+ *
+ * saveAll, updateAll
+ * : 여러 행을 JDBC 배치로 묶어서 보낸다. saveAll 은 생성된 키도 한 번에 받는다. ({@link ItemBatchInsert})
+ *
+ * streamAll
+ * : fetch size 를 지정한 템플릿의 queryForStream 을 사용한다. ({@link JdbcTemplateItemRepositoryV1} 참고)
+ *
+ * findAll SQL
+ * : 조건 조합별 SQL 을 {@link QueryVariantRegistry} 에 미리 만들어 둔다. 같은 문자열이 반복되므로 NamedParameterJdbcTemplate 의 ParsedSql 캐시도 적중한다.
  */
 @Slf4j
 @Repository
 public class JdbcTemplateItemRepositoryV2 implements ItemRepository {
 
     private final NamedParameterJdbcTemplate template;
+    private final NamedParameterJdbcTemplate streamTemplate;
+    private final ItemIdAllocator idAllocator;
+    private final QueryVariantRegistry<String> findAllQueries = new QueryVariantRegistry<>("JdbcTemplateItemRepositoryV2.findAll", this::findAllSql);
 
     public JdbcTemplateItemRepositoryV2(DataSource dataSource) {
+        this(dataSource, null);
+    }
+
+    public JdbcTemplateItemRepositoryV2(DataSource dataSource, ItemIdAllocator idAllocator) {
+        this.idAllocator = idAllocator;
         this.template = new NamedParameterJdbcTemplate(dataSource);
+        JdbcTemplate fetchSizeTemplate = new JdbcTemplate(dataSource);
+        fetchSizeTemplate.setFetchSize(JdbcTemplateItemRepositoryV1.FETCH_SIZE);
+        this.streamTemplate = new NamedParameterJdbcTemplate(fetchSizeTemplate);
     }
 
     @Override
@@ -53,7 +88,14 @@ public class JdbcTemplateItemRepositoryV2 implements ItemRepository {
         String sql = "insert into item(item_name, price, quantity) " +
                 "values(:itemName, :price, :quantity)";
 
-        SqlParameterSource param = new BeanPropertySqlParameterSource(item);//item field 의 이름으로 sql 과 매핑시켜준다.
+        if (idAllocator != null) {
+            item.setId(idAllocator.nextId());
+            template.update("insert into item(id, item_name, price, quantity) " +
+                    "values(:id, :itemName, :price, :quantity)", new ItemSqlParameterSource(item));
+            return item;
+        }
+
+        SqlParameterSource param = new ItemSqlParameterSource(item);//item field 의 이름으로 sql 과 매핑시켜준다. (BeanPropertySqlParameterSource 와 같은 역할, 리플렉션 없음)
 
         KeyHolder keyHolder = new GeneratedKeyHolder();//db key column 값 확인
         template.update(sql, param, keyHolder);
@@ -80,9 +122,45 @@ public class JdbcTemplateItemRepositoryV2 implements ItemRepository {
         template.update(sql, param);
     }
 
+    @Override
+    public boolean adjustQuantity(Long itemId, int delta) {
+        String sql = "update item set quantity = coalesce(quantity, 0) + :delta " +
+                "where id = :id and coalesce(quantity, 0) + :delta >= 0";
+        SqlParameterSource param = new MapSqlParameterSource()
+                .addValue("delta", delta)
+                .addValue("id", itemId);
+        int updated = template.update(sql, param);
+        if (updated == 0 && findById(itemId).isEmpty()) {
+            throw new NoSuchElementException("item not found: " + itemId);
+        }
+        return updated > 0;
+    }
+
+    @Override
+    public List<Item> saveAll(List<Item> items) {
+        return ItemBatchInsert.insert(template.getJdbcTemplate(), items, idAllocator);
+    }
+
+    @Override
+    public void updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        String sql = "update item set " +
+                "item_name=:itemName, price=:price, quantity=:quantity " +
+                "where id=:id";
+
+        SqlParameterSource[] params = updateParams.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("itemName", entry.getValue().getItemName())
+                        .addValue("price", entry.getValue().getPrice())
+                        .addValue("quantity", entry.getValue().getQuantity())
+                        .addValue("id", entry.getKey()))
+                .toArray(SqlParameterSource[]::new);
+
+        template.batchUpdate(sql, params);
+    }
+
     @Override
     public Optional<Item> findById(Long id) {
-        String sql = "select id, item_name, price, quantity from item where id=:id";
+        String sql = "select " + ItemRowMapper.COLUMNS + " from item where id=:id";
         try {
             Map<String, Long> param = Map.of("id", id);
             Item item = template.queryForObject(sql, param, itemRowMapper());
@@ -92,39 +170,90 @@ public class JdbcTemplateItemRepositoryV2 implements ItemRepository {
         }
     }
 
+    /**
+     * in 목록 조회. NamedParameterJdbcTemplate 이 :ids 를 목록 길이만큼의 ? 로 펼친다.
+     */
+    @Override
+    public List<Item> findAllById(Collection<Long> ids) {
+        String sql = "select " + ItemRowMapper.COLUMNS + " from item where id in (:ids)";
+        return ItemIdBatches.findAll(ids, batch -> template.query(sql, Map.of("ids", batch), itemRowMapper()));
+    }
+
     @Override
     public List<Item> findAll(ItemSearchCond cond) {
-        String itemName = cond.getItemName();
-        Integer maxPrice = cond.getMaxPrice();
+        BeanPropertySqlParameterSource param = new BeanPropertySqlParameterSource(cond);
+        List<Item> items = template.query(findAllQueries.get(cond), param, itemRowMapper());
+        return ItemKeysetPaging.toAscending(items, cond);
+    }
 
+    @Override
+    public Stream<Item> streamAll(ItemSearchCond cond) {
+        if (ItemKeysetPaging.isBackward(cond)) {
+            return findAll(cond).stream();//이전 페이지는 id 내림차순으로 읽어 뒤집어야 하므로 스트리밍하지 않는다.
+        }
         BeanPropertySqlParameterSource param = new BeanPropertySqlParameterSource(cond);
+        return streamTemplate.queryForStream(findAllQueries.get(cond), param, itemRowMapper());
+    }
 
-        String sql = "select id, item_name, price, quantity from item ";
+    /**
+     * 조건 조합(shape)별 SQL. 애플리케이션 시작 시점에 {@link QueryVariantRegistry} 가 한 번씩만 호출한다.
+     */
+    private String findAllSql(int shape) {
+        String sql = "select " + ItemRowMapper.COLUMNS + " from item ";
 
-        if (StringUtils.hasText(itemName) || maxPrice != null) {
+        if (ItemSearchShape.hasWhere(shape)) {
             sql += " where";
         }
 
         boolean andFlag = false;
 
-        if (StringUtils.hasText(itemName)) {
+        if (ItemSearchShape.has(shape, ItemSearchShape.ITEM_NAME)) {
             sql += " item_name like concat('%',:itemName,'%')";
             andFlag = true;
         }
 
-        if (maxPrice != null) {
+        if (ItemSearchShape.has(shape, ItemSearchShape.MAX_PRICE)) {
             if (andFlag) {
                 sql += " and";
             }
             sql += " price<=:maxPrice";
+            andFlag = true;
         }
 
-        log.info("sql={}", sql);
-        List<Item> items = template.query(sql, param, itemRowMapper());
-        return items;
+        //키셋 페이징
+        if (ItemSearchShape.has(shape, ItemSearchShape.AFTER_ID)) {
+            if (andFlag) {
+                sql += " and";
+            }
+            sql += " id>:afterId";
+            andFlag = true;
+        }
+
+        if (ItemSearchShape.has(shape, ItemSearchShape.BEFORE_ID)) {
+            if (andFlag) {
+                sql += " and";
+            }
+            sql += " id<:beforeId";
+        }
+
+        if (ItemSearchShape.isPaged(shape)) {
+            sql += ItemSearchShape.isBackward(shape) ? " order by id desc" : " order by id";
+        }
+
+        if (ItemSearchShape.has(shape, ItemSearchShape.SIZE)) {
+            sql += " limit :size";
+        }
+
+        log.debug("shape={}, sql={}", shape, sql);
+        return sql;
+    }
+
+    public QueryVariantRegistry<String> getFindAllQueries() {
+        return findAllQueries;
     }
 
     private RowMapper<Item> itemRowMapper() {
-        return BeanPropertyRowMapper.newInstance(Item.class); //camel 변환 지원; String sql = "select id, item_name as itemName, price, quantity from item "; as 별칭 지원해줌.
+        //return BeanPropertyRowMapper.newInstance(Item.class); //camel 변환 지원; String sql = "select id, item_name as itemName, price, quantity from item "; as 별칭 지원해줌.
+        return ItemRowMapper.INSTANCE;//컴파일 시점에 생성된 인덱스 기반 매퍼, select 절은 ItemRowMapper.COLUMNS 순서를 따른다.
     }
 }
@@ -1,14 +1,20 @@
 package hello.itemservice.repository.jdbctemplate;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.domain.ItemRowMapper;
+import hello.itemservice.domain.ItemSqlParameterSource;
+import hello.itemservice.repository.ItemIdAllocator;
+import hello.itemservice.repository.ItemIdBatches;
+import hello.itemservice.repository.ItemKeysetPaging;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemSearchShape;
 import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.QueryVariantRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
@@ -17,33 +23,85 @@ import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 
 import javax.sql.DataSource;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * {@link SimpleJdbcInsert}
+ *
+ * {@link ItemNgramTable}
+ * : 생성자로 전달하면 itemName 검색을 n-gram 사이드 테이블로 먼저 좁힌 뒤 like 로 확인한다. (전달하지 않으면 기존과 동일)
+ * : 생성 시점에 기존 상품 중 item_ngram 행이 없는 상품을 채운다. ({@link ItemNgramTable#backfill()})
+ *
+ * {@link ItemIdAllocator}
+ * : 생성자로 전달하면 id 를 미리 발급해서 SimpleJdbcInsert.execute 로 id 컬럼까지 insert 한다. ({@link JdbcTemplateItemRepositoryV1} 참고)
+ *
+ * saveAll, updateAll
+ * : SimpleJdbcInsert.executeBatch 는 생성된 키를 돌려주지 않으므로, saveAll 은 V1, V2 와 같은 {@link ItemBatchInsert} 를 사용한다.
+ *
+ * streamAll
+ * : fetch size 를 지정한 템플릿의 queryForStream 을 사용한다. ({@link JdbcTemplateItemRepositoryV1} 참고)
+ *
+ * findAll SQL
+ * : 조건 조합별 SQL 을 {@link QueryVariantRegistry} 에 미리 만들어 둔다. ({@link JdbcTemplateItemRepositoryV2} 참고)
  */
 @Slf4j
 @Repository
 public class JdbcTemplateItemRepositoryV3 implements ItemRepository {
 
     private final NamedParameterJdbcTemplate template;
+    private final NamedParameterJdbcTemplate streamTemplate;
     private final SimpleJdbcInsert jdbcInsert;
+    private final ItemNgramTable ngramTable;
+    private final ItemIdAllocator idAllocator;
+    private final QueryVariantRegistry<String> findAllQueries;
 
     public JdbcTemplateItemRepositoryV3(DataSource dataSource) {
+        this(dataSource, null);
+    }
+
+    public JdbcTemplateItemRepositoryV3(DataSource dataSource, ItemNgramTable ngramTable) {
+        this(dataSource, ngramTable, null);
+    }
+
+    public JdbcTemplateItemRepositoryV3(DataSource dataSource, ItemNgramTable ngramTable, ItemIdAllocator idAllocator) {
+        this.ngramTable = ngramTable;
+        this.idAllocator = idAllocator;
+        this.findAllQueries = new QueryVariantRegistry<>("JdbcTemplateItemRepositoryV3.findAll", this::findAllSql);//ngramTable 사용 여부가 정해진 뒤에 만든다.
         this.template = new NamedParameterJdbcTemplate(dataSource);
-        this.jdbcInsert = new SimpleJdbcInsert(dataSource)
-                .withTableName("item")
-                .usingGeneratedKeyColumns("id");
+        JdbcTemplate fetchSizeTemplate = new JdbcTemplate(dataSource);
+        fetchSizeTemplate.setFetchSize(JdbcTemplateItemRepositoryV1.FETCH_SIZE);
+        this.streamTemplate = new NamedParameterJdbcTemplate(fetchSizeTemplate);
+        SimpleJdbcInsert insert = new SimpleJdbcInsert(dataSource)
+                .withTableName("item");
                 //.usingColumns("item_name", "price", "quantity");//생략 가능, 생략시 전체 컬럼 저장
+        this.jdbcInsert = idAllocator == null ? insert.usingGeneratedKeyColumns("id") : insert;//id 를 미리 발급하면 id 컬럼까지 insert
+        if (ngramTable != null) {
+            int indexed = ngramTable.backfill();//사이드 테이블을 켜기 전에 저장된 상품이 검색에서 빠지지 않도록
+            log.info("item_ngram backfill: {} items", indexed);
+        }
     }
 
     @Override
     public Item save(Item item) {
-        SqlParameterSource param = new BeanPropertySqlParameterSource(item);//item field 의 이름으로 sql 과 매핑시켜준다.
-        long key = jdbcInsert.executeAndReturnKey(param).longValue();//o.s.jdbc.core.simple.SimpleJdbcInsert    : Compiled insert object: insert string is [INSERT INTO item (ITEM_NAME, PRICE, QUANTITY) VALUES(?, ?, ?)]
-        item.setId(key);
+        SqlParameterSource param = new ItemSqlParameterSource(item);//item field 의 이름으로 sql 과 매핑시켜준다. (BeanPropertySqlParameterSource 와 같은 역할, 리플렉션 없음)
+        long key;
+        if (idAllocator != null) {
+            key = idAllocator.nextId();
+            item.setId(key);
+            jdbcInsert.execute(param);
+        } else {
+            key = jdbcInsert.executeAndReturnKey(param).longValue();//o.s.jdbc.core.simple.SimpleJdbcInsert    : Compiled insert object: insert string is [INSERT INTO item (ITEM_NAME, PRICE, QUANTITY) VALUES(?, ?, ?)]
+            item.setId(key);
+        }
+        if (ngramTable != null) {
+            ngramTable.index(key, item.getItemName());
+        }
         return item;
     }
 
@@ -61,11 +119,61 @@ public class JdbcTemplateItemRepositoryV3 implements ItemRepository {
                 .addValue("id", itemId);//이 부분이 별도로 필요하다 (BeanPropertySqlParameterSource 사용 불가).
 
         template.update(sql, param);
+        if (ngramTable != null) {
+            ngramTable.index(itemId, updateParam.getItemName());
+        }
+    }
+
+    @Override
+    public boolean adjustQuantity(Long itemId, int delta) {
+        String sql = "update item set quantity = coalesce(quantity, 0) + :delta " +
+                "where id = :id and coalesce(quantity, 0) + :delta >= 0";
+        SqlParameterSource param = new MapSqlParameterSource()
+                .addValue("delta", delta)
+                .addValue("id", itemId);
+        int updated = template.update(sql, param);
+        if (updated == 0 && findById(itemId).isEmpty()) {
+            throw new NoSuchElementException("item not found: " + itemId);
+        }
+        return updated > 0;
+    }
+
+    @Override
+    public List<Item> saveAll(List<Item> items) {
+        ItemBatchInsert.insert(template.getJdbcTemplate(), items, idAllocator);
+        if (ngramTable != null) {
+            Map<Long, String> itemNames = new HashMap<>();
+            items.forEach(item -> itemNames.put(item.getId(), item.getItemName()));
+            ngramTable.indexAll(itemNames);
+        }
+        return items;
+    }
+
+    @Override
+    public void updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        String sql = "update item set " +
+                "item_name=:itemName, price=:price, quantity=:quantity " +
+                "where id=:id";
+
+        SqlParameterSource[] params = updateParams.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("itemName", entry.getValue().getItemName())
+                        .addValue("price", entry.getValue().getPrice())
+                        .addValue("quantity", entry.getValue().getQuantity())
+                        .addValue("id", entry.getKey()))
+                .toArray(SqlParameterSource[]::new);
+
+        template.batchUpdate(sql, params);
+        if (ngramTable != null) {
+            Map<Long, String> itemNames = new HashMap<>();
+            updateParams.forEach((itemId, updateParam) -> itemNames.put(itemId, updateParam.getItemName()));
+            ngramTable.indexAll(itemNames);
+        }
     }
 
     @Override
     public Optional<Item> findById(Long id) {
-        String sql = "select id, item_name, price, quantity from item where id=:id";
+        String sql = "select " + ItemRowMapper.COLUMNS + " from item where id=:id";
         try {
             Map<String, Long> param = Map.of("id", id);
             Item item = template.queryForObject(sql, param, itemRowMapper());
@@ -75,39 +183,104 @@ public class JdbcTemplateItemRepositoryV3 implements ItemRepository {
         }
     }
 
+    /**
+     * in 목록 조회. NamedParameterJdbcTemplate 이 :ids 를 목록 길이만큼의 ? 로 펼친다.
+     */
+    @Override
+    public List<Item> findAllById(Collection<Long> ids) {
+        String sql = "select " + ItemRowMapper.COLUMNS + " from item where id in (:ids)";
+        return ItemIdBatches.findAll(ids, batch -> template.query(sql, Map.of("ids", batch), itemRowMapper()));
+    }
+
     @Override
     public List<Item> findAll(ItemSearchCond cond) {
-        String itemName = cond.getItemName();
-        Integer maxPrice = cond.getMaxPrice();
+        List<Item> items = template.query(findAllQueries.get(cond), findAllParams(cond), itemRowMapper());
+        return ItemKeysetPaging.toAscending(items, cond);
+    }
 
-        BeanPropertySqlParameterSource param = new BeanPropertySqlParameterSource(cond);
+    @Override
+    public Stream<Item> streamAll(ItemSearchCond cond) {
+        if (ItemKeysetPaging.isBackward(cond)) {
+            return findAll(cond).stream();//이전 페이지는 id 내림차순으로 읽어 뒤집어야 하므로 스트리밍하지 않는다.
+        }
+        return streamTemplate.queryForStream(findAllQueries.get(cond), findAllParams(cond), itemRowMapper());
+    }
+
+    private MapSqlParameterSource findAllParams(ItemSearchCond cond) {
+        MapSqlParameterSource param = new MapSqlParameterSource()
+                .addValue("itemName", cond.getItemName())
+                .addValue("maxPrice", cond.getMaxPrice())
+                .addValue("afterId", cond.getAfterId())
+                .addValue("beforeId", cond.getBeforeId())
+                .addValue("size", cond.getSize());
+        if (ngramTable != null && StringUtils.hasText(cond.getItemName())) {
+            ngramTable.addParams(param, cond.getItemName());
+        }
+        return param;
+    }
 
-        String sql = "select id, item_name, price, quantity from item ";
+    /**
+     * 조건 조합(shape)별 SQL. 애플리케이션 시작 시점에 {@link QueryVariantRegistry} 가 한 번씩만 호출한다.
+     */
+    private String findAllSql(int shape) {
+        String sql = "select " + ItemRowMapper.COLUMNS + " from item ";
 
-        if (StringUtils.hasText(itemName) || maxPrice != null) {
+        if (ItemSearchShape.hasWhere(shape)) {
             sql += " where";
         }
 
         boolean andFlag = false;
 
-        if (StringUtils.hasText(itemName)) {
+        if (ItemSearchShape.has(shape, ItemSearchShape.ITEM_NAME)) {
+            if (ngramTable != null) {
+                sql += " " + ItemNgramTable.CANDIDATE_CONDITION + " and";
+            }
             sql += " item_name like concat('%',:itemName,'%')";
             andFlag = true;
         }
 
-        if (maxPrice != null) {
+        if (ItemSearchShape.has(shape, ItemSearchShape.MAX_PRICE)) {
             if (andFlag) {
                 sql += " and";
             }
             sql += " price<=:maxPrice";
+            andFlag = true;
         }
 
-        log.info("sql={}", sql);
-        List<Item> items = template.query(sql, param, itemRowMapper());
-        return items;
+        //키셋 페이징
+        if (ItemSearchShape.has(shape, ItemSearchShape.AFTER_ID)) {
+            if (andFlag) {
+                sql += " and";
+            }
+            sql += " id>:afterId";
+            andFlag = true;
+        }
+
+        if (ItemSearchShape.has(shape, ItemSearchShape.BEFORE_ID)) {
+            if (andFlag) {
+                sql += " and";
+            }
+            sql += " id<:beforeId";
+        }
+
+        if (ItemSearchShape.isPaged(shape)) {
+            sql += ItemSearchShape.isBackward(shape) ? " order by id desc" : " order by id";
+        }
+
+        if (ItemSearchShape.has(shape, ItemSearchShape.SIZE)) {
+            sql += " limit :size";
+        }
+
+        log.debug("shape={}, sql={}", shape, sql);
+        return sql;
+    }
+
+    public QueryVariantRegistry<String> getFindAllQueries() {
+        return findAllQueries;
     }
 
     private RowMapper<Item> itemRowMapper() {
-        return BeanPropertyRowMapper.newInstance(Item.class); //camel 변환 지원; String sql = "select id, item_name as itemName, price, quantity from item "; as 별칭 지원해줌.
+        //return BeanPropertyRowMapper.newInstance(Item.class); //camel 변환 지원; String sql = "select id, item_name as itemName, price, quantity from item "; as 별칭 지원해줌.
+        return ItemRowMapper.INSTANCE;//컴파일 시점에 생성된 인덱스 기반 매퍼, select 절은 ItemRowMapper.COLUMNS 순서를 따른다.
     }
 }
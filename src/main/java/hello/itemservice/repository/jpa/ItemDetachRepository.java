@@ -0,0 +1,13 @@
+package hello.itemservice.repository.jpa;
+
+/**
+ * 스프링 데이터 JPA 리포지토리 조각(fragment)
+ * : 벌크 update(@Modifying) 뒤에 영속성 컨텍스트에서 수정한 상품 하나만 detach 한다.
+ *   clearAutomatically 는 영속성 컨텍스트 전체를 비우므로, 같은 트랜잭션에서 앞서 조회한 다른 엔티티까지 준영속 상태가 된다.
+ * : 스프링 데이터 JPA 는 리포지토리 인터페이스가 상속한 조각의 구현체를 이름 규칙(조각 이름 + Impl)으로 찾아서 호출을 위임한다.
+ *   ({@link ItemDetachRepositoryImpl})
+ */
+public interface ItemDetachRepository {
+
+    void detachItem(Long id);
+}
@@ -0,0 +1,21 @@
+package hello.itemservice.repository.jpa;
+
+import hello.itemservice.domain.Item;
+import lombok.RequiredArgsConstructor;
+
+import javax.persistence.EntityManager;
+
+/**
+ * getReference 는 영속성 컨텍스트에 있으면 그 엔티티를, 없으면 초기화되지 않은 프록시를 반환하므로 select 가 나가지 않는다.
+ * ({@link JpaItemRepository#update} 와 같다)
+ */
+@RequiredArgsConstructor
+public class ItemDetachRepositoryImpl implements ItemDetachRepository {
+
+    private final EntityManager em;
+
+    @Override
+    public void detachItem(Long id) {
+        em.detach(em.getReference(Item.class, id));
+    }
+}
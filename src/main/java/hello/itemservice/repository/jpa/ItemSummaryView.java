@@ -0,0 +1,22 @@
+package hello.itemservice.repository.jpa;
+
+import hello.itemservice.repository.ItemSummary;
+
+/**
+ * 스프링 데이터 JPA 인터페이스 기반 프로젝션 (닫힌 프로젝션)
+ * : 쿼리 메서드의 반환 타입으로 사용하면 select 절에 아래 프로퍼티만 조회하고, 엔티티를 만들지 않는다.
+ */
+public interface ItemSummaryView {
+
+    Long getId();
+
+    String getItemName();
+
+    Integer getPrice();
+
+    Integer getQuantity();
+
+    default ItemSummary toSummary() {
+        return new ItemSummary(getId(), getItemName(), getPrice(), getQuantity());
+    }
+}
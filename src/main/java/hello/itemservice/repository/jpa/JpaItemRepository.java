@@ -1,27 +1,88 @@
 package hello.itemservice.repository.jpa;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemIdBatches;
+import hello.itemservice.repository.ItemKeysetPaging;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemSearchShape;
+import hello.itemservice.repository.ItemSummary;
 import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.QueryVariantRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.annotations.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
+/**
+ * saveAll, updateAll
+ * : {@link #BATCH_SIZE} 건마다 flush 하고, 이번에 저장하거나 조회한 엔티티만 detach 한다. 영속성 컨텍스트가 수만 건의 엔티티와 스냅샷을 들고 있지 않도록 하기 위함이다.
+ * : em.clear() 는 사용하지 않는다. 같은 트랜잭션에서 호출자가 앞서 조회한 엔티티는 영속 상태로 남는다. ({@link ManagedItems})
+ * : saveAll 이 끝나면 전달받은 Item 은 준영속 상태가 된다.
+ * : updateAll 은 없는 id 가 있으면 update 와 같이 NoSuchElementException 이 발생한다.
+ * : 참고로 IDENTITY 전략은 persist 시점에 바로 insert 를 실행해야 id 를 알 수 있으므로, 하이버네이트가 insert 를 JDBC 배치로 묶지 못한다.
+ * : batch 프로필(application-batch.properties)은 id 생성을 SEQUENCE(pooled)로 바꾸고 hibernate.jdbc.batch_size 를 켠다.
+ *   이때는 flush 마다 insert 가 batch_size 건씩 JDBC 배치로 나간다. (BATCH_SIZE 는 batch_size 의 배수로 둔다)
+ *
+ * streamAll
+ * : getResultStream 은 하이버네이트의 ScrollableResults 위에서 동작한다. 트랜잭션(열린 세션) 안에서 사용해야 한다.
+ * : Propagation.MANDATORY 로 호출자의 트랜잭션을 요구한다. 메서드가 자체 트랜잭션을 열면 반환하는 순간 커밋되고 커넥션이 닫혀,
+ *   호출자가 스트림을 읽을 때는 커서가 없다. 트랜잭션 밖에서 호출하면 IllegalTransactionStateException 이 발생한다.
+ * : 읽은 엔티티가 영속성 컨텍스트에 쌓이지 않도록 한 건씩 detach 한다.
+ * : 스트림을 열기 전에 이미 관리되던 엔티티(호출자가 먼저 조회한 것)는 같은 인스턴스가 반환되므로 detach 하지 않는다. ({@link ManagedItems})
+ *
+ * findAll JPQL
+ * : 조건 조합별 JPQL 을 {@link QueryVariantRegistry} 에 미리 만들어 둔다.
+ * : 하이버네이트는 JPQL 문자열을 키로 파싱 결과(QueryPlanCache)를 재사용하므로, 같은 조합은 다시 파싱하지 않는다.
+ *
+ * findSummaries
+ * : 같은 조건의 JPQL 을 select new 로 시작해 DTO 를 바로 조회한다. 엔티티가 아니므로 영속성 컨텍스트와 스냅샷을 거치지 않는다.
+ * : 하이버네이트 읽기 전용 힌트(QueryHints.READ_ONLY)는 관리되는 엔티티에만 적용되므로 DTO 조회에는 붙이지 않는다.
+ *
+ * update
+ * : 엔티티를 조회(select)한 뒤 변경 감지로 update 하지 않고, JPQL 벌크 update 한 문장으로 수정한다. (DB 왕복 1번)
+ * : 수정된 행이 없으면 NoSuchElementException 이 발생한다.
+ * : 벌크 update 는 영속성 컨텍스트를 거치지 않는다.
+ *   실행 전: flush 모드가 AUTO 이면 하이버네이트가 쓰기 지연된 변경을 먼저 flush 한다.
+ *   실행 후: 이미 조회된 같은 상품 엔티티는 DB 와 값이 달라지므로 detach 한다. 다음 조회에서 DB 의 값을 다시 읽는다.
+ *   getReference 는 영속성 컨텍스트에 있으면 그 엔티티를, 없으면 초기화되지 않은 프록시를 반환하므로 select 가 나가지 않는다.
+ *
+ * 읽기 전용 트랜잭션
+ * : 조회 메서드는 @Transactional(readOnly = true) 이다. 클래스 레벨 @Transactional 보다 메서드 레벨 설정이 우선한다.
+ * : JpaTransactionManager(HibernateJpaDialect)는 readOnly 트랜잭션을 시작할 때
+ *   - 하이버네이트 세션의 flush 모드를 MANUAL 로 바꾼다. 커밋 시점에 flush 와 변경 감지를 하지 않는다.
+ *   - 세션을 기본 읽기 전용으로 바꾼다. 조회한 엔티티의 스냅샷을 만들지 않는다.
+ *   - JDBC 커넥션에 setReadOnly(true) 를 전달한다. 드라이버나 읽기 전용 복제본(replica) 라우팅이 이 값을 활용할 수 있다.
+ * : 이미 시작된 쓰기 트랜잭션에 참여하는 경우에는 바깥 트랜잭션의 설정을 그대로 따른다.
+ */
 @Slf4j
 @Repository
 @RequiredArgsConstructor
 @Transactional
 public class JpaItemRepository implements ItemRepository {
 
+    static final int BATCH_SIZE = 1000;
+    static final int FETCH_SIZE = 1000;
+
     private final EntityManager em;
+    private final QueryVariantRegistry<String> findAllQueries = new QueryVariantRegistry<>("JpaItemRepository.findAll",
+            shape -> "select i" + fromJpql(shape));
+    private final QueryVariantRegistry<String> findSummariesQueries = new QueryVariantRegistry<>("JpaItemRepository.findSummaries",
+            shape -> "select new " + ItemSummary.class.getName() + "(i.id, i.itemName, i.price, i.quantity)" + fromJpql(shape));
 
     @Override
     public Item save(Item item) {
@@ -31,56 +92,191 @@ public class JpaItemRepository implements ItemRepository {
 
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        Item item = em.find(Item.class, itemId);
-        item.setItemName(updateParam.getItemName());
-        item.setPrice(updateParam.getPrice());
-        item.setQuantity(updateParam.getQuantity());
+        int updated = em.createQuery("update Item i set i.itemName = :itemName, i.price = :price, i.quantity = :quantity where i.id = :id")
+                .setParameter("itemName", updateParam.getItemName())
+                .setParameter("price", updateParam.getPrice())
+                .setParameter("quantity", updateParam.getQuantity())
+                .setParameter("id", itemId)
+                .executeUpdate();
+        if (updated == 0) {
+            throw new NoSuchElementException("item not found: " + itemId);
+        }
+        em.detach(em.getReference(Item.class, itemId));
+    }
+
+    @Override
+    public boolean adjustQuantity(Long itemId, int delta) {
+        int updated = em.createQuery("update Item i set i.quantity = coalesce(i.quantity, 0) + :delta " +
+                        "where i.id = :id and coalesce(i.quantity, 0) + :delta >= 0")
+                .setParameter("delta", delta)
+                .setParameter("id", itemId)
+                .executeUpdate();
+        em.detach(em.getReference(Item.class, itemId));
+        if (updated == 0 && findById(itemId).isEmpty()) {
+            throw new NoSuchElementException("item not found: " + itemId);
+        }
+        return updated > 0;
+    }
+
+    @Override
+    public List<Item> saveAll(List<Item> items) {
+        for (int i = 0; i < items.size(); i++) {
+            em.persist(items.get(i));
+            if ((i + 1) % BATCH_SIZE == 0) {
+                flushAndDetach(items.subList(i + 1 - BATCH_SIZE, i + 1));
+            }
+        }
+        flushAndDetach(items.subList(items.size() - items.size() % BATCH_SIZE, items.size()));
+        return items;
+    }
+
+    private void flushAndDetach(List<Item> created) {
+        em.flush();
+        created.forEach(em::detach);
     }
 
     @Override
+    public void updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        List<Long> itemIds = new ArrayList<>(updateParams.keySet());
+        Set<Object> managedIds = ManagedItems.managedIds(em);
+        for (int from = 0; from < itemIds.size(); from += BATCH_SIZE) {
+            List<Long> chunk = itemIds.subList(from, Math.min(from + BATCH_SIZE, itemIds.size()));
+            List<Item> items = em.createQuery("select i from Item i where i.id in :ids", Item.class)
+                    .setParameter("ids", chunk)
+                    .getResultList();
+            ManagedItems.requireFound(chunk, items);
+            for (Item item : items) {
+                ItemUpdateDto updateParam = updateParams.get(item.getId());
+                item.setItemName(updateParam.getItemName());
+                item.setPrice(updateParam.getPrice());
+                item.setQuantity(updateParam.getQuantity());
+            }
+            em.flush();
+            items.forEach(loaded -> ManagedItems.detachUnlessManaged(em, managedIds, loaded));
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Optional<Item> findById(Long id) {
         return Optional.ofNullable(
                 em.find(Item.class, id));
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public List<Item> findAllById(Collection<Long> ids) {
+        return ItemIdBatches.findAll(ids, batch -> em.createQuery("select i from Item i where i.id in :ids", Item.class)
+                .setParameter("ids", batch)
+                .getResultList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public List<Item> findAll(ItemSearchCond cond) {
-        return getItemListDynamicQuery(cond)
+        List<Item> items = getItemListDynamicQuery(cond)
                 .getResultList();
+        return ItemKeysetPaging.toAscending(items, cond);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY, readOnly = true)
+    public Stream<Item> streamAll(ItemSearchCond cond) {
+        if (ItemKeysetPaging.isBackward(cond)) {
+            return findAll(cond).stream();//이전 페이지는 id 내림차순으로 읽어 뒤집어야 하므로 스트리밍하지 않는다.
+        }
+        Set<Object> managedIds = ManagedItems.managedIds(em);
+        return getItemListDynamicQuery(cond)
+                .setHint(QueryHints.FETCH_SIZE, FETCH_SIZE)
+                .getResultStream()
+                .map(found -> ManagedItems.detachUnlessManaged(em, managedIds, found));
+    }
+
+    /**
+     * 엔티티 대신 {@link ItemSummary} 를 생성자 표현식(select new)으로 바로 조회한다.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemSummary> findSummaries(ItemSearchCond cond) {
+        TypedQuery<ItemSummary> query = em.createQuery(findSummariesQueries.get(cond), ItemSummary.class);
+        return ItemKeysetPaging.toAscending(bind(query, cond).getResultList(), cond);
+    }
+
+    public QueryVariantRegistry<String> getFindAllQueries() {
+        return findAllQueries;
+    }
+
+    public QueryVariantRegistry<String> getFindSummariesQueries() {
+        return findSummariesQueries;
     }
 
     private TypedQuery<Item> getItemListDynamicQuery(ItemSearchCond cond) {
+        return bind(em.createQuery(findAllQueries.get(cond), Item.class), cond);
+    }
 
-        String sql = "select i from Item i";
+    private static <T> TypedQuery<T> bind(TypedQuery<T> query, ItemSearchCond cond) {
+        if (StringUtils.hasText(cond.getItemName())) {
+            query.setParameter("itemName", cond.getItemName());
+        }
+        if (cond.getMaxPrice() != null) {
+            query.setParameter("maxPrice", cond.getMaxPrice());
+        }
+        if (cond.getAfterId() != null) {
+            query.setParameter("afterId", cond.getAfterId());
+        }
+        if (cond.getBeforeId() != null) {
+            query.setParameter("beforeId", cond.getBeforeId());
+        }
+        if (cond.getSize() != null) {
+            query.setMaxResults(cond.getSize());
+        }
+        return query;
+    }
 
-        String itemName = cond.getItemName();
-        Integer maxPrice = cond.getMaxPrice();
+    /**
+     * 조건 조합(shape)별 JPQL 의 from 절 이후. size 는 setMaxResults 로 전달하므로 문장에는 영향이 없다.
+     */
+    private static String fromJpql(int shape) {
+        String jpql = " from Item i";
 
-        if (StringUtils.hasText(itemName) || maxPrice != null) {
-            sql += " where";
+        if (ItemSearchShape.hasWhere(shape)) {
+            jpql += " where";
         }
 
         boolean andFlag = false;
 
-        if (StringUtils.hasText(itemName)) {
-            sql += " i.itemName like concat('%',:itemName,'%')";
+        if (ItemSearchShape.has(shape, ItemSearchShape.ITEM_NAME)) {
+            jpql += " i.itemName like concat('%',:itemName,'%')";
             andFlag = true;
         }
 
-        if (maxPrice != null) {
+        if (ItemSearchShape.has(shape, ItemSearchShape.MAX_PRICE)) {
             if (andFlag) {
-                sql += " and";
+                jpql += " and";
             }
-            sql += " i.price<=:maxPrice";
+            jpql += " i.price<=:maxPrice";
+            andFlag = true;
         }
 
-        TypedQuery<Item> query = em.createQuery(sql, Item.class);
-        if (StringUtils.hasText(itemName)) {
-            query.setParameter("itemName", itemName);
+        //키셋 페이징
+        if (ItemSearchShape.has(shape, ItemSearchShape.AFTER_ID)) {
+            if (andFlag) {
+                jpql += " and";
+            }
+            jpql += " i.id>:afterId";
+            andFlag = true;
         }
-        if (maxPrice != null) {
-            query.setParameter("maxPrice", maxPrice);
+
+        if (ItemSearchShape.has(shape, ItemSearchShape.BEFORE_ID)) {
+            if (andFlag) {
+                jpql += " and";
+            }
+            jpql += " i.id<:beforeId";
         }
-        return query;
+
+        if (ItemSearchShape.isPaged(shape)) {
+            jpql += ItemSearchShape.isBackward(shape) ? " order by i.id desc" : " order by i.id";
+        }
+        return jpql;
     }
 }
@@ -1,28 +1,57 @@
 package hello.itemservice.repository.jpa;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemIdBatches;
+import hello.itemservice.repository.ItemKeysetPaging;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemSearchShape;
+import hello.itemservice.repository.ItemSummary;
 import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.QueryVariantRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * 예외 변환
  * 스프링 데이터 JPA도 스프링 예외 추상화를 지원한다.
  * 스프링 데이터 JPA가 만들어주는 프록시(SpringDataJpaItemRepository 의 구현체)에서 이미 예외 변환을 처리하기 때문에, @Repository 와 관계없이 예외가 변환된다.
+ *
+ * saveAll, updateAll
+ * : 스프링 데이터 JPA 의 saveAll, findAllById 에 위임한다. 수정은 변경 감지로 커밋 시점에 반영된다.
+ * : updateAll 은 없는 id 가 있으면 update 와 같이 NoSuchElementException 이 발생한다.
+ * : saveAll 은 중간에 flush, clear 하지 않는다. 대량 저장은 {@link JpaItemRepository} 처럼 청크 단위로 flush, detach 하는 구현을 사용한다.
+ *
+ * update
+ * : @Modifying 쿼리 메서드로 한 문장에 수정한다. (SpringDataJpaItemRepository#updateItem)
+ *
+ * findAll
+ * : 조건 조합별로 호출할 쿼리 메서드를 {@link QueryVariantRegistry} 에 미리 골라 둔다.
+ *
+ * 읽기 전용 트랜잭션
+ * : 조회 메서드는 @Transactional(readOnly = true) 이다. ({@link JpaItemRepository} 참고)
  */
 //@Repository
 @Transactional
 @RequiredArgsConstructor
 public class JpaItemRepositoryV2 implements ItemRepository {
     private final SpringDataJpaItemRepository springDataJpaItemRepository;
+    private final QueryVariantRegistry<Function<ItemSearchCond, List<Item>>> findAllQueries = new QueryVariantRegistry<>("JpaItemRepositoryV2.findAll", this::findAllFunction);
+
     @Override
     public Item save(Item item) {
         return springDataJpaItemRepository.save(item);
@@ -30,37 +59,139 @@ public class JpaItemRepositoryV2 implements ItemRepository {
 
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        Item item = springDataJpaItemRepository.findById(itemId).orElseGet(null);
-        item.setItemName(updateParam.getItemName());
-        item.setPrice(updateParam.getPrice());
-        item.setQuantity(updateParam.getQuantity());
+        int updated = springDataJpaItemRepository.updateItem(itemId, updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity());
+        if (updated == 0) {
+            throw new NoSuchElementException("item not found: " + itemId);
+        }
+        springDataJpaItemRepository.detachItem(itemId);
+    }
+
+    @Override
+    public boolean adjustQuantity(Long itemId, int delta) {
+        int updated = springDataJpaItemRepository.adjustQuantity(itemId, delta);
+        springDataJpaItemRepository.detachItem(itemId);
+        if (updated == 0 && springDataJpaItemRepository.findById(itemId).isEmpty()) {
+            throw new NoSuchElementException("item not found: " + itemId);
+        }
+        return updated > 0;
+    }
+
+    @Override
+    public List<Item> saveAll(List<Item> items) {
+        return springDataJpaItemRepository.saveAll(items);
     }
 
     @Override
+    public void updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        List<Item> items = springDataJpaItemRepository.findAllById(updateParams.keySet());
+        ManagedItems.requireFound(updateParams.keySet(), items);
+        for (Item item : items) {
+            ItemUpdateDto updateParam = updateParams.get(item.getId());
+            item.setItemName(updateParam.getItemName());
+            item.setPrice(updateParam.getPrice());
+            item.setQuantity(updateParam.getQuantity());
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Optional<Item> findById(Long id) {
         return springDataJpaItemRepository.findById(id);
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public List<Item> findAllById(Collection<Long> ids) {
+        return ItemIdBatches.findAll(ids, springDataJpaItemRepository::findAllById);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public List<Item> findAll(ItemSearchCond cond) {
-        String itemName = cond.getItemName();
-        Integer maxPrice = cond.getMaxPrice();
-        boolean isNotEmptyItemName = StringUtils.hasText(itemName);
-        boolean isNotNullMaxPrice = maxPrice != null;
-        List<Item> result = new ArrayList<>();
+        return findAllQueries.get(cond).apply(cond);
+    }
+
+    /**
+     * 조건 조합(shape)별로 호출할 쿼리 메서드를 고른다. 시작 시점에 한 번씩만 호출된다.
+     * : 쿼리 메서드의 JPQL 은 스프링 데이터 JPA 가 이미 애플리케이션 시작 시점에 만들어 둔다. 여기서는 요청마다 하던 분기만 없앤다.
+     */
+    private Function<ItemSearchCond, List<Item>> findAllFunction(int shape) {
+        if (ItemSearchShape.isPaged(shape)) {
+            return this::findPage;
+        }
+        boolean isNotEmptyItemName = ItemSearchShape.has(shape, ItemSearchShape.ITEM_NAME);
+        boolean isNotNullMaxPrice = ItemSearchShape.has(shape, ItemSearchShape.MAX_PRICE);
 
         if (isNotEmptyItemName && isNotNullMaxPrice) {
-            result = springDataJpaItemRepository.findItems("%"+itemName+"%", maxPrice);
+            return cond -> springDataJpaItemRepository.findItems("%" + cond.getItemName() + "%", cond.getMaxPrice());
+        }
+        if (isNotEmptyItemName) {
+            return cond -> springDataJpaItemRepository.findByItemNameLike("%" + cond.getItemName() + "%");
+        }
+        if (isNotNullMaxPrice) {
+            return cond -> springDataJpaItemRepository.findByPriceLessThanEqual(cond.getMaxPrice());
         }
-        if (isNotEmptyItemName && !isNotNullMaxPrice) {
-            result = springDataJpaItemRepository.findByItemNameLike("%"+itemName+"%");
+        return cond -> springDataJpaItemRepository.findAll();
+    }
+
+    /**
+     * 키셋 페이징
+     * : afterId, beforeId 를 id between 범위로 바꾸고, 정렬 방향과 건수는 Pageable 로 전달한다. (항상 첫 페이지, offset 0)
+     */
+    private List<Item> findPage(ItemSearchCond cond) {
+        String itemName = cond.getItemName();
+        Integer maxPrice = cond.getMaxPrice();
+        long fromId = cond.getAfterId() == null ? Long.MIN_VALUE : cond.getAfterId() + 1;
+        long toId = cond.getBeforeId() == null ? Long.MAX_VALUE : cond.getBeforeId() - 1;
+        Sort sort = ItemKeysetPaging.isBackward(cond) ? Sort.by("id").descending() : Sort.by("id");
+        Pageable pageable = PageRequest.of(0, cond.getSize() == null ? Integer.MAX_VALUE : cond.getSize(), sort);
+
+        List<Item> result;
+        if (StringUtils.hasText(itemName) && maxPrice != null) {
+            result = springDataJpaItemRepository.findByItemNameLikeAndPriceLessThanEqualAndIdBetween("%" + itemName + "%", maxPrice, fromId, toId, pageable);
+        } else if (StringUtils.hasText(itemName)) {
+            result = springDataJpaItemRepository.findByItemNameLikeAndIdBetween("%" + itemName + "%", fromId, toId, pageable);
+        } else if (maxPrice != null) {
+            result = springDataJpaItemRepository.findByPriceLessThanEqualAndIdBetween(maxPrice, fromId, toId, pageable);
+        } else {
+            result = springDataJpaItemRepository.findByIdBetween(fromId, toId, pageable);
         }
-        if (!isNotEmptyItemName && isNotNullMaxPrice) {
-            result = springDataJpaItemRepository.findByPriceLessThanEqual(maxPrice);
+        return ItemKeysetPaging.toAscending(new ArrayList<>(result), cond);
+    }
+
+    /**
+     * 조회 전용 DTO
+     * : 인터페이스 기반 프로젝션 쿼리 메서드를 사용한다. 페이징이 없으면 id 범위 전체 + unpaged 로 조회한다.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemSummary> findSummaries(ItemSearchCond cond) {
+        String itemName = cond.getItemName();
+        Integer maxPrice = cond.getMaxPrice();
+        long fromId = cond.getAfterId() == null ? Long.MIN_VALUE : cond.getAfterId() + 1;
+        long toId = cond.getBeforeId() == null ? Long.MAX_VALUE : cond.getBeforeId() - 1;
+        Pageable pageable = Pageable.unpaged();
+        if (ItemKeysetPaging.isPaged(cond)) {
+            Sort sort = ItemKeysetPaging.isBackward(cond) ? Sort.by("id").descending() : Sort.by("id");
+            pageable = PageRequest.of(0, cond.getSize() == null ? Integer.MAX_VALUE : cond.getSize(), sort);
         }
-        if (!isNotEmptyItemName && !isNotNullMaxPrice) {
-            result = springDataJpaItemRepository.findAll();
+
+        List<ItemSummaryView> result;
+        if (StringUtils.hasText(itemName) && maxPrice != null) {
+            result = springDataJpaItemRepository.findSummaryByItemNameLikeAndPriceLessThanEqualAndIdBetween("%" + itemName + "%", maxPrice, fromId, toId, pageable);
+        } else if (StringUtils.hasText(itemName)) {
+            result = springDataJpaItemRepository.findSummaryByItemNameLikeAndIdBetween("%" + itemName + "%", fromId, toId, pageable);
+        } else if (maxPrice != null) {
+            result = springDataJpaItemRepository.findSummaryByPriceLessThanEqualAndIdBetween(maxPrice, fromId, toId, pageable);
+        } else {
+            result = springDataJpaItemRepository.findSummaryByIdBetween(fromId, toId, pageable);
         }
-        return result;
+        return ItemKeysetPaging.toAscending(result.stream()
+                .map(ItemSummaryView::toSummary)
+                .collect(Collectors.toList()), cond);
+    }
+
+    public QueryVariantRegistry<Function<ItemSearchCond, List<Item>>> getFindAllQueries() {
+        return findAllQueries;
     }
-}
\ No newline at end of file
+}
@@ -1,30 +1,62 @@
 package hello.itemservice.repository.jpa;
 
 import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Projections;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import hello.itemservice.domain.Item;
 import hello.itemservice.domain.QItem;
+import hello.itemservice.repository.ItemIdBatches;
+import hello.itemservice.repository.ItemKeysetPaging;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemSummary;
 import hello.itemservice.repository.ItemUpdateDto;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.annotations.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import static hello.itemservice.domain.QItem.*;
 
+/**
+ * saveAll, updateAll
+ * : {@link #BATCH_SIZE} 건마다 flush 하고, 이번에 저장하거나 조회한 엔티티만 detach 한다. ({@link JpaItemRepository} 참고)
+ *
+ * streamAll
+ * : Querydsl 의 stream() 은 JPA getResultStream 을 사용한다. fetch size, detach, 트랜잭션 요구(MANDATORY)는 {@link JpaItemRepository} 와 같다.
+ *
+ * update
+ * : Querydsl update 절로 한 문장에 수정하고, 영속성 컨텍스트의 같은 상품은 detach 한다. ({@link JpaItemRepository} 참고)
+ *
+ * findSummaries
+ * : Projections.constructor 로 DTO 를 바로 조회한다. ({@link JpaItemRepository} 참고)
+ *
+ * 읽기 전용 트랜잭션
+ * : 조회 메서드는 @Transactional(readOnly = true) 이다. ({@link JpaItemRepository} 참고)
+ */
 @Slf4j
 @Repository
 @Transactional
 public class JpaItemRepositoryV3 implements ItemRepository {
 
+    static final int BATCH_SIZE = 1000;
+
     private final EntityManager em;
 
     private final JPAQueryFactory query;
@@ -42,18 +74,90 @@ public class JpaItemRepositoryV3 implements ItemRepository {
 
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        Item updateItem = em.find(Item.class, itemId);
-        updateItem.setItemName(updateParam.getItemName());
-        updateItem.setPrice(updateParam.getPrice());
-        updateItem.setQuantity(updateParam.getQuantity());
+        long updated = query
+                .update(item)
+                .set(item.itemName, updateParam.getItemName())
+                .set(item.price, updateParam.getPrice())
+                .set(item.quantity, updateParam.getQuantity())
+                .where(item.id.eq(itemId))
+                .execute();
+        if (updated == 0) {
+            throw new NoSuchElementException("item not found: " + itemId);
+        }
+        em.detach(em.getReference(Item.class, itemId));
+    }
+
+    @Override
+    public boolean adjustQuantity(Long itemId, int delta) {
+        NumberExpression<Integer> adjusted = item.quantity.coalesce(0).add(delta);
+        long updated = query
+                .update(item)
+                .set(item.quantity, adjusted)
+                .where(item.id.eq(itemId), adjusted.goe(0))
+                .execute();
+        em.detach(em.getReference(Item.class, itemId));
+        if (updated == 0 && findById(itemId).isEmpty()) {
+            throw new NoSuchElementException("item not found: " + itemId);
+        }
+        return updated > 0;
+    }
+
+    @Override
+    public List<Item> saveAll(List<Item> items) {
+        for (int i = 0; i < items.size(); i++) {
+            em.persist(items.get(i));
+            if ((i + 1) % BATCH_SIZE == 0) {
+                flushAndDetach(items.subList(i + 1 - BATCH_SIZE, i + 1));
+            }
+        }
+        flushAndDetach(items.subList(items.size() - items.size() % BATCH_SIZE, items.size()));
+        return items;
+    }
+
+    private void flushAndDetach(List<Item> created) {
+        em.flush();
+        created.forEach(em::detach);
     }
 
     @Override
+    public void updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        List<Long> itemIds = new ArrayList<>(updateParams.keySet());
+        Set<Object> managedIds = ManagedItems.managedIds(em);
+        for (int from = 0; from < itemIds.size(); from += BATCH_SIZE) {
+            List<Long> chunk = itemIds.subList(from, Math.min(from + BATCH_SIZE, itemIds.size()));
+            List<Item> items = query
+                    .selectFrom(item)
+                    .where(item.id.in(chunk))
+                    .fetch();
+            ManagedItems.requireFound(chunk, items);
+            for (Item updateItem : items) {
+                ItemUpdateDto updateParam = updateParams.get(updateItem.getId());
+                updateItem.setItemName(updateParam.getItemName());
+                updateItem.setPrice(updateParam.getPrice());
+                updateItem.setQuantity(updateParam.getQuantity());
+            }
+            em.flush();
+            items.forEach(loaded -> ManagedItems.detachUnlessManaged(em, managedIds, loaded));
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Optional<Item> findById(Long id) {
         Item item = em.find(Item.class, id);
         return Optional.ofNullable(item);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<Item> findAllById(Collection<Long> ids) {
+        return ItemIdBatches.findAll(ids, batch -> query
+                .selectFrom(item)
+                .where(item.id.in(batch))
+                .fetch());
+    }
+
+    @Transactional(readOnly = true)
     public List<Item> findAllOld(ItemSearchCond cond) {
         String itemName = cond.getItemName();
         Integer maxPrice = cond.getMaxPrice();
@@ -74,15 +178,68 @@ public class JpaItemRepositoryV3 implements ItemRepository {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<Item> findAll(ItemSearchCond cond) {
-        String itemName = cond.getItemName();
-        Integer maxPrice = cond.getMaxPrice();
+        return ItemKeysetPaging.toAscending(findAllQuery(cond).setHint(QueryHints.CACHEABLE, true).fetch(), cond);//쿼리 캐시 (ItemQueryRepositoryV2.search 참고)
+    }
 
-        return query
-                .select(item)
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY, readOnly = true)
+    public Stream<Item> streamAll(ItemSearchCond cond) {
+        if (ItemKeysetPaging.isBackward(cond)) {
+            return findAll(cond).stream();//이전 페이지는 id 내림차순으로 읽어 뒤집어야 하므로 스트리밍하지 않는다.
+        }
+        Set<Object> managedIds = ManagedItems.managedIds(em);
+        return findAllQuery(cond)
+                .setHint(QueryHints.FETCH_SIZE, JpaItemRepository.FETCH_SIZE)
+                .stream()
+                .map(found -> ManagedItems.detachUnlessManaged(em, managedIds, found));
+    }
+
+    /**
+     * 엔티티 대신 {@link ItemSummary} 를 바로 조회한다. 영속성 컨텍스트에 엔티티와 스냅샷이 남지 않는다.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemSummary> findSummaries(ItemSearchCond cond) {
+        JPAQuery<ItemSummary> findSummariesQuery = search(query.select(
+                Projections.constructor(ItemSummary.class, item.id, item.itemName, item.price, item.quantity)), cond);
+        findSummariesQuery.setHint(QueryHints.CACHEABLE, true);//쿼리 캐시 (ItemQueryRepositoryV2.search 참고)
+        return ItemKeysetPaging.toAscending(findSummariesQuery.fetch(), cond);
+    }
+
+    private JPAQuery<Item> findAllQuery(ItemSearchCond cond) {
+        return search(query.select(item), cond);
+    }
+
+    private <T> JPAQuery<T> search(JPAQuery<T> select, ItemSearchCond cond) {
+        JPAQuery<T> searchQuery = select
                 .from(item)
-                .where(itemNameLike(itemName), maxPrice(maxPrice))
-                .fetch();
+                .where(itemNameLike(cond.getItemName()), maxPrice(cond.getMaxPrice()),
+                        idAfter(cond.getAfterId()), idBefore(cond.getBeforeId()));
+
+        //키셋 페이징
+        if (ItemKeysetPaging.isPaged(cond)) {
+            searchQuery.orderBy(ItemKeysetPaging.isBackward(cond) ? item.id.desc() : item.id.asc());
+        }
+        if (cond.getSize() != null) {
+            searchQuery.limit(cond.getSize());
+        }
+        return searchQuery;
+    }
+
+    private BooleanExpression idAfter(Long afterId) {
+        if (afterId != null) {
+            return item.id.gt(afterId);
+        }
+        return null;
+    }
+
+    private BooleanExpression idBefore(Long beforeId) {
+        if (beforeId != null) {
+            return item.id.lt(beforeId);
+        }
+        return null;
     }
 
     private BooleanExpression maxPrice(Integer maxPrice) {
@@ -0,0 +1,60 @@
+package hello.itemservice.repository.jpa;
+
+import hello.itemservice.domain.Item;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import javax.persistence.EntityManager;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * 대량 처리(saveAll, updateAll, streamAll)에서 사용하는 영속성 컨텍스트 공용 로직
+ * : em.clear() 는 호출자가 같은 트랜잭션에서 먼저 조회한 엔티티까지 준영속 상태로 만든다.
+ *   처리 전에 이미 관리되던 Item 의 id 를 {@link #managedIds(EntityManager)} 로 기록해 두고, 그 밖의 엔티티(이번 처리에서 올린 것)만 detach 한다.
+ */
+final class ManagedItems {
+
+    private ManagedItems() {
+    }
+
+    static Set<Object> managedIds(EntityManager em) {
+        Set<Object> ids = new HashSet<>();
+        for (Map.Entry<Object, EntityEntry> entry : em.unwrap(SessionImplementor.class)
+                .getPersistenceContextInternal().reentrantSafeEntityEntries()) {
+            if (entry.getKey() instanceof Item) {
+                ids.add(entry.getValue().getId());
+            }
+        }
+        return ids;
+    }
+
+    static Item detachUnlessManaged(EntityManager em, Set<Object> managedIds, Item item) {
+        if (!managedIds.contains(item.getId())) {
+            em.detach(item);
+        }
+        return item;
+    }
+
+    /**
+     * 조회 결과에 없는 id 가 있으면 update 와 같은 NoSuchElementException 이 발생한다.
+     */
+    static void requireFound(Collection<Long> itemIds, List<Item> items) {
+        if (items.size() >= itemIds.size()) {
+            return;
+        }
+        Set<Long> found = new HashSet<>();
+        for (Item item : items) {
+            found.add(item.getId());
+        }
+        for (Long itemId : itemIds) {
+            if (!found.contains(itemId)) {
+                throw new NoSuchElementException("item not found: " + itemId);
+            }
+        }
+    }
+}
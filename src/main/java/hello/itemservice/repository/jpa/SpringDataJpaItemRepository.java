@@ -1,13 +1,15 @@
 package hello.itemservice.repository.jpa;
 
 import hello.itemservice.domain.Item;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
-public interface SpringDataJpaItemRepository extends JpaRepository<Item, Long> {
+public interface SpringDataJpaItemRepository extends JpaRepository<Item, Long>, ItemDetachRepository {
 
     List<Item> findByItemNameLike(String itemName);
 
@@ -19,4 +21,39 @@ public interface SpringDataJpaItemRepository extends JpaRepository<Item, Long> {
     //쿼리 직접 실행
     @Query("select i from Item i where i.itemName like :itemName and i.price <= :price")
     List<Item> findItems(@Param("itemName") String itemName, @Param("price") Integer price);
-}
+
+    /**
+     * 벌크 update: 엔티티를 조회하지 않고 한 문장으로 수정한다. 수정된 행 수를 반환한다.
+     * : flushAutomatically - 실행 전에 쓰기 지연된 변경을 flush 한다.
+     * : 실행 후 이미 조회된 같은 상품 엔티티가 DB 와 다른 값을 갖지 않도록 호출하는 쪽에서 {@link #detachItem(Long)} 을 호출한다.
+     *   clearAutomatically 는 영속성 컨텍스트 전체를 비우므로 사용하지 않는다.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update Item i set i.itemName = :itemName, i.price = :price, i.quantity = :quantity where i.id = :id")
+    int updateItem(@Param("id") Long id, @Param("itemName") String itemName, @Param("price") Integer price, @Param("quantity") Integer quantity);
+
+    /**
+     * 재고 수량 원자적 증감: 조건(수량이 음수가 되지 않음)과 수정을 한 문장으로 수행한다. 수정된 행 수를 반환한다.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update Item i set i.quantity = coalesce(i.quantity, 0) + :delta where i.id = :id and coalesce(i.quantity, 0) + :delta >= 0")
+    int adjustQuantity(@Param("id") Long id, @Param("delta") int delta);
+
+    //키셋 페이징: id 범위(Between) + Pageable(정렬, 건수)
+    List<Item> findByIdBetween(Long fromId, Long toId, Pageable pageable);
+
+    List<Item> findByItemNameLikeAndIdBetween(String itemName, Long fromId, Long toId, Pageable pageable);
+
+    List<Item> findByPriceLessThanEqualAndIdBetween(Integer price, Long fromId, Long toId, Pageable pageable);
+
+    List<Item> findByItemNameLikeAndPriceLessThanEqualAndIdBetween(String itemName, Integer price, Long fromId, Long toId, Pageable pageable);
+
+    //조회 전용 DTO: 인터페이스 기반 프로젝션 (select 절에 ItemSummaryView 의 프로퍼티만 조회한다)
+    List<ItemSummaryView> findSummaryByIdBetween(Long fromId, Long toId, Pageable pageable);
+
+    List<ItemSummaryView> findSummaryByItemNameLikeAndIdBetween(String itemName, Long fromId, Long toId, Pageable pageable);
+
+    List<ItemSummaryView> findSummaryByPriceLessThanEqualAndIdBetween(Integer price, Long fromId, Long toId, Pageable pageable);
+
+    List<ItemSummaryView> findSummaryByItemNameLikeAndPriceLessThanEqualAndIdBetween(String itemName, Integer price, Long fromId, Long toId, Pageable pageable);
+}
\ No newline at end of file
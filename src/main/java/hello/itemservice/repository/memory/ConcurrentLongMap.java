@@ -0,0 +1,368 @@
+package hello.itemservice.repository.memory;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * long 키 전용 오픈 어드레싱(linear probing) 동시성 맵
+ * : HashMap<Long, Item> 은 조회할 때마다 Long 박싱이 일어나고, 동시 쓰기에 안전하지 않다.
+ * : 키를 primitive long 배열에 직접 저장하고, 세그먼트(lock striping) 단위로 쓰기 락을 나눈다.
+ *
+ * 읽기(get, iterator)
+ * : 락을 잡지 않는다.
+ * : 쓰기는 value 를 먼저 기록하고 key 를 나중에 기록(volatile)하기 때문에, key 가 보이면 value 도 반드시 보인다.
+ * : 리사이즈는 새 테이블을 완성한 뒤 volatile 참조를 교체하는 방식이라, 읽는 쪽은 항상 완성된 테이블 하나만 본다.
+ * : 값을 읽은 뒤 key 를 한 번 더 확인한다. 그 사이 슬롯이 삭제되고 다른 키가 재사용했다면 다시 찾는다.
+ *
+ * 삭제
+ * : remove 는 슬롯을 비우지 않고 TOMBSTONE 으로 표시한다. 비우면 같은 탐색 구간 뒤쪽의 키를 찾지 못한다.
+ * : put 은 탐색 중 만난 첫 TOMBSTONE 슬롯을 재사용한다.
+ * : TOMBSTONE 이 쌓여 사용 중 슬롯이 절반을 넘으면 테이블을 다시 만든다. 살아 있는 키가 적으면 같은 크기로 TOMBSTONE 만 정리한다.
+ *
+ * 제약
+ * : 0, Long.MIN_VALUE 는 빈 슬롯, TOMBSTONE 표시로 사용하므로 키로 사용할 수 없다. (id 는 1 부터 발급된다)
+ */
+final class ConcurrentLongMap<V> implements Iterable<V> {
+
+    private static final long EMPTY = 0L;
+    private static final long TOMBSTONE = Long.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Segment<V>[] segments;
+    private final int segmentShift;
+
+    ConcurrentLongMap() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    @SuppressWarnings("unchecked")
+    ConcurrentLongMap(int concurrencyLevel) {
+        int size = 2;
+        while (size < concurrencyLevel) {
+            size <<= 1;
+        }
+        this.segments = new Segment[size];
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(size);
+        for (int i = 0; i < size; i++) {
+            segments[i] = new Segment<>();
+        }
+    }
+
+    public V get(long key) {
+        long hash = hash(key);
+        Segment<V> segment = segmentFor(hash);
+        retry:
+        while (true) {
+            Table<V> table = segment.table;
+            int index = (int) hash & table.mask;
+            while (true) {
+                long k = table.keys.get(index);
+                if (k == key) {
+                    V value = table.values.get(index);
+                    if (table.keys.get(index) != key) {
+                        continue retry;//값을 읽는 사이 삭제되었다.
+                    }
+                    return value;
+                }
+                if (k == EMPTY) {
+                    return null;
+                }
+                index = (index + 1) & table.mask;
+            }
+        }
+    }
+
+    public V put(long key, V value) {
+        checkKey(key);
+        long hash = hash(key);
+        Segment<V> segment = segmentFor(hash);
+        synchronized (segment) {
+            return segment.put(key, hash, value);
+        }
+    }
+
+    /**
+     * 세그먼트 락 안에서 새 값을 계산해 저장한다. 키가 없으면 remapping 에 null 이 전달된다.
+     * : remapping 이 null 을 반환하면 아무것도 저장하지 않는다.
+     *
+     * @return 저장된 값 (저장하지 않았으면 기존 값)
+     */
+    public V compute(long key, BiFunction<Long, ? super V, ? extends V> remapping) {
+        checkKey(key);
+        long hash = hash(key);
+        Segment<V> segment = segmentFor(hash);
+        synchronized (segment) {
+            V current = get(key);
+            V next = remapping.apply(key, current);
+            if (next == null) {
+                return current;
+            }
+            segment.put(key, hash, next);
+            return next;
+        }
+    }
+
+    /**
+     * 키가 존재할 때만 세그먼트 락 안에서 새 값을 계산해 저장한다.
+     * : remapping 이 null 을 반환하면 기존 값을 유지한다.
+     *
+     * @return 저장된 값, 키가 없으면 null
+     */
+    public V computeIfPresent(long key, BiFunction<Long, ? super V, ? extends V> remapping) {
+        checkKey(key);
+        long hash = hash(key);
+        Segment<V> segment = segmentFor(hash);
+        synchronized (segment) {
+            V current = get(key);
+            if (current == null) {
+                return null;
+            }
+            V next = remapping.apply(key, current);
+            if (next == null) {
+                return current;
+            }
+            segment.put(key, hash, next);
+            return next;
+        }
+    }
+
+    /**
+     * 현재 값이 expected 와 같은 인스턴스일 때만 update 로 교체한다. (compare-and-set)
+     */
+    public boolean replace(long key, V expected, V update) {
+        checkKey(key);
+        long hash = hash(key);
+        Segment<V> segment = segmentFor(hash);
+        synchronized (segment) {
+            if (get(key) != expected) {
+                return false;
+            }
+            segment.put(key, hash, update);
+            return true;
+        }
+    }
+
+    /**
+     * @return 삭제한 값, 키가 없으면 null
+     */
+    public V remove(long key) {
+        checkKey(key);
+        long hash = hash(key);
+        Segment<V> segment = segmentFor(hash);
+        synchronized (segment) {
+            return segment.remove(key, hash);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                segment.table = new Table<>(INITIAL_CAPACITY);
+                segment.size = 0;
+                segment.used = 0;
+            }
+        }
+    }
+
+    /**
+     * 락 없이 값을 순회한다.
+     * : 순회 도중의 쓰기는 보일 수도, 보이지 않을 수도 있다. (weakly consistent)
+     */
+    @Override
+    public Iterator<V> iterator() {
+        return new ValueIterator();
+    }
+
+    @Override
+    public void forEach(Consumer<? super V> action) {
+        for (Segment<V> segment : segments) {
+            Table<V> table = segment.table;
+            for (int i = 0; i <= table.mask; i++) {
+                if (isKey(table.keys.get(i))) {
+                    V value = table.values.get(i);
+                    if (value != null) {//순회 도중 삭제되었다.
+                        action.accept(value);
+                    }
+                }
+            }
+        }
+    }
+
+    private Segment<V> segmentFor(long hash) {
+        return segments[(int) (hash >>> segmentShift)];
+    }
+
+    /**
+     * 테이블 슬롯 수의 합 (테스트에서 TOMBSTONE 정리 여부를 확인한다)
+     */
+    int capacity() {
+        int capacity = 0;
+        for (Segment<V> segment : segments) {
+            capacity += segment.table.mask + 1;
+        }
+        return capacity;
+    }
+
+    private static void checkKey(long key) {
+        if (!isKey(key)) {
+            throw new IllegalArgumentException("key " + key + " is reserved");
+        }
+    }
+
+    private static boolean isKey(long k) {
+        return k != EMPTY && k != TOMBSTONE;
+    }
+
+    /**
+     * 순차적으로 증가하는 id 가 한 세그먼트/슬롯 구간에 몰리지 않도록 비트를 섞는다. (murmur3 finalizer)
+     */
+    private static long hash(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Segment<V> {
+        volatile Table<V> table = new Table<>(INITIAL_CAPACITY);
+        volatile int size;
+        int used;//size + TOMBSTONE 수. 세그먼트 락 안에서만 사용한다.
+
+        /**
+         * 세그먼트 락을 잡은 상태에서만 호출한다.
+         */
+        V put(long key, long hash, V value) {
+            Table<V> t = table;
+            int index = (int) hash & t.mask;
+            int reuse = -1;
+            while (true) {
+                long k = t.keys.get(index);
+                if (k == key) {
+                    V old = t.values.get(index);
+                    t.values.set(index, value);
+                    return old;
+                }
+                if (k == TOMBSTONE && reuse < 0) {
+                    reuse = index;//뒤쪽에 같은 키가 없을 때만 재사용한다.
+                }
+                if (k == EMPTY) {
+                    int slot = reuse < 0 ? index : reuse;
+                    t.values.set(slot, value);//value 를 먼저 기록해야 key 를 본 reader 가 null 을 보지 않는다.
+                    t.keys.set(slot, key);
+                    size = size + 1;
+                    if (reuse < 0 && ++used * 2 > t.mask + 1) {
+                        table = t.resize(size * 4 > t.mask + 1 ? (t.mask + 1) * 2 : t.mask + 1);
+                        used = size;
+                    }
+                    return null;
+                }
+                index = (index + 1) & t.mask;
+            }
+        }
+
+        /**
+         * 세그먼트 락을 잡은 상태에서만 호출한다.
+         */
+        V remove(long key, long hash) {
+            Table<V> t = table;
+            int index = (int) hash & t.mask;
+            while (true) {
+                long k = t.keys.get(index);
+                if (k == key) {
+                    V old = t.values.get(index);
+                    t.keys.set(index, TOMBSTONE);//key 를 먼저 지워야 새로 찾는 reader 가 지운 값을 보지 않는다.
+                    t.values.set(index, null);
+                    size = size - 1;
+                    return old;
+                }
+                if (k == EMPTY) {
+                    return null;
+                }
+                index = (index + 1) & t.mask;
+            }
+        }
+    }
+
+    private static final class Table<V> {
+        final AtomicLongArray keys;
+        final AtomicReferenceArray<V> values;
+        final int mask;
+
+        Table(int capacity) {
+            this.keys = new AtomicLongArray(capacity);
+            this.values = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+        }
+
+        /**
+         * 살아 있는 키만 새 테이블로 옮긴다. (TOMBSTONE 은 버린다)
+         */
+        Table<V> resize(int capacity) {
+            Table<V> resized = new Table<>(capacity);
+            for (int i = 0; i <= mask; i++) {
+                long key = keys.get(i);
+                if (!isKey(key)) {
+                    continue;
+                }
+                int index = (int) hash(key) & resized.mask;
+                while (resized.keys.get(index) != EMPTY) {
+                    index = (index + 1) & resized.mask;
+                }
+                resized.values.set(index, values.get(i));
+                resized.keys.set(index, key);
+            }
+            return resized;
+        }
+    }
+
+    private final class ValueIterator implements Iterator<V> {
+        private int segmentIndex = -1;
+        private Table<V> table;
+        private int slot;
+        private V next;
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (table == null || slot > table.mask) {
+                    if (++segmentIndex >= segments.length) {
+                        return false;
+                    }
+                    table = segments[segmentIndex].table;
+                    slot = 0;
+                    continue;
+                }
+                int i = slot++;
+                if (isKey(table.keys.get(i))) {
+                    next = table.values.get(i);//순회 도중 삭제되었으면 null 이고, 다음 슬롯으로 넘어간다.
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public V next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            V value = next;
+            next = null;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package hello.itemservice.repository.memory;
+
+import hello.itemservice.domain.Item;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * MemoryItemRepository 의 선택적 영속화(write-ahead log + snapshot)
+ *
+ * 로그(wal-{시작 lsn}.log)
+ * : save/update 결과(상품의 전체 상태)를 memory-mapped 세그먼트에 레코드로 추가한다. 쓰기는 메모리 복사 수준(마이크로초)이다.
+ * : 레코드 = [payload 길이][CRC32C][payload: lsn, id, price, quantity, itemName]
+ * : 전체 상태를 기록하기 때문에 재적용해도 결과가 같다. (멱등)
+ *
+ * group fsync
+ * : 쓰기마다 fsync 하지 않고, syncInterval 마다 백그라운드 스레드가 한 번에 force() 한다.
+ * : 프로세스가 죽어도 페이지 캐시에 남은 로그는 보존된다. OS 장애 시에는 최대 syncInterval 만큼의 쓰기를 잃을 수 있다.
+ *
+ * 스냅샷(snapshot-{경계 lsn}.dat)
+ * : snapshotInterval 마다 새 세그먼트로 전환(경계 lsn)한 뒤 전체 상품을 간결한 바이너리로 기록한다.
+ * : 스냅샷이 완성되면(fsync + atomic move) 경계 이전의 세그먼트와 이전 스냅샷을 지운다.
+ * : 경계 전환은 진행 중인 쓰기가 모두 끝난 뒤에 일어나므로({@link #write(Supplier)}), 경계 이전 레코드의 결과는 반드시 스냅샷에 포함된다.
+ *
+ * 복구
+ * : 가장 최근 스냅샷을 읽고, 그 이후 세그먼트를 lsn 순서로 재적용한다.
+ * : 길이가 0 이거나 CRC 가 맞지 않는 레코드(쓰다 만 꼬리)를 만나면 해당 세그먼트의 나머지는 버린다.
+ * : 기동 시간은 스냅샷 로딩 속도 + 마지막 스냅샷 이후의 로그 양으로 제한된다.
+ */
+@Slf4j
+public class ItemJournal implements Closeable {
+
+    private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int NULL_INT = Integer.MIN_VALUE;
+    private static final int SNAPSHOT_MAGIC = 0x49544D53;//ITMS
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".dat";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Duration syncInterval;
+    private final Duration snapshotInterval;
+    private final ScheduledExecutorService scheduler;
+
+    //쓰기 작업은 read lock(공유), 세그먼트 경계 전환은 write lock(배타)
+    private final ReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    private final Object appendLock = new Object();
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long nextLsn = 1;
+    private volatile boolean dirty;
+
+    public ItemJournal(Path directory, Duration syncInterval, Duration snapshotInterval) {
+        this(directory, syncInterval, snapshotInterval, DEFAULT_SEGMENT_SIZE);
+    }
+
+    ItemJournal(Path directory, Duration syncInterval, Duration snapshotInterval, int segmentSize) {
+        this.directory = directory;
+        this.syncInterval = syncInterval;
+        this.snapshotInterval = snapshotInterval;
+        this.segmentSize = segmentSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "item-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 스냅샷 + 로그를 재적용해 recovery 로 전달한 뒤, 새 세그먼트를 열고 주기적인 fsync/스냅샷을 시작한다.
+     *
+     * @param recovery       복구된 상품 상태 (lsn 순서, 같은 id 가 여러 번 올 수 있다)
+     * @param snapshotSource 스냅샷 시점에 순회할 현재 상품 목록
+     */
+    public void open(Consumer<Item> recovery, Iterable<Item> snapshotSource) {
+        try {
+            Files.createDirectories(directory);
+            long boundary = loadLatestSnapshot(recovery);
+            long lastLsn = replaySegments(boundary, recovery);
+            nextLsn = Math.max(boundary, lastLsn + 1);
+            openSegment(nextLsn);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        long syncMillis = syncInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(() -> runQuietly(this::sync), syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+        long snapshotMillis = snapshotInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(() -> runQuietly(() -> snapshot(snapshotSource)), snapshotMillis, snapshotMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 저장소 변경 + {@link #append(Item)} 를 하나의 쓰기 작업으로 묶는다.
+     * : 스냅샷 경계 전환은 이 작업들이 끝날 때까지 기다린다.
+     */
+    public <T> T write(Supplier<T> operation) {
+        checkpointLock.readLock().lock();
+        try {
+            return operation.get();
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+    }
+
+    public void append(Item item) {
+        byte[] name = item.getItemName() == null ? null : item.getItemName().getBytes(StandardCharsets.UTF_8);
+        int payloadSize = 8 + 8 + 4 + 4 + 4 + (name == null ? 0 : name.length);
+        ByteBuffer payload = ByteBuffer.allocate(payloadSize);
+        CRC32C crc = new CRC32C();
+
+        synchronized (appendLock) {
+            payload.putLong(nextLsn++)
+                    .putLong(item.getId())
+                    .putInt(toInt(item.getPrice()))
+                    .putInt(toInt(item.getQuantity()))
+                    .putInt(name == null ? -1 : name.length);
+            if (name != null) {
+                payload.put(name);
+            }
+            crc.update(payload.array());
+
+            if (segment.remaining() < RECORD_HEADER_SIZE + payloadSize + 4) {//다음 레코드 길이(0) 자리까지 남겨둔다.
+                rotate(nextLsn - 1);
+            }
+            segment.putInt(payloadSize)
+                    .putInt((int) crc.getValue())
+                    .put(payload.array());
+            dirty = true;
+        }
+    }
+
+    /**
+     * 새 세그먼트로 전환하고 전체 상품을 스냅샷으로 기록한 뒤, 필요 없어진 세그먼트와 스냅샷을 지운다.
+     */
+    public void snapshot(Iterable<Item> items) {
+        long boundary;
+        checkpointLock.writeLock().lock();
+        try {
+            synchronized (appendLock) {
+                boundary = nextLsn;
+                rotate(boundary);
+            }
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+
+        try {
+            Path temp = directory.resolve(SNAPSHOT_PREFIX + boundary + SNAPSHOT_SUFFIX + ".tmp");
+            int count = writeSnapshot(temp, boundary, items);
+            Files.move(temp, directory.resolve(SNAPSHOT_PREFIX + boundary + SNAPSHOT_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+            deleteBefore(boundary);
+            log.info("item snapshot written. boundary={}, items={}", boundary, count);
+        } catch (IOException e) {
+            log.error("item snapshot failed. boundary={}", boundary, e);
+        }
+    }
+
+    public void sync() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        MappedByteBuffer current;
+        synchronized (appendLock) {
+            current = segment;
+        }
+        current.force();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        synchronized (appendLock) {
+            segment.force();
+            closeQuietly(channel);
+        }
+    }
+
+    private void rotate(long startLsn) {
+        segment.force();
+        closeQuietly(channel);
+        try {
+            openSegment(startLsn);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void openSegment(long startLsn) throws IOException {
+        Path path = directory.resolve(SEGMENT_PREFIX + startLsn + SEGMENT_SUFFIX);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+
+    private long loadLatestSnapshot(Consumer<Item> recovery) throws IOException {
+        List<Long> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        if (snapshots.isEmpty()) {
+            return 1;
+        }
+        long boundary = snapshots.get(snapshots.size() - 1);
+        Path path = directory.resolve(SNAPSHOT_PREFIX + boundary + SNAPSHOT_SUFFIX);
+        CRC32C crc = new CRC32C();
+        try (InputStream file = Files.newInputStream(path);
+             CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(file), crc);
+             DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readLong() != boundary) {
+                throw new IllegalStateException("invalid item snapshot: " + path);
+            }
+            long id;
+            while ((id = in.readLong()) != 0) {
+                Item item = new Item(
+                        in.readBoolean() ? in.readUTF() : null,
+                        toInteger(in.readInt()),
+                        toInteger(in.readInt()));
+                item.setId(id);
+                recovery.accept(item);
+            }
+            long expected = crc.getValue();
+            if (in.readLong() != expected) {
+                throw new IllegalStateException("item snapshot checksum mismatch: " + path);
+            }
+        }
+        log.info("item snapshot loaded. boundary={}", boundary);
+        return boundary;
+    }
+
+    private long replaySegments(long boundary, Consumer<Item> recovery) throws IOException {
+        List<Long> starts = list(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        long lastLsn = 0;
+        int replayed = 0;
+        for (int i = 0; i < starts.size(); i++) {
+            long nextStart = i + 1 < starts.size() ? starts.get(i + 1) : Long.MAX_VALUE;
+            if (nextStart <= boundary) {
+                continue;//스냅샷에 이미 포함된 세그먼트
+            }
+            Path path = directory.resolve(SEGMENT_PREFIX + starts.get(i) + SEGMENT_SUFFIX);
+            try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+                while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+                    int size = buffer.getInt();
+                    int checksum = buffer.getInt();
+                    if (size <= 0 || size > buffer.remaining()) {
+                        break;
+                    }
+                    byte[] payload = new byte[size];
+                    buffer.get(payload);
+                    CRC32C crc = new CRC32C();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != checksum) {
+                        log.warn("item journal torn record skipped. segment={}", path);
+                        break;
+                    }
+                    ByteBuffer record = ByteBuffer.wrap(payload);
+                    long lsn = record.getLong();
+                    lastLsn = Math.max(lastLsn, lsn);
+                    if (lsn < boundary) {
+                        continue;
+                    }
+                    recovery.accept(decode(record));
+                    replayed++;
+                }
+            }
+        }
+        log.info("item journal replayed. records={}, lastLsn={}", replayed, lastLsn);
+        return lastLsn;
+    }
+
+    private int writeSnapshot(Path path, long boundary, Iterable<Item> items) throws IOException {
+        CRC32C crc = new CRC32C();
+        int count = 0;
+        try (FileOutputStream file = new FileOutputStream(path.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file), crc);
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(boundary);
+            for (Item item : items) {
+                out.writeLong(item.getId());
+                out.writeBoolean(item.getItemName() != null);
+                if (item.getItemName() != null) {
+                    out.writeUTF(item.getItemName());
+                }
+                out.writeInt(toInt(item.getPrice()));
+                out.writeInt(toInt(item.getQuantity()));
+                count++;
+            }
+            out.writeLong(0);
+            out.flush();
+            out.writeLong(crc.getValue());
+            out.flush();
+            file.getChannel().force(true);
+        }
+        return count;
+    }
+
+    private void deleteBefore(long boundary) throws IOException {
+        List<Long> starts = list(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        for (int i = 0; i + 1 < starts.size(); i++) {
+            if (starts.get(i + 1) <= boundary) {
+                Files.deleteIfExists(directory.resolve(SEGMENT_PREFIX + starts.get(i) + SEGMENT_SUFFIX));
+            }
+        }
+        for (long snapshot : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (snapshot < boundary) {
+                Files.deleteIfExists(directory.resolve(SNAPSHOT_PREFIX + snapshot + SNAPSHOT_SUFFIX));
+            }
+        }
+    }
+
+    private List<Long> list(String prefix, String suffix) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                numbers.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private static Item decode(ByteBuffer record) {
+        long id = record.getLong();
+        Integer price = toInteger(record.getInt());
+        Integer quantity = toInteger(record.getInt());
+        int nameLength = record.getInt();
+        String name = null;
+        if (nameLength >= 0) {
+            byte[] bytes = new byte[nameLength];
+            record.get(bytes);
+            name = new String(bytes, StandardCharsets.UTF_8);
+        }
+        Item item = new Item(name, price, quantity);
+        item.setId(id);
+        return item;
+    }
+
+    private static int toInt(Integer value) {
+        return value == null ? NULL_INT : value;
+    }
+
+    private static Integer toInteger(int value) {
+        return value == NULL_INT ? null : value;
+    }
+
+    /**
+     * 예외가 나면 이후 주기 실행이 멈추기 때문에, 로그만 남기고 넘어간다.
+     */
+    private static void runQuietly(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            log.error("item journal task failed", e);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.warn("close failed", e);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package hello.itemservice.repository.memory;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemIdAllocator;
+import hello.itemservice.repository.ItemKeysetPaging;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCond;
 import hello.itemservice.repository.ItemUpdateDto;
@@ -8,55 +10,297 @@ import org.springframework.stereotype.Repository;
 import org.springframework.util.ObjectUtils;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * 동시성
+ * : store 는 {@link ConcurrentLongMap} (primitive long 키, 세그먼트 단위 쓰기 락, 락 없는 읽기) 를 사용한다.
+ * : id 는 {@link AtomicLong} 으로 발급하기 때문에 동시에 addItem 이 들어와도 id 가 중복되지 않는다.
+ * : 스프링 빈은 싱글톤이므로 store, sequence 를 static 으로 둘 필요가 없다.
+ *
+ * 보조 인덱스
+ * : {@link PriceIndex} maxPrice 조건이 있으면 전체 스캔 대신 가격 인덱스 범위 조회로 후보를 찾고, 현재 상품의 price 로 다시 확인한다.
+ * : {@link NgramIndex} itemName 조건이 있으면 n-gram 역색인의 교집합으로 후보를 찾고, contains 로 다시 확인한다.
+ * : save, update 가 store 와 함께 인덱스를 갱신한다.
+ * : 검색 조건 없이 키셋 페이징만 있으면 id 인덱스({@link ConcurrentSkipListSet})에서 커서 다음 id 부터 size 건만 읽는다.
+ *
+ * id
+ * : 기본은 sequence 로 발급한다. {@link ItemIdAllocator} 를 전달하면 발급기의 id 를 사용한다. (DB 저장소와 같은 id 공간을 쓸 때)
+ *
+ * 영속화(선택)
+ * : {@link ItemJournal} 을 전달하면 save, update 결과를 write-ahead log 에 남기고, 생성 시점에 스냅샷 + 로그로 store 를 복구한다.
+ * : 같은 상품의 로그 순서가 뒤바뀌지 않도록 store 변경과 로그 추가를 같은 세그먼트 락 안에서 수행한다.
+ *
+ * 수정
+ * : update 는 저장된 Item 을 직접 수정하지 않고 새 Item 으로 교체한다. (copy-on-write)
+ * : save 는 전달받은 Item 의 복사본을 저장하고, 조회는 복사본을 반환한다. 호출자가 Item 을 수정해도 저장된 값과
+ *   가격/n-gram 인덱스가 어긋나지 않는다. ({@link VersionedMemoryItemRepository} 와 같다)
+ * : 다만 findAll 결과는 상품마다 읽은 시점이 다를 수 있다. 한 시점의 일관된 목록이 필요하면 {@link VersionedMemoryItemRepository} 를 사용한다.
+ * : adjustQuantity 는 {@link ConcurrentLongMap#replace} (compare-and-set) 로 수량만 바꾼 새 Item 으로 교체한다.
+ *
+ * streamAll
+ * : store 를 순회하는 지연(lazy) 스트림이다. 결과 List 를 만들지 않으며 id 순서를 보장하지 않는다.
+ * : 키셋 페이징 조건(afterId, beforeId, size)이 있으면 findAll 과 같은 한 페이지를 id 순으로 돌려준다. (DB 구현체와 같은 결과)
+ */
 @Repository
 public class MemoryItemRepository implements ItemRepository {
 
-    private static final Map<Long, Item> store = new HashMap<>(); //static
-    private static long sequence = 0L; //static
+    private final ConcurrentLongMap<Item> store = new ConcurrentLongMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final PriceIndex priceIndex = new PriceIndex();
+    private final NgramIndex ngramIndex = new NgramIndex();
+    private final NavigableSet<Long> ids = new ConcurrentSkipListSet<>();
+    private final ItemJournal journal;
+    private final ItemIdAllocator idAllocator;
+
+    public MemoryItemRepository() {
+        this(null);
+    }
+
+    public MemoryItemRepository(ItemJournal journal) {
+        this(journal, null);
+    }
+
+    public MemoryItemRepository(ItemJournal journal, ItemIdAllocator idAllocator) {
+        this.journal = journal;
+        this.idAllocator = idAllocator;
+        if (journal != null) {
+            journal.open(this::restore, store);
+        }
+    }
 
     @Override
     public Item save(Item item) {
-        item.setId(++sequence);
-        store.put(item.getId(), item);
-        return item;
+        return write(() -> {
+            item.setId(nextId());
+            Item stored = item.copy();
+            store.compute(stored.getId(), (id, old) -> {
+                append(stored);
+                return stored;
+            });
+            priceIndex.add(stored.getPrice(), stored.getId());
+            ngramIndex.add(stored.getItemName(), stored.getId());
+            ids.add(stored.getId());
+            return item;
+        });
+    }
+
+    private long nextId() {
+        if (idAllocator == null) {
+            return sequence.incrementAndGet();
+        }
+        return idAllocator.nextId();
     }
 
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        Item findItem = findById(itemId).orElseThrow();
-        findItem.setItemName(updateParam.getItemName());
-        findItem.setPrice(updateParam.getPrice());
-        findItem.setQuantity(updateParam.getQuantity());
+        Item findItem = write(() -> store.computeIfPresent(itemId, (id, item) -> {
+            priceIndex.change(item.getPrice(), updateParam.getPrice(), id);
+            ngramIndex.change(item.getItemName(), updateParam.getItemName(), id);
+            //저장된 인스턴스를 수정하지 않고 새 Item 으로 교체한다. (조회 중인 쪽이 수정 도중의 상태를 보지 않도록)
+            Item updated = new Item(updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity());
+            updated.setId(id);
+            append(updated);
+            return updated;
+        }));
+        if (findItem == null) {
+            throw new NoSuchElementException("item not found: " + itemId);
+        }
+    }
+
+    /**
+     * compare-and-set 으로 증감한다.
+     * : 락 없이 현재 Item 을 읽고 수량을 바꾼 새 Item 을 만든 뒤, 그 사이에 다른 쓰기가 없었을 때만 교체한다. 실패하면 다시 읽는다.
+     * : 영속화(journal)를 사용하면 로그 순서를 지키기 위해 update 와 같이 세그먼트 락 안에서 계산한다.
+     */
+    @Override
+    public boolean adjustQuantity(Long itemId, int delta) {
+        if (journal != null) {
+            boolean[] applied = new boolean[1];
+            Item result = write(() -> store.computeIfPresent(itemId, (id, item) -> {
+                Item updated = withQuantity(item, delta);
+                if (updated == null) {
+                    return null;//기존 값 유지
+                }
+                append(updated);
+                applied[0] = true;
+                return updated;
+            }));
+            if (result == null) {
+                throw new NoSuchElementException("item not found: " + itemId);
+            }
+            return applied[0];
+        }
+
+        while (true) {
+            Item current = itemId == null ? null : store.get(itemId);
+            if (current == null) {
+                throw new NoSuchElementException("item not found: " + itemId);
+            }
+            Item updated = withQuantity(current, delta);
+            if (updated == null) {
+                return false;
+            }
+            if (store.replace(itemId, current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 수량만 바꾼 새 Item. 수량이 음수가 되면 null
+     */
+    private static Item withQuantity(Item item, int delta) {
+        long quantity = (item.getQuantity() == null ? 0L : item.getQuantity()) + delta;
+        if (quantity < 0) {
+            return null;
+        }
+        Item updated = new Item(item.getItemName(), item.getPrice(), Math.toIntExact(quantity));
+        updated.setId(item.getId());
+        return updated;
     }
 
     @Override
     public Optional<Item> findById(Long id) {
-        return Optional.ofNullable(store.get(id));
+        if (id == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(store.get(id)).map(Item::copy);
+    }
+
+    /**
+     * id 마다 store 를 바로 조회한다.
+     */
+    @Override
+    public List<Item> findAllById(Collection<Long> ids) {
+        List<Item> result = new ArrayList<>(ids.size());
+        for (Long id : new LinkedHashSet<>(ids)) {
+            Item item = id == null ? null : store.get(id);
+            if (item != null) {
+                result.add(item.copy());
+            }
+        }
+        return result;
     }
 
     @Override
     public List<Item> findAll(ItemSearchCond cond) {
         String itemName = cond.getItemName();
         Integer maxPrice = cond.getMaxPrice();
-        return store.values().stream()
-                .filter(item -> {
-                    if (ObjectUtils.isEmpty(itemName)) {
-                        return true;
-                    }
-                    return item.getItemName().contains(itemName);
-                }).filter(item -> {
-                    if (maxPrice == null) {
-                        return true;
-                    }
-                    return item.getPrice() <= maxPrice;
-                })
-                .collect(Collectors.toList());
+        List<Item> result = new ArrayList<>();
+
+        if (!ObjectUtils.isEmpty(itemName)) {
+            ngramIndex.forEachCandidate(itemName, id -> {
+                Item item = store.get(id);
+                if (item != null && nameMatches(item, itemName) && priceMatches(item, maxPrice)) {
+                    result.add(item.copy());
+                }
+            });
+        } else if (maxPrice != null) {
+            Set<Long> added = new HashSet<>();
+            priceIndex.forEachAtMost(maxPrice, (price, id) -> {
+                //엔트리의 가격이 아니라 현재 상품으로 다시 확인한다. 가격 변경 도중에는 같은 id 의 엔트리가 둘 있을 수 있다.
+                Item item = store.get(id);
+                if (item != null && priceMatches(item, maxPrice) && added.add(id)) {
+                    result.add(item.copy());
+                }
+            });
+        } else if (ItemKeysetPaging.isPaged(cond)) {
+            return findPageById(cond);
+        } else {
+            for (Item item : store) {
+                result.add(item.copy());
+            }
+        }
+
+        result.sort(Comparator.comparing(Item::getId));//해시/가격 순서가 아닌 저장 순서(id)로 반환한다.
+        return ItemKeysetPaging.page(result, cond);
+    }
+
+    /**
+     * 검색 조건 없이 페이징만 있는 경우 (기본 목록 화면)
+     * : 정렬된 id 인덱스에서 커서 범위(tailSet/headSet)만 읽는다. id 사이에 빈 구간이 있어도(발급기 사용, 블록 단위 발급) 건너뛰지 않는다.
+     * : 전체를 순회하지 않으며, 비용은 O(log n + size) 이다.
+     */
+    private List<Item> findPageById(ItemSearchCond cond) {
+        NavigableSet<Long> range = ids;
+        if (cond.getAfterId() != null) {
+            range = range.tailSet(cond.getAfterId(), false);
+        }
+        if (cond.getBeforeId() != null) {
+            range = range.headSet(cond.getBeforeId(), false);
+        }
+        if (ItemKeysetPaging.isBackward(cond)) {
+            range = range.descendingSet();
+        }
+        int limit = cond.getSize() == null ? Integer.MAX_VALUE : cond.getSize();
+        List<Item> result = new ArrayList<>();
+
+        for (Iterator<Long> it = range.iterator(); it.hasNext() && result.size() < limit; ) {
+            Item item = store.get(it.next());
+            if (item != null) {
+                result.add(item.copy());
+            }
+        }
+        return ItemKeysetPaging.toAscending(result, cond);
+    }
+
+    @Override
+    public Stream<Item> streamAll(ItemSearchCond cond) {
+        if (ItemKeysetPaging.isPaged(cond)) {
+            return findAll(cond).stream();
+        }
+        String itemName = cond.getItemName();
+        Integer maxPrice = cond.getMaxPrice();
+        return StreamSupport.stream(store.spliterator(), false)
+                .filter(item -> ObjectUtils.isEmpty(itemName) || nameMatches(item, itemName))
+                .filter(item -> priceMatches(item, maxPrice))
+                .map(Item::copy);
+    }
+
+    private boolean nameMatches(Item item, String itemName) {
+        return item.getItemName() != null && item.getItemName().contains(itemName);
+    }
+
+    private boolean priceMatches(Item item, Integer maxPrice) {
+        return maxPrice == null || (item.getPrice() != null && item.getPrice() <= maxPrice);
+    }
+
+    private <T> T write(Supplier<T> operation) {
+        return journal == null ? operation.get() : journal.write(operation);
+    }
+
+    private void append(Item item) {
+        if (journal != null) {
+            journal.append(item);
+        }
+    }
+
+    /**
+     * 복구된 상태를 인덱스와 함께 반영한다. 같은 id 가 여러 번 오면 마지막 상태가 남는다.
+     */
+    private void restore(Item item) {
+        Item old = store.put(item.getId(), item);
+        if (old == null) {
+            priceIndex.add(item.getPrice(), item.getId());
+            ngramIndex.add(item.getItemName(), item.getId());
+            ids.add(item.getId());
+        } else {
+            priceIndex.change(old.getPrice(), item.getPrice(), item.getId());
+            ngramIndex.change(old.getItemName(), item.getItemName(), item.getId());
+        }
+        sequence.accumulateAndGet(item.getId(), Math::max);
     }
 
     public void clearStore() {
         store.clear();
+        priceIndex.clear();
+        ngramIndex.clear();
+        ids.clear();
     }
 
 }
@@ -0,0 +1,76 @@
+package hello.itemservice.repository.memory;
+
+import hello.itemservice.repository.ItemNameNgrams;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+
+/**
+ * itemName n-gram 역색인 (gram -> id 집합)
+ * : {@link ItemNameNgrams} 로 자른 조각마다 posting list 를 유지한다.
+ * : 검색어 조각들의 posting list 중 가장 작은 것부터 교집합을 구해 후보 id 를 만든다.
+ *
+ * 이름 변경
+ * : 새 조각을 먼저 추가하고, 더 이상 쓰지 않는 조각을 나중에 제거한다. (PriceIndex 와 같은 순서)
+ * : 후보는 조회하는 쪽에서 contains 로 다시 확인하므로 잠깐 남아있는 이전 조각은 결과에 영향이 없다.
+ */
+final class NgramIndex {
+
+    private final ConcurrentHashMap<String, Set<Long>> postings = new ConcurrentHashMap<>();
+
+    void add(String itemName, long id) {
+        for (String gram : ItemNameNgrams.indexGrams(itemName)) {
+            postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    void change(String oldName, String newName, long id) {
+        if (oldName != null && oldName.equals(newName)) {
+            return;
+        }
+        add(newName, id);
+        Set<String> newGrams = ItemNameNgrams.indexGrams(newName);
+        for (String gram : ItemNameNgrams.indexGrams(oldName)) {
+            if (!newGrams.contains(gram)) {
+                Set<Long> ids = postings.get(gram);
+                if (ids != null) {
+                    ids.remove(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * 검색어의 조각을 모두 가진 id 를 전달한다.
+     */
+    void forEachCandidate(String keyword, LongConsumer consumer) {
+        List<Set<Long>> lists = new ArrayList<>();
+        for (String gram : ItemNameNgrams.queryGrams(keyword)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null || ids.isEmpty()) {
+                return;
+            }
+            lists.add(ids);
+        }
+        if (lists.isEmpty()) {
+            return;
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        Set<Long> smallest = lists.get(0);
+        List<Set<Long>> others = lists.subList(1, lists.size());
+        for (Long id : smallest) {
+            if (others.stream().allMatch(ids -> ids.contains(id))) {
+                consumer.accept(id);
+            }
+        }
+    }
+
+    void clear() {
+        postings.clear();
+    }
+}
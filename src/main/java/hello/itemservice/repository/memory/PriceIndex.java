@@ -0,0 +1,84 @@
+package hello.itemservice.repository.memory;
+
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 가격 보조 인덱스 (price, id) 정렬 집합
+ * : findAll 의 maxPrice 조건을 전체 스캔 대신 headSet 범위 조회로 처리한다. O(log n + k)
+ * : price 가 null 인 상품은 price <= ? 조건에 걸리지 않으므로 인덱스에 넣지 않는다. (SQL 의 null 비교와 동일)
+ *
+ * 가격 변경
+ * : 새 엔트리를 먼저 추가하고 이전 엔트리를 나중에 제거한다. 그 사이에는 같은 id 의 엔트리가 둘 있다.
+ * : 조회하는 쪽에서 id 로 중복을 제거하고, 엔트리의 price 가 아닌 현재 상품의 price 로 조건을 다시 확인한다.
+ * : 조회(headSet 순회)는 약한 일관성(weakly consistent)을 가진다. 순회와 동시에 이미 지나간 위치로 가격이 바뀐 상품은 결과에서 빠질 수 있다.
+ *   한 시점의 일관된 목록이 필요하면 {@link VersionedMemoryItemRepository} 를 사용한다.
+ */
+final class PriceIndex {
+
+    private final NavigableSet<Entry> entries = new ConcurrentSkipListSet<>();
+
+    void add(Integer price, long id) {
+        if (price != null) {
+            entries.add(new Entry(price, id));
+        }
+    }
+
+    void change(Integer oldPrice, Integer newPrice, long id) {
+        if (oldPrice != null && oldPrice.equals(newPrice)) {
+            return;
+        }
+        add(newPrice, id);
+        if (oldPrice != null) {
+            entries.remove(new Entry(oldPrice, id));
+        }
+    }
+
+    /**
+     * price <= maxPrice 인 엔트리를 가격 순으로 전달한다.
+     */
+    void forEachAtMost(int maxPrice, PriceIdConsumer consumer) {
+        for (Entry entry : entries.headSet(new Entry(maxPrice, Long.MAX_VALUE), true)) {
+            consumer.accept(entry.price, entry.id);
+        }
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    @FunctionalInterface
+    interface PriceIdConsumer {
+        void accept(int price, long id);
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        final int price;
+        final long id;
+
+        Entry(int price, long id) {
+            this.price = price;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int result = Integer.compare(price, o.price);
+            return result != 0 ? result : Long.compare(id, o.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry other = (Entry) o;
+            return price == other.price && id == other.id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * price + Long.hashCode(id);
+        }
+    }
+}
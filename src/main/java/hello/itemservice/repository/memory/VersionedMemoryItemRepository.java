@@ -0,0 +1,248 @@
+package hello.itemservice.repository.memory;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemKeysetPaging;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.ObjectUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * MVCC(다중 버전) 메모리 저장소
+ * : MemoryItemRepository 의 findAll 은 순회 도중의 수정이 섞일 수 있다. (상품 A 는 수정 전, 상품 B 는 수정 후)
+ * : 이 저장소는 상품마다 불변(immutable) 버전의 체인을 두고, findAll 은 시작 시점의 버전으로 일관된 스냅샷을 읽는다.
+ *
+ * 쓰기
+ * : 저장된 Item 인스턴스는 절대 수정하지 않는다. update 는 새 Item 을 만들어 새 버전으로 게시한다.
+ * : 버전 번호 발급 + 체인 머리 교체만 commitLock 안에서 수행한다. (포인터 교체 수준의 짧은 구간)
+ *
+ * 읽기
+ * : findById 는 가장 최근 버전을 락 없이 읽는다.
+ * : findAll 은 clock(마지막 커밋 버전)을 스냅샷 버전 S 로 잡고, 상품마다 S 이하의 가장 최근 버전을 읽는다. 락을 잡지 않는다.
+ * : 조회 결과는 버전의 복사본이다. 호출자가 반환된 Item 을 수정해도 저장된 버전(다른 스냅샷이 함께 읽는 인스턴스)은 바뀌지 않는다.
+ *
+ * 이전 버전 정리
+ * : 쓰기 시점에 활성 스냅샷 중 가장 오래된 버전보다 오래된 버전은 체인에서 끊어낸다.
+ * : 스냅샷을 등록하는 사이에 정리가 끼어드는 경우를 막기 위해, 쓰는 쪽은 정리 경계(horizon)를 먼저 공개하고
+ *   읽는 쪽은 등록 후 horizon 이 자신의 버전을 넘지 않았는지 확인한다. 넘었으면 새 버전으로 다시 등록한다.
+ */
+@Repository
+public class VersionedMemoryItemRepository implements ItemRepository {
+
+    private final ConcurrentLongMap<ItemVersion> store = new ConcurrentLongMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Object commitLock = new Object();
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong horizon = new AtomicLong();
+    private final AtomicLong readerSequence = new AtomicLong();
+    private final ConcurrentSkipListSet<Snapshot> snapshots = new ConcurrentSkipListSet<>();
+
+    @Override
+    public Item save(Item item) {
+        item.setId(sequence.incrementAndGet());
+        commit(item.copy());
+        return item;
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        if (itemId == null || store.get(itemId) == null) {
+            throw new NoSuchElementException("item not found: " + itemId);
+        }
+        Item updated = new Item(updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity());
+        updated.setId(itemId);
+        commit(updated);
+    }
+
+    /**
+     * commitLock 안에서 최신 버전을 확인하고 수량만 바꾼 새 버전을 게시한다.
+     */
+    @Override
+    public boolean adjustQuantity(Long itemId, int delta) {
+        synchronized (commitLock) {
+            ItemVersion head = itemId == null ? null : store.get(itemId);
+            if (head == null) {
+                throw new NoSuchElementException("item not found: " + itemId);
+            }
+            Item current = head.item;
+            long quantity = (current.getQuantity() == null ? 0L : current.getQuantity()) + delta;
+            if (quantity < 0) {
+                return false;
+            }
+            Item updated = new Item(current.getItemName(), current.getPrice(), Math.toIntExact(quantity));
+            updated.setId(itemId);
+            commit(updated);
+            return true;
+        }
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        ItemVersion head = store.get(id);
+        return head == null ? Optional.empty() : Optional.of(head.item.copy());
+    }
+
+    /**
+     * 상품마다 가장 최근 버전을 락 없이 읽는다. (findById 와 같다)
+     */
+    @Override
+    public List<Item> findAllById(Collection<Long> ids) {
+        List<Item> result = new ArrayList<>(ids.size());
+        for (Long id : new LinkedHashSet<>(ids)) {
+            ItemVersion head = id == null ? null : store.get(id);
+            if (head != null) {
+                result.add(head.item.copy());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Item> findAll(ItemSearchCond cond) {
+        String itemName = cond.getItemName();
+        Integer maxPrice = cond.getMaxPrice();
+
+        Snapshot snapshot = openSnapshot();
+        try {
+            List<Item> result = new ArrayList<>();
+            for (ItemVersion head : store) {
+                Item item = head.visibleAt(snapshot.version);
+                if (item == null) {
+                    continue;//스냅샷 이후에 저장된 상품
+                }
+                if (!ObjectUtils.isEmpty(itemName) && (item.getItemName() == null || !item.getItemName().contains(itemName))) {
+                    continue;
+                }
+                if (maxPrice != null && (item.getPrice() == null || item.getPrice() > maxPrice)) {
+                    continue;
+                }
+                result.add(item);
+            }
+            result.sort(Comparator.comparing(Item::getId));
+            List<Item> page = ItemKeysetPaging.page(result, cond);
+            List<Item> copies = new ArrayList<>(page.size());
+            page.forEach(item -> copies.add(item.copy()));
+            return copies;
+        } finally {
+            snapshots.remove(snapshot);
+        }
+    }
+
+    /**
+     * 스냅샷을 연 채로 지연 순회한다. Stream 을 닫을 때 스냅샷이 해제된다. (닫지 않으면 이전 버전이 정리되지 않는다)
+     * : 키셋 페이징 조건이 있으면 id 순으로 정렬해야 하므로 findAll 의 한 페이지를 스트림으로 감싼다. (DB 구현체와 같은 결과)
+     */
+    @Override
+    public Stream<Item> streamAll(ItemSearchCond cond) {
+        if (ItemKeysetPaging.isPaged(cond)) {
+            return findAll(cond).stream();
+        }
+        String itemName = cond.getItemName();
+        Integer maxPrice = cond.getMaxPrice();
+
+        Snapshot snapshot = openSnapshot();
+        return StreamSupport.stream(store.spliterator(), false)
+                .map(head -> head.visibleAt(snapshot.version))
+                .filter(Objects::nonNull)
+                .filter(item -> ObjectUtils.isEmpty(itemName) || (item.getItemName() != null && item.getItemName().contains(itemName)))
+                .filter(item -> maxPrice == null || (item.getPrice() != null && item.getPrice() <= maxPrice))
+                .map(Item::copy)
+                .onClose(() -> snapshots.remove(snapshot));
+    }
+
+    public void clearStore() {
+        store.clear();
+    }
+
+    private void commit(Item item) {
+        synchronized (commitLock) {
+            long previous = clock.get();
+            ItemVersion head = new ItemVersion(item, previous + 1, store.get(item.getId()));
+            store.put(item.getId(), head);
+            clock.set(head.version);
+
+            //정리 경계를 먼저 공개한 뒤 활성 스냅샷을 확인한다. (순서가 바뀌면 등록 중인 스냅샷의 버전을 지울 수 있다)
+            horizon.set(previous);
+            long bound = snapshots.isEmpty() ? previous : Math.min(previous, snapshots.first().version);
+            head.pruneOlderThan(bound);
+        }
+    }
+
+    private Snapshot openSnapshot() {
+        while (true) {
+            Snapshot snapshot = new Snapshot(clock.get(), readerSequence.incrementAndGet());
+            snapshots.add(snapshot);
+            if (horizon.get() <= snapshot.version) {
+                return snapshot;
+            }
+            snapshots.remove(snapshot);
+        }
+    }
+
+    private static final class ItemVersion {
+        final Item item;
+        final long version;
+        volatile ItemVersion previous;
+
+        ItemVersion(Item item, long version, ItemVersion previous) {
+            this.item = item;
+            this.version = version;
+            this.previous = previous;
+        }
+
+        Item visibleAt(long snapshotVersion) {
+            ItemVersion v = this;
+            while (v != null && v.version > snapshotVersion) {
+                v = v.previous;
+            }
+            return v == null ? null : v.item;
+        }
+
+        /**
+         * bound 이하의 가장 최근 버전까지만 남기고 그보다 오래된 버전은 끊어낸다.
+         */
+        void pruneOlderThan(long bound) {
+            ItemVersion v = this;
+            while (v != null && v.version > bound) {
+                v = v.previous;
+            }
+            if (v != null) {
+                v.previous = null;
+            }
+        }
+    }
+
+    private static final class Snapshot implements Comparable<Snapshot> {
+        final long version;
+        final long readerId;
+
+        Snapshot(long version, long readerId) {
+            this.version = version;
+            this.readerId = readerId;
+        }
+
+        @Override
+        public int compareTo(Snapshot o) {
+            int result = Long.compare(version, o.version);
+            return result != 0 ? result : Long.compare(readerId, o.readerId);
+        }
+    }
+}
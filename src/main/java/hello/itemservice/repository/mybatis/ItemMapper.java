@@ -2,9 +2,11 @@ package hello.itemservice.repository.mybatis;
 
 import hello.itemservice.domain.Item;
 import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemSummary;
 import hello.itemservice.repository.ItemUpdateDto;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 
 import java.util.List;
 import java.util.Optional;
@@ -19,15 +21,32 @@ import java.util.Optional;
  * : 앞서 application.properties 에 mybatis.type-aliases-package=hello.itemservice.domain 속성을 지정한 덕분에 모든 패키지 명을 다 적지는 않아도 된다. 그렇지 않으면 모든 패키지 명을 다 적어야 한다.
  * : JdbcTemplate의 BeanPropertyRowMapper 처럼 SELECT SQL의 결과를 편리하게 객체로 바로 변환해준다.
  * : mybatis.configuration.map-underscore-to-camel-case=true 속성을 지정한 덕분에 언더스코어를 카멜 표기법으로 자동으로 처리해준다. ( item_name itemName )
+ *
+ * findAllById(): <foreach> 로 in 목록을 만든다. 파라미터가 컬렉션이므로 @Param 으로 이름을 지정한다.
+ *
+ * findSummaries(): resultMap(itemSummaryMap) 의 constructor 매핑으로 불변 DTO 를 생성한다.
+ *
+ * streamAll(): {@link Cursor} 를 반환하면 결과를 List 로 모으지 않고 이터레이터로 한 행씩 읽는다.
+ * : 커서는 SqlSession 이 열려 있는 동안만 읽을 수 있으므로 트랜잭션 안에서 사용해야 한다.
  */
 @Mapper
 public interface ItemMapper {
 
     void save(Item item);
 
+    void saveWithId(Item item);
+
     void update(@Param("id") Long id, @Param("updateParam") ItemUpdateDto itemUpdateDto);
 
+    int adjustQuantity(@Param("id") Long id, @Param("delta") int delta);
+
     Optional<Item> findById(Long id);
 
+    List<Item> findAllById(@Param("ids") List<Long> ids);
+
     List<Item> findAll(ItemSearchCond cond);
+
+    List<ItemSummary> findSummaries(ItemSearchCond cond);
+
+    Cursor<Item> streamAll(ItemSearchCond cond);
 }
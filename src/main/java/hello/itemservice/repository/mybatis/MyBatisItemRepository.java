@@ -1,46 +1,194 @@
 package hello.itemservice.repository.mybatis;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemIdAllocator;
+import hello.itemservice.repository.ItemIdBatches;
+import hello.itemservice.repository.ItemKeysetPaging;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemSummary;
 import hello.itemservice.repository.ItemUpdateDto;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.mybatis.spring.SqlSessionTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * 1. 애플리케이션 로딩 시점에 MyBatis 스프링 연동 모듈은 @Mapper 가 붙어있는 인터페이스를 조사한다.
  * 2. 해당 인터페이스가 발견되면 동적 프록시 기술을 사용해서 ItemMapper 인터페이스의 구현체를 만든다.
  * 3. 생성된 구현체를 스프링 빈으로 등록한다.
+ *
+ * saveAll, updateAll
+ * : {@link SqlSessionTemplate} 을 전달하면, 메서드 안에서만 {@link ExecutorType#BATCH} 세션을 따로 열어서 매퍼 호출을 JDBC 배치로 모아두었다가
+ *   {@link #BATCH_SIZE} 건마다, 그리고 메서드가 끝나기 전에 flushStatements 로 전송한다. 생성된 키는 flush 시점에 각 Item 에 채워진다.
+ * : 배치 세션은 SqlSessionTemplate 처럼 트랜잭션에 등록하지 않는다. 같은 트랜잭션의 일반(SIMPLE) 세션과 ExecutorType 이 섞여도 예외가 발생하지 않는다.
+ *   커넥션은 스프링 트랜잭션의 커넥션을 그대로 사용하므로(SpringManagedTransaction) 커밋, 롤백은 트랜잭션을 따른다.
+ * : 메서드가 끝날 때 모든 문장이 전송되어 있으므로, 이어지는 조회가 변경 내용을 본다.
+ *   같은 트랜잭션의 일반 세션이 캐시해 둔 조회 결과(1차 캐시)는 비운다.
+ * : SqlSessionTemplate 을 전달하지 않으면 save, update 를 반복한다.
+ *
+ * {@link ItemIdAllocator}
+ * : 생성자로 전달하면 id 를 미리 발급해서 saveWithId 로 insert 한다. 배치 세션에서도 키를 돌려받을 필요가 없다.
+ *
+ * findAllById
+ * : {@link ItemIdBatches} 로 나눈 묶음마다 매퍼의 in 목록 조회를 한 번 호출한다.
+ *
+ * streamAll
+ * : 매퍼의 {@link Cursor} 를 Stream 으로 감싼다. Stream 을 닫으면 커서도 닫힌다.
+ * : 커서는 SqlSession(커넥션)이 열려 있는 동안만 읽을 수 있다. Propagation.MANDATORY 로 호출자의 트랜잭션을 요구한다.
+ *   (트랜잭션 밖에서는 SqlSessionTemplate 이 매퍼 호출이 끝나자마자 세션을 닫는다)
  */
 @Slf4j
 @Repository
-@RequiredArgsConstructor
 public class MyBatisItemRepository implements ItemRepository {
+
+    static final int BATCH_SIZE = 1000;
+
     private final ItemMapper itemMapper;
+    private final SqlSessionTemplate sqlSessionTemplate;
+    private final ItemIdAllocator idAllocator;
+
+    public MyBatisItemRepository(ItemMapper itemMapper) {
+        this(itemMapper, null);
+    }
+
+    public MyBatisItemRepository(ItemMapper itemMapper, SqlSessionTemplate sqlSessionTemplate) {
+        this(itemMapper, sqlSessionTemplate, null);
+    }
+
+    public MyBatisItemRepository(ItemMapper itemMapper, SqlSessionTemplate sqlSessionTemplate, ItemIdAllocator idAllocator) {
+        this.itemMapper = itemMapper;
+        this.sqlSessionTemplate = sqlSessionTemplate;
+        this.idAllocator = idAllocator;
+    }
 
     @Override
     public Item save(Item item) {
         log.info("itemMapper class={}", itemMapper.getClass());//class com.sun.proxy.$Proxy56 프록시 구현체
-        itemMapper.save(item);
+        insert(itemMapper, item);
         return item;
     }
 
+    private void insert(ItemMapper mapper, Item item) {
+        if (idAllocator != null) {
+            item.setId(idAllocator.nextId());
+            mapper.saveWithId(item);
+        } else {
+            mapper.save(item);
+        }
+    }
+
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
         itemMapper.update(itemId, updateParam);
     }
 
+    @Override
+    public boolean adjustQuantity(Long itemId, int delta) {
+        int updated = itemMapper.adjustQuantity(itemId, delta);
+        if (updated == 0 && findById(itemId).isEmpty()) {
+            throw new NoSuchElementException("item not found: " + itemId);
+        }
+        return updated > 0;
+    }
+
+    @Override
+    @Transactional
+    public List<Item> saveAll(List<Item> items) {
+        if (sqlSessionTemplate == null) {
+            return ItemRepository.super.saveAll(items);
+        }
+        try (SqlSession batchSession = openBatchSession()) {
+            ItemMapper batchMapper = batchSession.getMapper(ItemMapper.class);
+            int count = 0;
+            for (Item item : items) {
+                insert(batchMapper, item);
+                if (++count % BATCH_SIZE == 0) {
+                    batchSession.flushStatements();
+                }
+            }
+            batchSession.flushStatements();
+        }
+        return items;
+    }
+
+    @Override
+    @Transactional
+    public void updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        if (sqlSessionTemplate == null) {
+            ItemRepository.super.updateAll(updateParams);
+            return;
+        }
+        try (SqlSession batchSession = openBatchSession()) {
+            ItemMapper batchMapper = batchSession.getMapper(ItemMapper.class);
+            int count = 0;
+            for (Map.Entry<Long, ItemUpdateDto> entry : updateParams.entrySet()) {
+                batchMapper.update(entry.getKey(), entry.getValue());
+                if (++count % BATCH_SIZE == 0) {
+                    batchSession.flushStatements();
+                }
+            }
+            batchSession.flushStatements();
+        }
+    }
+
+    /**
+     * 트랜잭션에 등록하지 않는 배치 세션. 커넥션은 현재 스프링 트랜잭션의 커넥션이다.
+     * 일반 세션의 1차 캐시는 배치로 바뀐 행을 모르므로 먼저 비운다.
+     */
+    private SqlSession openBatchSession() {
+        sqlSessionTemplate.clearCache();
+        return sqlSessionTemplate.getSqlSessionFactory().openSession(ExecutorType.BATCH);
+    }
+
     @Override
     public Optional<Item> findById(Long id) {
         return itemMapper.findById(id);
     }
 
+    @Override
+    public List<Item> findAllById(Collection<Long> ids) {
+        return ItemIdBatches.findAll(ids, itemMapper::findAllById);
+    }
+
     @Override
     public List<Item> findAll(ItemSearchCond cond) {
-        return itemMapper.findAll(cond);
+        return ItemKeysetPaging.toAscending(itemMapper.findAll(cond), cond);
+    }
+
+    @Override
+    public List<ItemSummary> findSummaries(ItemSearchCond cond) {
+        return ItemKeysetPaging.toAscending(itemMapper.findSummaries(cond), cond);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY, readOnly = true)
+    public Stream<Item> streamAll(ItemSearchCond cond) {
+        if (ItemKeysetPaging.isBackward(cond)) {
+            return findAll(cond).stream();//이전 페이지는 id 내림차순으로 읽어 뒤집어야 하므로 스트리밍하지 않는다.
+        }
+        Cursor<Item> cursor = itemMapper.streamAll(cond);
+        return StreamSupport.stream(cursor.spliterator(), false)
+                .onClose(() -> {
+                    try {
+                        cursor.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
     }
 }
@@ -1,11 +1,16 @@
 package hello.itemservice.repository.v2;
 
 import com.querydsl.core.QueryFactory;
+import com.querydsl.core.types.Projections;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import hello.itemservice.domain.Item;
 import hello.itemservice.domain.QItem;
+import hello.itemservice.repository.ItemKeysetPaging;
 import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemSummary;
+import org.hibernate.annotations.QueryHints;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 
@@ -23,16 +28,62 @@ public class ItemQueryRepositoryV2 {
     }
 
     public List<Item> findAll(ItemSearchCond cond) {
-        String itemName = cond.getItemName();
-        Integer maxPrice = cond.getMaxPrice();
-        return query
-                .select(item)
+        JPAQuery<Item> findAllQuery = search(query.select(item), cond);
+        findAllQuery.setHint(QueryHints.CACHEABLE, true);
+        return ItemKeysetPaging.toAscending(findAllQuery.fetch(), cond);
+    }
+
+    /**
+     * 목록 화면용 DTO 조회
+     * : select 절에서 바로 {@link ItemSummary} 생성자를 호출한다. 엔티티가 영속성 컨텍스트에 올라가지 않는다.
+     * : 쿼리 캐시 힌트는 {@link #search} 참고
+     */
+    public List<ItemSummary> findSummaries(ItemSearchCond cond) {
+        JPAQuery<ItemSummary> findSummariesQuery = search(query.select(
+                Projections.constructor(ItemSummary.class, item.id, item.itemName, item.price, item.quantity)), cond);
+        findSummariesQuery.setHint(QueryHints.CACHEABLE, true);
+        return ItemKeysetPaging.toAscending(findSummariesQuery.fetch(), cond);
+    }
+
+    /**
+     * 쿼리 캐시 (findAll, findSummaries 에서 CACHEABLE 힌트)
+     * : cache 프로필에서 쿼리 캐시가 켜지면, 같은 JPQL + 파라미터의 결과를 default-query-results-region 에 저장한다.
+     *   엔티티 조회는 id 목록만 저장하고 엔티티는 2차 캐시(Item 영역)에서 읽는다. DTO 조회는 컬럼 값을 저장한다.
+     * : Item 테이블이 바뀌면(insert, update) 하이버네이트가 갱신 시각을 기록하고, 그 이전에 저장된 결과는 사용하지 않는다.
+     * : 쿼리 캐시가 꺼져 있으면 힌트는 무시된다.
+     */
+    private <T> JPAQuery<T> search(JPAQuery<T> select, ItemSearchCond cond) {
+        JPAQuery<T> searchQuery = select
                 .from(item)
                 .where(
-                        itemNameLike(itemName),
-                        maxPrice(maxPrice)
-                )
-                .fetch();
+                        itemNameLike(cond.getItemName()),
+                        maxPrice(cond.getMaxPrice()),
+                        idAfter(cond.getAfterId()),
+                        idBefore(cond.getBeforeId())
+                );
+
+        //키셋 페이징
+        if (ItemKeysetPaging.isPaged(cond)) {
+            searchQuery.orderBy(ItemKeysetPaging.isBackward(cond) ? item.id.desc() : item.id.asc());
+        }
+        if (cond.getSize() != null) {
+            searchQuery.limit(cond.getSize());
+        }
+        return searchQuery;
+    }
+
+    private BooleanExpression idAfter(Long afterId) {
+        if (afterId != null) {
+            return item.id.gt(afterId);
+        }
+        return null;
+    }
+
+    private BooleanExpression idBefore(Long beforeId) {
+        if (beforeId != null) {
+            return item.id.lt(beforeId);
+        }
+        return null;
     }
 
     private BooleanExpression maxPrice(Integer maxPrice) {
@@ -1,8 +1,26 @@
 package hello.itemservice.repository.v2;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.repository.jpa.ItemDetachRepository;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface ItemRepositoryV2 extends JpaRepository<Item, Long> {
-    
+public interface ItemRepositoryV2 extends JpaRepository<Item, Long>, ItemDetachRepository {
+
+    /**
+     * 벌크 update: 엔티티를 조회하지 않고 한 문장으로 수정한다. 수정된 행 수를 반환한다.
+     * : 실행 전 flush 한다. 실행 후 호출하는 쪽에서 {@link #detachItem(Long)} 으로 이미 조회된 같은 상품 엔티티만 detach 한다.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update Item i set i.itemName = :itemName, i.price = :price, i.quantity = :quantity where i.id = :id")
+    int updateItem(@Param("id") Long id, @Param("itemName") String itemName, @Param("price") Integer price, @Param("quantity") Integer quantity);
+
+    /**
+     * 재고 수량 원자적 증감: 조건(수량이 음수가 되지 않음)과 수정을 한 문장으로 수행한다. 수정된 행 수를 반환한다.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update Item i set i.quantity = coalesce(i.quantity, 0) + :delta where i.id = :id and coalesce(i.quantity, 0) + :delta >= 0")
+    int adjustQuantity(@Param("id") Long id, @Param("delta") int delta);
 }
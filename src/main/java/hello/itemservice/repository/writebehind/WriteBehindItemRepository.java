@@ -0,0 +1,349 @@
+package hello.itemservice.repository.writebehind;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemSummary;
+import hello.itemservice.repository.ItemUpdateDto;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 재고 수량 write-behind 저장소 (다른 ItemRepository 앞에 두는 데코레이터)
+ * : 타임세일처럼 소수의 인기 상품에 초당 수천 건의 adjustQuantity, reserve 가 몰리면, 조건부 update 라도 같은 행 잠금에 줄을 선다.
+ * : 수량 변경은 메모리의 상품별 카운터에만 반영하고, flushInterval 마다 상품별로 모인 변화량을 update 한 번으로 보낸다.
+ *   (N 번의 행 수정 -> flush 주기마다 1 번)
+ *
+ * 상품별 카운터 ({@link Counter})
+ * : 상품을 처음 변경할 때 저장소의 수량을 읽어 visible(보이는 수량)과 base(저장소에 반영된 수량)를 초기화한다.
+ * : adjustQuantity 는 visible 에 compare-and-set 으로 더한다. 음수가 되면 거절하므로 reserve 의 재고 확인도 메모리에서 끝난다.
+ * : flush 는 visible - base 만큼 저장소의 adjustQuantity 를 호출하고 base 를 옮긴다. flush 도중의 변경은 다음 flush 에 포함된다.
+ * : 카운터는 상품마다 따로 있으므로 서로 다른 상품의 변경은 경합하지 않는다. 한 주기 동안 변경이 없었던 카운터는 정리한다.
+ *
+ * 조회
+ * : findById, findAll 등은 저장소의 결과에 아직 반영되지 않은 수량(visible)을 덮어써서 반환한다.
+ *
+ * 수정(update, updateAll)
+ * : 수량을 절대값으로 덮어쓰므로, 먼저 해당 상품의 카운터를 flush 하고 폐기(retire)한 뒤 저장소를 수정한다.
+ *   다음 변경은 저장소에서 수정된 수량을 다시 읽는다.
+ * : 폐기 중인 카운터에 들어온 adjustQuantity 는 카운터가 맵에서 빠질 때까지 카운터의 모니터에서 기다린다. (최대 {@link #RETIRE_WAIT})
+ * : 폐기 중 저장소 반영이 실패하면 카운터를 원래 값으로 되돌리고 예외를 던진다. 변화량은 남아 있다가 다음 flush 에 반영된다.
+ *
+ * 종료
+ * : close() 는 주기 flush 를 멈추고 남은 변화량을 모두 저장소에 반영한다. 이후의 수량 변경은 저장소로 바로 전달한다.
+ *   반영에 실패한 상품의 변화량은 로그를 남기고 버린다. (종료가 끝나지 않는 것을 막기 위함)
+ * : 프로세스가 비정상 종료되면 마지막 flush 이후의 변화량은 잃는다. flushInterval 이 유실 가능 구간의 상한이다.
+ *
+ * 제약
+ * : 수량 변경은 모두 이 저장소를 거쳐야 한다. 다른 경로로 수량을 줄여 저장소가 flush 를 거절하면(재고 부족) 카운터를 버리고 다시 읽는다.
+ */
+@Slf4j
+public class WriteBehindItemRepository implements ItemRepository, Closeable {
+
+    private static final long RETIRED = Long.MIN_VALUE;
+    static final Duration RETIRE_WAIT = Duration.ofSeconds(10);
+
+    private final ItemRepository delegate;
+    private final ConcurrentHashMap<Long, Counter> counters = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private volatile boolean closed;
+
+    public WriteBehindItemRepository(ItemRepository delegate, Duration flushInterval) {
+        this.delegate = delegate;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "item-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long flushMillis = flushInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Item save(Item item) {
+        return delegate.save(item);
+    }
+
+    @Override
+    public List<Item> saveAll(List<Item> items) {
+        return delegate.saveAll(items);
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        Counter counter = null;
+        try {
+            counter = retire(itemId);
+            delegate.update(itemId, updateParam);
+        } finally {
+            release(itemId, counter);
+        }
+    }
+
+    @Override
+    public void updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        Map<Long, Counter> retired = new HashMap<>();
+        try {
+            for (Long itemId : updateParams.keySet()) {
+                Counter counter = retire(itemId);
+                if (counter != null) {
+                    retired.put(itemId, counter);
+                }
+            }
+            delegate.updateAll(updateParams);
+        } finally {
+            retired.forEach(this::release);
+        }
+    }
+
+    @Override
+    public boolean adjustQuantity(Long itemId, int delta) {
+        while (true) {
+            if (closed) {
+                return delegate.adjustQuantity(itemId, delta);
+            }
+            Counter counter = counters.computeIfAbsent(itemId, this::load);
+            long current = counter.visible.get();
+            if (current == RETIRED) {
+                awaitRelease(itemId, counter);
+                continue;
+            }
+            long next = current + delta;
+            if (next < 0) {
+                return false;
+            }
+            if (next > Integer.MAX_VALUE) {
+                throw new ArithmeticException("quantity overflow: " + itemId);
+            }
+            if (counter.visible.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        return delegate.findById(id).map(this::overlay);
+    }
+
+    @Override
+    public List<Item> findAllById(Collection<Long> ids) {
+        return delegate.findAllById(ids).stream()
+                .map(this::overlay)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Item> findAll(ItemSearchCond cond) {
+        return delegate.findAll(cond).stream()
+                .map(this::overlay)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<ItemSummary> findSummaries(ItemSearchCond cond) {
+        return delegate.findSummaries(cond).stream()
+                .map(summary -> {
+                    long visible = visibleQuantity(summary.getId());
+                    return visible == RETIRED ? summary
+                            : new ItemSummary(summary.getId(), summary.getItemName(), summary.getPrice(), (int) visible);
+                })
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Stream<Item> streamAll(ItemSearchCond cond) {
+        return delegate.streamAll(cond).map(this::overlay);
+    }
+
+    /**
+     * 모든 카운터의 변화량을 저장소에 반영한다. (주기 flush, close 에서 호출)
+     */
+    public void flush() {
+        counters.forEach((itemId, counter) -> {
+            synchronized (counter) {
+                long visible = counter.visible.get();
+                if (visible == RETIRED) {
+                    return;
+                }
+                if (visible == counter.base) {
+                    //한 주기 동안 변경이 없었으면 정리한다. (그 사이 변경이 들어왔으면 다음 주기에 다시 확인)
+                    if (counter.visible.compareAndSet(visible, RETIRED)) {
+                        discard(itemId, counter);
+                    }
+                    return;
+                }
+                try {
+                    write(itemId, counter, visible);
+                } catch (RuntimeException e) {
+                    //카운터는 그대로 남고, 다음 flush 에서 다시 시도한다. 다른 상품의 flush 는 계속한다.
+                    log.error("write-behind flush failed. itemId={}", itemId, e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("write-behind flush did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        //close 직전의 변경까지 반영한다. 반영에 실패한 카운터는 버린다.
+        while (!counters.isEmpty()) {
+            counters.forEach((itemId, counter) -> {
+                try {
+                    release(itemId, retire(itemId));
+                } catch (RuntimeException e) {
+                    log.error("write-behind drain failed, pending delta lost. itemId={}", itemId, e);
+                    synchronized (counter) {
+                        counter.visible.set(RETIRED);
+                        discard(itemId, counter);
+                    }
+                }
+            });
+        }
+        log.info("write-behind drained");
+    }
+
+    /**
+     * visible - base 만큼 저장소에 반영한다. counter 락 안에서 호출한다.
+     */
+    private void write(Long itemId, Counter counter, long visible) {
+        long delta = visible - counter.base;
+        if (delta == 0) {
+            return;
+        }
+        if (delegate.adjustQuantity(itemId, Math.toIntExact(delta))) {
+            counter.base = visible;
+            return;
+        }
+        //저장소 밖에서 수량이 바뀌어 반영할 수 없다. 카운터를 버리고 다음 변경에서 저장소의 수량을 다시 읽는다.
+        log.error("write-behind flush rejected. itemId={}, delta={}", itemId, delta);
+        counter.visible.set(RETIRED);
+        discard(itemId, counter);
+    }
+
+    /**
+     * 카운터를 flush 하고 폐기한다. 폐기된 카운터에는 adjustQuantity 가 더 이상 반영되지 않는다.
+     * : 맵에서는 release 에서 제거한다. 그 사이 adjustQuantity 는 새 카운터를 만들지 않고 기다린다.
+     * : 저장소 반영이 실패하면 카운터를 폐기 전 값으로 되돌리고(변화량 유지) 기다리던 adjustQuantity 를 깨운 뒤 예외를 던진다.
+     *   이 경우 release 를 호출할 필요가 없다.
+     */
+    private Counter retire(Long itemId) {
+        Counter counter = counters.get(itemId);
+        if (counter == null) {
+            return null;
+        }
+        synchronized (counter) {
+            long visible = counter.visible.getAndSet(RETIRED);
+            if (visible == RETIRED) {
+                return counter;//이미 폐기되었고 flush 도 끝났다.
+            }
+            try {
+                write(itemId, counter, visible);
+            } catch (RuntimeException | Error e) {
+                counter.visible.set(visible);
+                counter.notifyAll();
+                throw e;
+            }
+        }
+        return counter;
+    }
+
+    private void release(Long itemId, Counter counter) {
+        if (counter != null) {
+            discard(itemId, counter);
+        }
+    }
+
+    /**
+     * 폐기된 카운터를 맵에서 빼고 기다리던 adjustQuantity 를 깨운다.
+     */
+    private void discard(Long itemId, Counter counter) {
+        counters.remove(itemId, counter);
+        synchronized (counter) {
+            counter.notifyAll();
+        }
+    }
+
+    /**
+     * 폐기된 카운터가 맵에서 빠지거나(release) 되살아날 때까지(retire 실패) 기다린다. 바쁜 대기(spin)를 하지 않는다.
+     */
+    private void awaitRelease(Long itemId, Counter counter) {
+        long deadline = System.nanoTime() + RETIRE_WAIT.toNanos();
+        synchronized (counter) {
+            while (counter.visible.get() == RETIRED && counters.get(itemId) == counter) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new IllegalStateException("timed out waiting for item update to finish. itemId=" + itemId);
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(counter, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted while waiting for item update to finish. itemId=" + itemId, e);
+                }
+            }
+        }
+    }
+
+    private Counter load(Long itemId) {
+        Item item = delegate.findById(itemId)
+                .orElseThrow(() -> new NoSuchElementException("item not found: " + itemId));
+        return new Counter(item.getQuantity() == null ? 0 : item.getQuantity());
+    }
+
+    private Item overlay(Item item) {
+        long visible = visibleQuantity(item.getId());
+        if (visible == RETIRED) {
+            return item;
+        }
+        Item copy = new Item(item.getItemName(), item.getPrice(), (int) visible);
+        copy.setId(item.getId());
+        return copy;
+    }
+
+    private long visibleQuantity(Long itemId) {
+        Counter counter = itemId == null ? null : counters.get(itemId);
+        return counter == null ? RETIRED : counter.visible.get();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("write-behind flush failed", e);//반영하지 못한 변화량은 다음 주기에 다시 시도한다.
+        }
+    }
+
+    private static final class Counter {
+        final AtomicLong visible;
+        long base;//counter 락 안에서만 읽고 쓴다.
+
+        Counter(long quantity) {
+            this.visible = new AtomicLong(quantity);
+            this.base = quantity;
+        }
+    }
+}
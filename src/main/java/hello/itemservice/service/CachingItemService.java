@@ -0,0 +1,94 @@
+package hello.itemservice.service;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemSummary;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.cache.ItemCache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * findById 캐시 서비스 (다른 ItemService 앞에 두는 데코레이터)
+ * : ItemController 의 상품 상세, 수정 폼은 화면을 열 때마다 findById 를 호출한다. 같은 상품은 {@link ItemCache} 에서 반환한다.
+ * : 수정(update, adjustQuantity, reserve)은 delegate 가 반환된 뒤, 즉 delegate 의 트랜잭션이 커밋된 뒤 캐시에서 지운다.
+ *   그래서 커밋 전의 이전 값이 다시 캐시되지 않는다. (저장소 안쪽, 트랜잭션 안에서 캐시를 지우면 커밋 전에 다른 요청이 이전 값을 다시 캐시할 수 있다)
+ *
+ * 설정 : {@link hello.itemservice.config.ItemDecoratorConfig} 가 어떤 Config 의 ItemService 든 감싼다.
+ */
+public class CachingItemService implements ItemService {
+
+    private final ItemService delegate;
+    private final ItemCache cache;
+
+    public CachingItemService(ItemService delegate, ItemCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public Item save(Item item) {
+        Item saved = delegate.save(item);
+        cache.invalidate(saved.getId());
+        return saved;
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        try {
+            delegate.update(itemId, updateParam);
+        } finally {
+            cache.invalidate(itemId);
+        }
+    }
+
+    @Override
+    public boolean adjustQuantity(Long itemId, int delta) {
+        try {
+            return delegate.adjustQuantity(itemId, delta);
+        } finally {
+            cache.invalidate(itemId);
+        }
+    }
+
+    @Override
+    public boolean reserve(Long itemId, int quantity) {
+        try {
+            return delegate.reserve(itemId, quantity);
+        } finally {
+            cache.invalidate(itemId);
+        }
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return cache.get(id, delegate::findById);
+    }
+
+    /**
+     * 캐시에 없는 상품만 delegate 의 findAllById 한 번으로 조회한다.
+     */
+    @Override
+    public List<Item> findAllById(Collection<Long> ids) {
+        return cache.getAll(ids, delegate::findAllById);
+    }
+
+    @Override
+    public List<Item> findItems(ItemSearchCond itemSearch) {
+        return delegate.findItems(itemSearch);
+    }
+
+    @Override
+    public List<ItemSummary> findItemSummaries(ItemSearchCond itemSearch) {
+        return delegate.findItemSummaries(itemSearch);
+    }
+
+    public ItemCache getCache() {
+        return cache;
+    }
+}
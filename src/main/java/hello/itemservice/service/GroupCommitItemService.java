@@ -0,0 +1,271 @@
+package hello.itemservice.service;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemSummary;
+import hello.itemservice.repository.ItemUpdateDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 그룹 커밋(group commit) 서비스 (다른 ItemService 앞에 두는 데코레이터)
+ * : ItemController.addItem -> save 는 상품 하나마다 트랜잭션을 커밋한다. 등록이 몰리면 커밋(로그 fsync) 대기 시간이 처리량을 결정한다.
+ * : save 는 상품을 고정 크기 큐(ring buffer)에 넣고 기다린다. 쓰기 스레드 하나가 큐에 쌓인 상품을 최대 maxBatchSize 건씩 꺼내
+ *   하나의 트랜잭션에서 saveAll(배치 insert)로 저장하고 커밋한다. 커밋이 끝나면 각 호출자의 future 에 id 가 채워진 Item 을 전달한다.
+ * : 커밋 한 번에 여러 요청을 묶으므로 처리량이 커밋 지연이 아닌 배치 크기에 비례한다.
+ *   요청이 드물면 배치는 1 건이 되고, 한 건씩 커밋하는 것과 같다. (배치를 모으려고 일부러 기다리지 않는다)
+ *
+ * 영속성(durability)
+ * : save 는 자신의 상품이 포함된 트랜잭션이 커밋된 뒤에만 반환한다. 한 건씩 커밋할 때와 보장 수준이 같다.
+ * : 배치 트랜잭션이 실패하면(예: 한 상품의 제약 조건 위반) 배치 전체가 롤백되므로, 상품마다 따로 다시 저장해서 실패한 상품만 예외를 받는다.
+ *
+ * 트랜잭션 경계
+ * : 상품은 호출자의 트랜잭션이 아니라 쓰기 스레드가 시작한 트랜잭션에서 저장, 커밋된다. (REQUIRES_NEW 와 비슷하다)
+ * : 호출자의 트랜잭션이 나중에 롤백되어도 save 로 저장한 상품은 남는다. 다른 쓰기와 하나의 트랜잭션으로 묶어야 하면 delegate 를 직접 사용한다.
+ *
+ * timeout
+ * : save 는 최대 timeout 동안 커밋을 기다린다. 넘으면 IllegalStateException 이 발생한다.
+ *   이때 상품은 큐나 진행 중인 배치에 남아 있으므로 나중에 저장될 수 있다. (저장되지 않았다는 뜻이 아니다)
+ *
+ * 쓰기 스레드 장애
+ * : 쓰기 스레드에서 예상하지 못한 예외(Error 등)가 발생하면 쓰기 스레드를 멈추고, 처리 중인 배치와 큐에 남은 상품의 future 를 예외로 완료한다.
+ * : 이후의 save 는 IllegalStateException 으로 거절한다. (기다리는 요청이 영원히 반환되지 않거나, 큐에만 쌓이지 않도록)
+ *
+ * 흐름 제어
+ * : 큐가 가득 차면 save 는 자리가 날 때까지 기다린다. (요청이 쓰기 속도보다 빠를 때 메모리가 한없이 늘지 않도록)
+ * : close() 는 새 요청을 받지 않고 큐에 남은 상품을 모두 저장한 뒤 쓰기 스레드를 종료한다. 이후의 save 는 delegate 로 바로 전달한다.
+ *
+ * 등록 외의 기능은 delegate 에 그대로 위임한다.
+ */
+@Slf4j
+public class GroupCommitItemService implements ItemService, Closeable {
+
+    private final ItemService delegate;
+    private final ItemRepository itemRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<PendingItem> queue;
+    private final int maxBatchSize;
+    private final Duration timeout;
+    private final Thread writer;
+    private volatile boolean closed;
+    private volatile Throwable failure;
+
+    public GroupCommitItemService(ItemService delegate, ItemRepository itemRepository, PlatformTransactionManager transactionManager,
+                                  int capacity, int maxBatchSize, Duration timeout) {
+        this.delegate = delegate;
+        this.itemRepository = itemRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatchSize = maxBatchSize;
+        this.timeout = timeout;
+        this.writer = new Thread(this::drain, "item-group-commit");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 큐에 넣고 커밋될 때까지 (최대 timeout) 기다린다.
+     */
+    @Override
+    public Item save(Item item) {
+        try {
+            return saveAsync(item).get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("group commit did not complete within " + timeout, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for group commit", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * 큐에 넣고 바로 반환한다. future 는 상품이 포함된 트랜잭션이 커밋된 뒤 id 가 채워진 Item 으로 완료된다.
+     */
+    public CompletableFuture<Item> saveAsync(Item item) {
+        if (failure != null) {
+            return CompletableFuture.failedFuture(writerStopped());
+        }
+        if (closed) {
+            return CompletableFuture.completedFuture(delegate.save(item));
+        }
+        PendingItem pending = new PendingItem(item);
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.future.completeExceptionally(e);
+        }
+        //쓰기 스레드가 멈춘 뒤에 들어간 경우 거절한다.
+        if (failure != null && queue.remove(pending)) {
+            pending.future.completeExceptionally(writerStopped());
+        }
+        //close 와 경합해서 쓰기 스레드가 이미 종료된 뒤에 들어간 경우, 직접 저장한다.
+        if (closed && queue.remove(pending)) {
+            commit(List.of(pending));
+        }
+        return pending.future;
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        delegate.update(itemId, updateParam);
+    }
+
+    @Override
+    public boolean adjustQuantity(Long itemId, int delta) {
+        return delegate.adjustQuantity(itemId, delta);
+    }
+
+    @Override
+    public boolean reserve(Long itemId, int quantity) {
+        return delegate.reserve(itemId, quantity);
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public List<Item> findAllById(Collection<Long> ids) {
+        return delegate.findAllById(ids);
+    }
+
+    @Override
+    public List<Item> findItems(ItemSearchCond itemSearch) {
+        return delegate.findItems(itemSearch);
+    }
+
+    @Override
+    public List<ItemSummary> findItemSummaries(ItemSearchCond itemSearch) {
+        return delegate.findItemSummaries(itemSearch);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        //close 직전에 큐에 들어온 상품 (쓰기 스레드가 멈췄으면 이미 예외로 완료했다)
+        List<PendingItem> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty() && failure == null) {
+            commit(rest);
+        }
+        log.info("group commit drained");
+    }
+
+    /**
+     * 쓰기 스레드. 큐에 상품이 들어오면 그 시점에 쌓인 만큼(최대 maxBatchSize) 꺼내 한 트랜잭션으로 저장한다.
+     * : 저장 실패(RuntimeException)는 commit 이 상품별 future 로 전달한다. 그 밖의 예외는 쓰기 스레드를 멈춘다.
+     */
+    private void drain() {
+        List<PendingItem> batch = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                PendingItem first = queue.poll(100, TimeUnit.MILLISECONDS);//closed 를 주기적으로 확인한다.
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stop(batch, e);
+                return;
+            } catch (Throwable e) {
+                log.error("group commit writer stopped", e);
+                stop(batch, e);
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 새 요청을 거절하고, 처리 중인 배치와 큐에 남은 상품의 future 를 예외로 완료한다.
+     */
+    private void stop(List<PendingItem> batch, Throwable cause) {
+        failure = cause;
+        IllegalStateException stopped = writerStopped();
+        batch.forEach(pending -> pending.future.completeExceptionally(stopped));
+        List<PendingItem> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        rest.forEach(pending -> pending.future.completeExceptionally(stopped));
+    }
+
+    private IllegalStateException writerStopped() {
+        return new IllegalStateException("group commit writer stopped", failure);
+    }
+
+    private void commit(List<PendingItem> batch) {
+        List<Item> items = new ArrayList<>(batch.size());
+        for (PendingItem pending : batch) {
+            items.add(pending.item);
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> itemRepository.saveAll(items));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            log.warn("group commit of {} items failed, retrying one by one", batch.size(), e);
+            commitOneByOne(batch);
+            return;
+        }
+        for (PendingItem pending : batch) {
+            pending.future.complete(pending.item);
+        }
+    }
+
+    private void commitOneByOne(List<PendingItem> batch) {
+        for (PendingItem pending : batch) {
+            pending.item.setId(null);//롤백된 배치에서 채워진 id
+            try {
+                transactionTemplate.executeWithoutResult(status -> itemRepository.save(pending.item));
+                pending.future.complete(pending.item);
+            } catch (RuntimeException e) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static final class PendingItem {
+        final Item item;
+        final CompletableFuture<Item> future = new CompletableFuture<>();
+
+        PendingItem(Item item) {
+            this.item = item;
+        }
+    }
+}
@@ -2,8 +2,10 @@ package hello.itemservice.service;
 
 import hello.itemservice.domain.Item;
 import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemSummary;
 import hello.itemservice.repository.ItemUpdateDto;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,7 +24,27 @@ public interface ItemService {
 
     void update(Long itemId, ItemUpdateDto updateParam);
 
+    /**
+     * 재고 수량 원자적 증감 ({@link hello.itemservice.repository.ItemRepository#adjustQuantity(Long, int)})
+     */
+    boolean adjustQuantity(Long itemId, int delta);
+
+    /**
+     * 재고가 충분할 때만 차감한다. ({@link hello.itemservice.repository.ItemRepository#reserve(Long, int)})
+     */
+    boolean reserve(Long itemId, int quantity);
+
     Optional<Item> findById(Long id);
 
+    /**
+     * 여러 상품을 id 로 한 번에 조회한다. ({@link hello.itemservice.repository.ItemRepository#findAllById(Collection)})
+     */
+    List<Item> findAllById(Collection<Long> ids);
+
     List<Item> findItems(ItemSearchCond itemSearch);
+
+    /**
+     * 상품 목록 화면용 조회 전용 DTO
+     */
+    List<ItemSummary> findItemSummaries(ItemSearchCond itemSearch);
 }
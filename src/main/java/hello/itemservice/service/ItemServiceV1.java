@@ -3,10 +3,12 @@ package hello.itemservice.service;
 import hello.itemservice.domain.Item;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemSummary;
 import hello.itemservice.repository.ItemUpdateDto;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,13 +28,33 @@ public class ItemServiceV1 implements ItemService {
         itemRepository.update(itemId, updateParam);
     }
 
+    @Override
+    public boolean adjustQuantity(Long itemId, int delta) {
+        return itemRepository.adjustQuantity(itemId, delta);
+    }
+
+    @Override
+    public boolean reserve(Long itemId, int quantity) {
+        return itemRepository.reserve(itemId, quantity);
+    }
+
     @Override
     public Optional<Item> findById(Long id) {
         return itemRepository.findById(id);
     }
 
+    @Override
+    public List<Item> findAllById(Collection<Long> ids) {
+        return itemRepository.findAllById(ids);
+    }
+
     @Override
     public List<Item> findItems(ItemSearchCond cond) {
         return itemRepository.findAll(cond);
     }
+
+    @Override
+    public List<ItemSummary> findItemSummaries(ItemSearchCond cond) {
+        return itemRepository.findSummaries(cond);
+    }
 }
@@ -1,8 +1,10 @@
 package hello.itemservice.service;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemIdBatches;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemSummary;
 import hello.itemservice.repository.ItemUpdateDto;
 import hello.itemservice.repository.v2.ItemQueryRepositoryV2;
 import hello.itemservice.repository.v2.ItemRepositoryV2;
@@ -10,9 +12,16 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 
+/**
+ * 조회 메서드는 읽기 전용 트랜잭션으로 실행한다. (flush 모드 MANUAL, JDBC 커넥션 read-only)
+ * : 리포지토리도 readOnly 로 선언되어 있지만, 서비스에서 시작한 트랜잭션에 참여하므로 서비스의 설정이 적용된다.
+ * : 스프링 데이터 JPA 의 기본 구현체(SimpleJpaRepository)는 조회 메서드가 이미 readOnly 트랜잭션이다.
+ */
 @Service
 @Transactional
 @RequiredArgsConstructor
@@ -28,19 +37,58 @@ public class ItemServiceV2 implements ItemService {
 
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        Item item = itemRepository.findById(itemId).orElseThrow();
-        item.setItemName(updateParam.getItemName());
-        item.setPrice(updateParam.getPrice());
-        item.setQuantity(updateParam.getQuantity());
+        //조회 없이 update 한 문장으로 수정한다. (ItemRepositoryV2#updateItem)
+        int updated = itemRepository.updateItem(itemId, updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity());
+        if (updated == 0) {
+            throw new NoSuchElementException("item not found: " + itemId);
+        }
+        itemRepository.detachItem(itemId);
     }
 
+    /**
+     * 조건부 update 한 문장으로 증감한다. (ItemRepositoryV2#adjustQuantity)
+     */
     @Override
+    public boolean adjustQuantity(Long itemId, int delta) {
+        int updated = itemRepository.adjustQuantity(itemId, delta);
+        itemRepository.detachItem(itemId);
+        if (updated == 0 && itemRepository.findById(itemId).isEmpty()) {
+            throw new NoSuchElementException("item not found: " + itemId);
+        }
+        return updated > 0;
+    }
+
+    @Override
+    public boolean reserve(Long itemId, int quantity) {
+        return adjustQuantity(itemId, ItemRepository.reservationDelta(quantity));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Optional<Item> findById(Long id) {
         return itemRepository.findById(id);
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public List<Item> findAllById(Collection<Long> ids) {
+        return ItemIdBatches.findAll(ids, itemRepository::findAllById);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public List<Item> findItems(ItemSearchCond cond) {
         return itemQueryRepository.findAll(cond);
     }
+
+    /**
+     * 읽기 전용 트랜잭션
+     * : 스프링이 하이버네이트 세션의 flush 모드를 MANUAL 로 바꾸므로 커밋 시점에 flush(변경 감지)를 하지 않는다.
+     * : DTO 로 조회하므로 영속성 컨텍스트에 엔티티와 스냅샷도 남지 않는다.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemSummary> findItemSummaries(ItemSearchCond cond) {
+        return itemQueryRepository.findSummaries(cond);
+    }
 }
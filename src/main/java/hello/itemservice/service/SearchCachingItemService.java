@@ -0,0 +1,82 @@
+package hello.itemservice.service;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemSummary;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.cache.ItemSearchCache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 검색 결과 캐시 서비스 (다른 ItemService 앞에 두는 데코레이터)
+ * : findItems, findItemSummaries 는 {@link ItemSearchCache} 에서 반환한다.
+ * : 쓰기는 delegate 가 반환된 뒤(트랜잭션 커밋 뒤) 영향을 받는 가격 구간의 버전을 올린다.
+ *   수정 전 가격은 저장소에서 다시 읽지 않는다. 캐시가 결과를 저장할 때 기록한 상품별 가격 구간을 사용한다. ({@link ItemSearchCache#write})
+ * : 무효화는 이 JVM 안에서만 동작한다. 이 서비스를 거치지 않는 쓰기(예: 저장소를 직접 사용하는 TestDataInit, 다른 서버의 쓰기)는 캐시에 반영되지 않는다.
+ *
+ * 설정 : {@link hello.itemservice.config.ItemDecoratorConfig}
+ */
+public class SearchCachingItemService implements ItemService {
+
+    private final ItemService delegate;
+    private final ItemSearchCache cache;
+
+    public SearchCachingItemService(ItemService delegate, ItemSearchCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public Item save(Item item) {
+        try {
+            return delegate.save(item);
+        } finally {
+            cache.invalidate(item.getPrice());
+        }
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        cache.write(itemId, updateParam.getPrice(), () -> {
+            delegate.update(itemId, updateParam);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean adjustQuantity(Long itemId, int delta) {
+        return cache.write(itemId, () -> delegate.adjustQuantity(itemId, delta));
+    }
+
+    @Override
+    public boolean reserve(Long itemId, int quantity) {
+        return cache.write(itemId, () -> delegate.reserve(itemId, quantity));
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public List<Item> findAllById(Collection<Long> ids) {
+        return delegate.findAllById(ids);
+    }
+
+    @Override
+    public List<Item> findItems(ItemSearchCond itemSearch) {
+        return cache.findItems(itemSearch, delegate::findItems);
+    }
+
+    @Override
+    public List<ItemSummary> findItemSummaries(ItemSearchCond itemSearch) {
+        return cache.findSummaries(itemSearch, delegate::findItemSummaries);
+    }
+
+    public ItemSearchCache getCache() {
+        return cache;
+    }
+}
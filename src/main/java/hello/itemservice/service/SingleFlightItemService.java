@@ -0,0 +1,283 @@
+package hello.itemservice.service;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemSummary;
+import hello.itemservice.repository.ItemUpdateDto;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
+
+/**
+ * 같은 조회의 동시 실행 합치기 (single flight, 다른 ItemService 앞에 두는 데코레이터)
+ * : 인기 상품 화면이나 검색에 요청이 몰리면 같은 findById(id), findItems(cond) 가 동시에 수백 번 DB 로 간다.
+ * : 같은 조회가 이미 실행 중이면 새로 실행하지 않고 실행 중인 조회(flight)의 결과를 함께 받는다.
+ *   먼저 온 요청(리더)이 자신의 스레드에서 delegate 를 호출하고, 나머지는 리더의 future 를 기다린다.
+ * : 결과를 보관하지 않는다. 조회가 끝나면 flight 를 지우므로 다음 요청은 다시 실행한다. (캐시와 함께 쓰면 캐시 미스가 합쳐진다)
+ *
+ * 결과 공유
+ * : Item 은 수정할 수 있으므로 기다린 요청에는 복사본을 준다. ItemSummary 는 불변이므로 목록만 새로 만든다.
+ * : 리더의 예외는 기다린 요청에도 그대로 전달된다.
+ *
+ * timeout
+ * : 리더가 timeout 안에 끝나지 않으면 기다리던 요청은 직접 delegate 를 호출한다. (멈춘 조회 하나에 모든 요청이 묶이지 않도록)
+ *
+ * 쓰기 이후의 조회
+ * : 쓰기가 반환된 뒤 시작한 조회가, 쓰기 전에 시작한 flight 의 (이전) 결과를 받으면 안 된다.
+ * : 이 서비스를 거친 쓰기가 끝날 때마다 순번(sequence)을 하나 올리고, 쓴 상품 id 의 stripe 와 수정 후 가격 구간에 그 순번을 기록한다.
+ *   flight 는 시작 시점의 순번을 갖는다. 관련된 곳에 그보다 큰 순번이 기록되어 있으면 flight 시작 뒤에 끝난 쓰기가 있다는 뜻이다.
+ * : findById(id) 는 id 의 stripe 에 flight 시작 뒤의 쓰기가 없을 때만 합류한다. 다른 상품의 쓰기는 합류를 막지 않는다.
+ * : 검색은 maxPrice 이하의 가격 구간(새 상품 저장, 가격 변경으로 결과에 들어올 수 있는 상품)에 flight 시작 뒤의 쓰기가 없을 때 합류한다.
+ *   결과를 받은 뒤, 결과에 든 상품(빠지거나 바뀌었을 수 있는 상품)의 stripe 에 flight 시작 뒤의 쓰기가 있으면 결과를 버리고 직접 조회한다.
+ * : 쓰기가 많아도 같은 상품, 같은 가격대의 쓰기가 아니면 합류할 수 있다.
+ *
+ * 설정 : {@link hello.itemservice.config.ItemDecoratorConfig}
+ */
+@Slf4j
+public class SingleFlightItemService implements ItemService {
+
+    private final ItemService delegate;
+    private final long timeoutNanos;
+    private static final int ID_STRIPES = 4096;
+    private static final int NULL_PRICE_BUCKET = 32;
+    private static final int BUCKETS = 33;
+
+    private final ConcurrentHashMap<Object, Flight<?>> flights = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLongArray idWrites = new AtomicLongArray(ID_STRIPES);//stripe 별로 마지막에 끝난 쓰기의 순번
+    private final AtomicLongArray priceWrites = new AtomicLongArray(BUCKETS);//가격 구간별로 마지막에 끝난 쓰기의 순번
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    public SingleFlightItemService(ItemService delegate, Duration timeout) {
+        this.delegate = delegate;
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    @Override
+    public Item save(Item item) {
+        try {
+            return delegate.save(item);
+        } finally {
+            written(item.getId(), 1L << bucketOf(item.getPrice()));
+        }
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        try {
+            delegate.update(itemId, updateParam);
+        } finally {
+            written(itemId, 1L << bucketOf(updateParam.getPrice()));
+        }
+    }
+
+    /**
+     * 가격은 그대로이므로 가격 구간에는 기록하지 않는다.
+     */
+    @Override
+    public boolean adjustQuantity(Long itemId, int delta) {
+        try {
+            return delegate.adjustQuantity(itemId, delta);
+        } finally {
+            written(itemId, 0L);
+        }
+    }
+
+    @Override
+    public boolean reserve(Long itemId, int quantity) {
+        try {
+            return delegate.reserve(itemId, quantity);
+        } finally {
+            written(itemId, 0L);
+        }
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        return execute(Arrays.asList("findById", id), start -> !writtenSince(id, start), () -> delegate.findById(id),
+                found -> found.map(Item::copy), (start, found) -> true);
+    }
+
+    /**
+     * id 목록이 호출마다 달라 합칠 기회가 적으므로 그대로 위임한다.
+     */
+    @Override
+    public List<Item> findAllById(Collection<Long> ids) {
+        return delegate.findAllById(ids);
+    }
+
+    @Override
+    public List<Item> findItems(ItemSearchCond itemSearch) {
+        return execute(searchKey("findItems", itemSearch), start -> !pricesWrittenSince(itemSearch.getMaxPrice(), start),
+                () -> delegate.findItems(itemSearch), items -> {
+                    List<Item> copies = new ArrayList<>(items.size());
+                    items.forEach(item -> copies.add(item.copy()));
+                    return copies;
+                }, (start, items) -> items.stream().noneMatch(item -> writtenSince(item.getId(), start)));
+    }
+
+    @Override
+    public List<ItemSummary> findItemSummaries(ItemSearchCond itemSearch) {
+        return execute(searchKey("findItemSummaries", itemSearch), start -> !pricesWrittenSince(itemSearch.getMaxPrice(), start),
+                () -> delegate.findItemSummaries(itemSearch), ArrayList::new,
+                (start, summaries) -> summaries.stream().noneMatch(summary -> writtenSince(summary.getId(), start)));
+    }
+
+    public long executionCount() {
+        return executions.sum();
+    }
+
+    /**
+     * 실행 중인 flight 에 합류한 횟수
+     */
+    public long sharedCount() {
+        return shared.sum();
+    }
+
+    public long timeoutCount() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @param joinable flight 시작 순번을 받아 합류해도 되는지 판단한다.
+     * @param copy     기다린 요청에게 줄 결과를 리더의 결과로 만든다.
+     * @param fresh    flight 시작 순번과 리더의 결과를 받아 결과를 그대로 써도 되는지 판단한다.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T execute(Object key, LongPredicate joinable, Supplier<T> call, Function<T, T> copy, BiPredicate<Long, T> fresh) {
+        while (true) {
+            Flight<T> current = (Flight<T>) flights.get(key);
+            if (current != null && joinable.test(current.start)) {
+                return await(current, call, copy, fresh);
+            }
+
+            Flight<T> mine = new Flight<>(sequence.get());
+            boolean leader = current == null ? flights.putIfAbsent(key, mine) == null : flights.replace(key, current, mine);
+            if (!leader) {
+                continue;//다른 요청이 먼저 flight 를 등록했다.
+            }
+            executions.increment();
+            try {
+                T result = call.get();
+                mine.future.complete(result);
+                return result;
+            } catch (RuntimeException | Error e) {
+                mine.future.completeExceptionally(e);
+                throw e;
+            } finally {
+                flights.remove(key, mine);
+            }
+        }
+    }
+
+    private <T> T await(Flight<T> flight, Supplier<T> call, Function<T, T> copy, BiPredicate<Long, T> fresh) {
+        shared.increment();
+        try {
+            T result = flight.future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            if (!fresh.test(flight.start, result)) {
+                return call.get();//결과에 든 상품이 flight 시작 뒤에 수정되었다.
+            }
+            return copy.apply(result);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            log.warn("single flight timed out, calling directly");
+            return call.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for in-flight call", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * 쓰기가 끝났다. (delegate 가 반환된 뒤, 커밋 뒤)
+     * @param buckets 결과에 새로 들어갈 수 있는 가격 구간 (비트)
+     */
+    private void written(Long itemId, long buckets) {
+        long seq = sequence.incrementAndGet();
+        if (itemId != null) {
+            idWrites.accumulateAndGet(idStripeOf(itemId), seq, Math::max);
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            if ((buckets & 1L << i) != 0) {
+                priceWrites.accumulateAndGet(i, seq, Math::max);
+            }
+        }
+    }
+
+    /**
+     * id 의 stripe 에 start 이후 끝난 쓰기가 있다. (같은 stripe 의 다른 상품일 수도 있다)
+     */
+    private boolean writtenSince(Long itemId, long start) {
+        return itemId != null && idWrites.get(idStripeOf(itemId)) > start;
+    }
+
+    private boolean pricesWrittenSince(Integer maxPrice, long start) {
+        int last = maxPrice == null ? BUCKETS - 1 : bucketOf(maxPrice);
+        for (int i = 0; i <= last; i++) {
+            if (priceWrites.get(i) > start) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int idStripeOf(Long itemId) {
+        return (int) (itemId * 0x9E3779B97F4A7C15L >>> 52);//ID_STRIPES = 2^12
+    }
+
+    /**
+     * 가격을 2의 거듭제곱 구간(0 이하, 1, 2~3, 4~7, ...)과 null 로 나눈다. ({@link hello.itemservice.repository.cache.ItemSearchCache} 와 같은 구간)
+     */
+    private static int bucketOf(Integer price) {
+        if (price == null) {
+            return NULL_PRICE_BUCKET;
+        }
+        return price <= 0 ? 0 : 32 - Integer.numberOfLeadingZeros(price);
+    }
+
+    /**
+     * 빈 문자열 itemName 은 null 과 같은 조건이다.
+     */
+    private static List<Object> searchKey(String method, ItemSearchCond cond) {
+        String itemName = cond.getItemName() == null || cond.getItemName().isEmpty() ? null : cond.getItemName();
+        return Arrays.asList(method, itemName, cond.getMaxPrice(), cond.getAfterId(), cond.getBeforeId(), cond.getSize());
+    }
+
+    private static final class Flight<T> {
+        final long start;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Flight(long start) {
+            this.start = start;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package hello.itemservice.web;
 
 import hello.itemservice.domain.Item;
 import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemSummary;
 import hello.itemservice.repository.ItemUpdateDto;
 import hello.itemservice.service.ItemService;
 import lombok.RequiredArgsConstructor;
@@ -10,6 +11,7 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Controller
@@ -19,10 +21,34 @@ public class ItemController {
 
     private final ItemService itemService;
 
+    static final int DEFAULT_PAGE_SIZE = 20;
+    static final int MAX_PAGE_SIZE = 100;
+
+    /**
+     * 키셋 페이징
+     * : 다음/이전 페이지가 있는지 알기 위해 size + 1 건을 조회하고, 초과한 한 건은 버린다.
+     * : 다음 페이지 링크는 마지막 id 를 afterId 로, 이전 페이지 링크는 첫 id 를 beforeId 로 전달한다.
+     */
     @GetMapping
     public String items(@ModelAttribute("itemSearch") ItemSearchCond itemSearch, Model model) {
-        List<Item> items = itemService.findItems(itemSearch);
+        int pageSize = itemSearch.getSize() == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(itemSearch.getSize(), MAX_PAGE_SIZE));
+        itemSearch.setSize(pageSize + 1);
+        List<ItemSummary> items = new ArrayList<>(itemService.findItemSummaries(itemSearch));//목록 화면은 조회 전용 DTO 를 사용한다.
+        itemSearch.setSize(pageSize);
+
+        boolean backward = itemSearch.getBeforeId() != null;
+        boolean hasMore = items.size() > pageSize;
+        if (hasMore) {
+            items.remove(backward ? 0 : items.size() - 1);
+        }
+        boolean hasNext = backward || hasMore;
+        boolean hasPrev = backward ? hasMore : itemSearch.getAfterId() != null;
+
         model.addAttribute("items", items);
+        if (!items.isEmpty()) {
+            model.addAttribute("nextAfterId", hasNext ? items.get(items.size() - 1).getId() : null);
+            model.addAttribute("prevBeforeId", hasPrev ? items.get(0).getId() : null);
+        }
         return "items";
     }
 
@@ -0,0 +1,37 @@
+package hello.itemservice.config;
+
+import hello.itemservice.service.ItemService;
+import hello.itemservice.service.ItemServiceV2;
+import hello.itemservice.service.SearchCachingItemService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 데코레이터를 켜도 Config 가 등록한 itemService 빈은 타입 그대로 남고, ItemService 로 주입받으면 감싼 빈을 받는다.
+ */
+@SpringBootTest(properties = {
+        "itemservice.cache.find-by-id.enabled=true",
+        "itemservice.cache.search.enabled=true",
+        "itemservice.single-flight.enabled=true"})
+class ItemDecoratorConfigTest {
+
+    @Autowired
+    ItemService itemService;
+
+    @Autowired
+    ItemServiceV2 itemServiceV2;
+
+    @Autowired
+    @Qualifier("itemService")
+    ItemService originalItemService;
+
+    @Test
+    void decoratesWithoutReplacingOriginalBean() {
+        assertThat(itemService).isInstanceOf(SearchCachingItemService.class);
+        assertThat(originalItemService).isSameAs(itemServiceV2);
+    }
+}
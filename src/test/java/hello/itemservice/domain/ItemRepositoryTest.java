@@ -3,6 +3,7 @@ package hello.itemservice.domain;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCond;
 import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.columnar.ColumnarItemRepository;
 import hello.itemservice.repository.memory.MemoryItemRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -17,6 +18,9 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
 
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -67,6 +71,9 @@ class ItemRepositoryTest {
         if (itemRepository instanceof MemoryItemRepository) {
             ((MemoryItemRepository) itemRepository).clearStore();
         }
+        if (itemRepository instanceof ColumnarItemRepository) {
+            ((ColumnarItemRepository) itemRepository).clearStore();
+        }
 //        transactionManager.rollback(status);
     }
 
@@ -102,6 +109,43 @@ class ItemRepositoryTest {
         assertThat(findItem.getQuantity()).isEqualTo(updateParam.getQuantity());
     }
 
+    @Test
+    void saveAllAndUpdateAll() {
+        //given
+        List<Item> items = List.of(
+                new Item("itemA", 10000, 10),
+                new Item("itemB", 20000, 20),
+                new Item("itemC", 30000, 30));
+
+        //when
+        itemRepository.saveAll(items);
+        itemRepository.updateAll(Map.of(
+                items.get(0).getId(), new ItemUpdateDto("itemA2", 11000, 11),
+                items.get(2).getId(), new ItemUpdateDto("itemC2", 33000, 33)));
+
+        //then
+        assertThat(items).extracting(Item::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(itemRepository.findById(items.get(0).getId()).get().getItemName()).isEqualTo("itemA2");
+        assertThat(itemRepository.findById(items.get(1).getId()).get().getItemName()).isEqualTo("itemB");
+        assertThat(itemRepository.findById(items.get(2).getId()).get().getPrice()).isEqualTo(33000);
+    }
+
+    @Test
+    void findAllById() {
+        //given
+        Item item1 = itemRepository.save(new Item("itemA-1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("itemA-2", 20000, 20));
+        Item item3 = itemRepository.save(new Item("itemB-1", 30000, 30));
+
+        //when: 중복 id, 없는 id 포함
+        List<Item> result = itemRepository.findAllById(List.of(item3.getId(), item1.getId(), item3.getId(), Long.MAX_VALUE));
+
+        //then
+        assertThat(result).extracting(Item::getId).containsExactlyInAnyOrder(item1.getId(), item3.getId());
+        assertThat(itemRepository.findAllById(List.of())).isEmpty();
+        assertThat(itemRepository.findAllById(List.of(item2.getId())).get(0).getItemName()).isEqualTo("itemA-2");
+    }
+
     /**
      * 검색키워드에 따른 아이템 목록 추출
      */
@@ -132,6 +176,68 @@ class ItemRepositoryTest {
         test("itemA", 10000, item1);
     }
 
+    /**
+     * 키셋 페이징: afterId 는 다음 페이지, beforeId 는 이전 페이지. 결과는 항상 id 오름차순이다. (findAll, streamAll 모두)
+     */
+    @Test
+    void findItemsByKeyset() {
+        //given
+        Item item1 = itemRepository.save(new Item("itemA-1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("itemA-2", 20000, 20));
+        Item item3 = itemRepository.save(new Item("itemB-1", 30000, 30));
+        Item item4 = itemRepository.save(new Item("itemA-3", 40000, 40));
+
+        //첫 페이지, 다음 페이지
+        testPage(null, null, 2, item1, item2);
+        testPage(item2.getId(), null, 2, item3, item4);
+
+        //이전 페이지
+        testPage(null, item4.getId(), 2, item2, item3);
+        testPage(null, item2.getId(), 2, item1);
+
+        //검색 조건과 함께
+        ItemSearchCond cond = new ItemSearchCond("itemA", null);
+        cond.setAfterId(item1.getId());
+        cond.setSize(1);
+        assertThat(itemRepository.findAll(cond)).containsExactly(item2);
+    }
+
+    void testPage(Long afterId, Long beforeId, Integer size, Item... items) {
+        ItemSearchCond cond = new ItemSearchCond();
+        cond.setAfterId(afterId);
+        cond.setBeforeId(beforeId);
+        cond.setSize(size);
+        assertThat(itemRepository.findAll(cond)).containsExactly(items);
+        try (Stream<Item> stream = itemRepository.streamAll(cond)) {//streamAll 도 같은 페이지를 같은 순서로
+            assertThat(stream.collect(Collectors.toList())).containsExactly(items);
+        }
+    }
+
+    /**
+     * 스트림은 자원을 잡고 있으므로 try-with-resources 로 닫는다. (순서는 구현체마다 다를 수 있다)
+     */
+    @Test
+    void streamItems() {
+        //given
+        Item item1 = itemRepository.save(new Item("itemA-1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("itemA-2", 20000, 20));
+        Item item3 = itemRepository.save(new Item("itemB-1", 30000, 30));
+
+        //when
+        List<Long> all;
+        List<Long> itemA;
+        try (Stream<Item> stream = itemRepository.streamAll(new ItemSearchCond(null, null))) {
+            all = stream.map(Item::getId).collect(Collectors.toList());
+        }
+        try (Stream<Item> stream = itemRepository.streamAll(new ItemSearchCond("itemA", 10000))) {
+            itemA = stream.map(Item::getId).collect(Collectors.toList());
+        }
+
+        //then
+        assertThat(all).containsExactlyInAnyOrder(item1.getId(), item2.getId(), item3.getId());
+        assertThat(itemA).containsExactly(item1.getId());
+    }
+
     void test(String itemName, Integer maxPrice, Item... items) {
         List<Item> result = itemRepository.findAll(new ItemSearchCond(itemName, maxPrice));
         assertThat(result).containsExactly(items);
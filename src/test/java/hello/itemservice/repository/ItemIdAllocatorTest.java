@@ -0,0 +1,95 @@
+package hello.itemservice.repository;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.jdbctemplate.JdbcTemplateItemRepositoryV2;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 블록 단위(hi/lo) id 발급기
+ * : 발급기 두 개를 두 애플리케이션 노드로 보고, 같은 DB 에서 동시에 발급해도 id 가 겹치지 않는지 확인한다.
+ * : 테이블은 테스트용 schema.sql 이 만든다. 예약은 별도의 커넥션에서 커밋되므로 테스트 트랜잭션(롤백) 대신 테스트가 끝나면 행을 지운다.
+ */
+@SpringBootTest
+class ItemIdAllocatorTest {
+
+    static final int BLOCK_SIZE = 100;
+
+    @Autowired
+    DataSource dataSource;
+
+    JdbcTemplate template;
+
+    @BeforeEach
+    void setUp() {
+        template = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() {
+        template.update("delete from item");
+        template.update("delete from id_block");
+    }
+
+    @Test
+    void uniqueAcrossNodes() throws Exception {
+        long maxId = template.queryForObject("select coalesce(max(id), 0) from item", Long.class);
+        List<HiLoItemIdAllocator> nodes = List.of(
+                new HiLoItemIdAllocator(dataSource, "item", BLOCK_SIZE),
+                new HiLoItemIdAllocator(dataSource, "item", BLOCK_SIZE));
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                HiLoItemIdAllocator allocator = nodes.get(i % nodes.size());
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        assertThat(ids.add(allocator.nextId())).isTrue();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(ids).hasSize(8000);
+        //블록은 DB 에서 blockSize 건마다 한 번 예약한다. (노드마다 마지막 블록은 일부만 사용)
+        long reserved = template.queryForObject("select next_val from id_block where name = 'item'", Long.class) - 1;
+        assertThat(reserved - maxId).isLessThanOrEqualTo(8000 + (long) BLOCK_SIZE * nodes.size());
+    }
+
+    @Test
+    void startsAfterExistingRows() {
+        JdbcTemplateItemRepositoryV2 identityRepository = new JdbcTemplateItemRepositoryV2(dataSource);
+        Item existing = identityRepository.save(new Item("old", 1000, 1));
+
+        JdbcTemplateItemRepositoryV2 itemRepository = new JdbcTemplateItemRepositoryV2(dataSource,
+                new HiLoItemIdAllocator(dataSource, "item", BLOCK_SIZE));
+        List<Item> items = itemRepository.saveAll(List.of(new Item("a", 1000, 1), new Item("b", 2000, 2)));
+        Item single = itemRepository.save(new Item("c", 3000, 3));
+
+        assertThat(items).extracting(Item::getId).allMatch(id -> id > existing.getId());
+        assertThat(single.getId()).isEqualTo(items.get(1).getId() + 1);
+        assertThat(itemRepository.findById(single.getId()).orElseThrow().getItemName()).isEqualTo("c");
+    }
+}
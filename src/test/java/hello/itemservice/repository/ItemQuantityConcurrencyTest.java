@@ -0,0 +1,104 @@
+package hello.itemservice.repository;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.jdbctemplate.JdbcTemplateItemRepositoryV2;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import hello.itemservice.repository.writebehind.WriteBehindItemRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 하나의 상품에 여러 스레드가 동시에 reserve(1) 해도 수정 유실, 초과 판매가 없어야 한다.
+ * : 재고를 작게 두고 바닥날 때까지 차감한다. 성공 횟수가 처음 재고와 같고 최종 재고가 0 이어야 한다.
+ * : 큰 재고로 처리량을 재는 벤치마크는 {@link ItemQuantityContentionTest} 이다.
+ * : DB 는 테스트용 schema.sql 로 만든 스프링 부트의 DataSource 를 사용한다. 여러 스레드가 각자 커밋하므로 테스트가 끝나면 행을 지운다.
+ */
+@SpringBootTest
+class ItemQuantityConcurrencyTest {
+
+    static final int THREADS = 8;
+    static final int STOCK = 500;
+
+    @Autowired
+    DataSource dataSource;
+
+    @AfterEach
+    void tearDown() {
+        new JdbcTemplate(dataSource).update("delete from item");
+    }
+
+    @Test
+    void memoryCompareAndSet() throws Exception {
+        reserveAll(new MemoryItemRepository());
+    }
+
+    @Test
+    void jdbcGuardedUpdate() throws Exception {
+        reserveAll(new JdbcTemplateItemRepositoryV2(dataSource));
+    }
+
+    @Test
+    void jdbcWriteBehind() throws Exception {
+        JdbcTemplateItemRepositoryV2 delegate = new JdbcTemplateItemRepositoryV2(dataSource);
+        Long itemId;
+        try (WriteBehindItemRepository writeBehind = new WriteBehindItemRepository(delegate, Duration.ofMillis(10))) {
+            itemId = reserveAll(writeBehind);
+        }
+        //close() 가 남은 변화량을 반영했다.
+        assertThat(delegate.findById(itemId).orElseThrow().getQuantity()).isZero();
+    }
+
+    private Long reserveAll(ItemRepository itemRepository) throws Exception {
+        Long itemId = itemRepository.save(new Item("hot", 10000, STOCK)).getId();
+
+        assertThat(reserveUntilSoldOut(itemRepository, itemId, THREADS)).isEqualTo(STOCK);
+        assertThat(itemRepository.findById(itemId).orElseThrow().getQuantity()).isZero();
+        assertThat(itemRepository.reserve(itemId, 1)).isFalse();
+        return itemId;
+    }
+
+    /**
+     * threads 개의 스레드가 동시에 시작해 재고가 바닥날 때까지 reserve(1) 한다.
+     *
+     * @return 성공한 reserve 횟수
+     */
+    static int reserveUntilSoldOut(ItemRepository itemRepository, Long itemId, int threads) throws Exception {
+        AtomicInteger reserved = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    while (itemRepository.reserve(itemId, 1)) {
+                        reserved.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return reserved.get();
+    }
+}
@@ -0,0 +1,79 @@
+package hello.itemservice.repository;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.jdbctemplate.JdbcTemplateItemRepositoryV2;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import hello.itemservice.repository.writebehind.WriteBehindItemRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 하나의 인기 상품(hot row)에 여러 스레드가 동시에 reserve(1) 하는 경합 벤치마크
+ * : 재고가 바닥날 때까지 차감한다. 성공 횟수가 처음 재고와 같고 최종 재고가 0 이면, 수정 유실도 초과 판매도 없었다는 뜻이다.
+ * : 처리량은 환경에 따라 달라지므로 로그로만 남긴다.
+ * : 일반 test 태스크에서는 제외된다. ./gradlew benchmark 로 실행한다. 작은 재고로 정합성만 확인하는 테스트는 {@link ItemQuantityConcurrencyTest} 이다.
+ * : DB 는 테스트용 schema.sql 로 만든 스프링 부트의 DataSource 를 사용한다. 여러 스레드가 각자 커밋하므로 테스트가 끝나면 행을 지운다.
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest
+class ItemQuantityContentionTest {
+
+    static final int THREADS = 8;
+
+    @Autowired
+    DataSource dataSource;
+
+    @AfterEach
+    void tearDown() {
+        new JdbcTemplate(dataSource).update("delete from item");
+    }
+
+    @Test
+    void memoryCompareAndSet() throws Exception {
+        contend("memory(CAS)", new MemoryItemRepository(), 200_000);
+    }
+
+    @Test
+    void jdbcGuardedUpdate() throws Exception {
+        contend("jdbc(guarded update)", new JdbcTemplateItemRepositoryV2(dataSource), 5_000);
+    }
+
+    /**
+     * write-behind: 수량 변경은 메모리에서 끝나고, 저장소에는 flush 주기마다 상품별 update 한 번만 나간다.
+     */
+    @Test
+    void jdbcWriteBehind() throws Exception {
+        JdbcTemplateItemRepositoryV2 delegate = new JdbcTemplateItemRepositoryV2(dataSource);
+        Long itemId;
+        try (WriteBehindItemRepository writeBehind = new WriteBehindItemRepository(delegate, Duration.ofMillis(10))) {
+            itemId = contend("jdbc(write-behind)", writeBehind, 200_000);
+        }
+        //close() 가 남은 변화량을 반영했다.
+        assertThat(delegate.findById(itemId).orElseThrow().getQuantity()).isZero();
+    }
+
+    private Long contend(String name, ItemRepository itemRepository, int stock) throws Exception {
+        Long itemId = itemRepository.save(new Item("hot", 10000, stock)).getId();
+
+        long begin = System.nanoTime();
+        int reserved = ItemQuantityConcurrencyTest.reserveUntilSoldOut(itemRepository, itemId, THREADS);
+        double seconds = (System.nanoTime() - begin) / 1_000_000_000.0;
+        log.info("{}: threads={}, reserved={}, {} ops/s", name, THREADS, reserved, String.format("%.0f", reserved / seconds));
+
+        assertThat(reserved).isEqualTo(stock);
+        assertThat(itemRepository.findById(itemId).orElseThrow().getQuantity()).isZero();
+        assertThat(itemRepository.reserve(itemId, 1)).isFalse();
+        return itemId;
+    }
+}
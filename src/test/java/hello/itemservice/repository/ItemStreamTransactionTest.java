@@ -0,0 +1,89 @@
+package hello.itemservice.repository;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.jpa.JpaItemRepository;
+import hello.itemservice.repository.jpa.JpaItemRepositoryV3;
+import hello.itemservice.repository.mybatis.ItemMapper;
+import hello.itemservice.repository.mybatis.MyBatisItemRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 커서 기반 streamAll 은 호출자의 트랜잭션을 요구한다. (Propagation.MANDATORY)
+ * : 저장소 빈은 설정(Config)에 따라 하나만 등록되므로, 구현체를 직접 만들고 스프링과 같은 트랜잭션 프록시를 씌워서 호출한다.
+ * : 트랜잭션 안에서는 스트림을 끝까지 읽고 닫을 수 있어야 하고, 트랜잭션 밖에서는 커서를 열기 전에 예외가 발생해야 한다.
+ */
+@SpringBootTest
+class ItemStreamTransactionTest {
+
+    @Autowired
+    ItemMapper itemMapper;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionManager transactionManager;
+
+    @Test
+    @Transactional
+    void myBatisStreamInsideTransaction() {
+        assertStreamInsideTransaction(transactional(new MyBatisItemRepository(itemMapper)));
+    }
+
+    @Test
+    void myBatisStreamWithoutTransaction() {
+        assertStreamWithoutTransactionRejected(transactional(new MyBatisItemRepository(itemMapper)));
+    }
+
+    @Test
+    @Transactional
+    void jpaStreamInsideTransaction() {
+        assertStreamInsideTransaction(transactional(new JpaItemRepository(em)));
+        assertStreamInsideTransaction(transactional(new JpaItemRepositoryV3(em)));
+    }
+
+    @Test
+    void jpaStreamWithoutTransaction() {
+        assertStreamWithoutTransactionRejected(transactional(new JpaItemRepository(em)));
+        assertStreamWithoutTransactionRejected(transactional(new JpaItemRepositoryV3(em)));
+    }
+
+    void assertStreamInsideTransaction(ItemRepository itemRepository) {
+        Item itemA = itemRepository.save(new Item("streamA", 10000, 10));
+        Item itemB = itemRepository.save(new Item("streamB", 20000, 20));
+
+        List<Long> streamed;
+        try (Stream<Item> stream = itemRepository.streamAll(new ItemSearchCond("stream", null))) {
+            streamed = stream.map(Item::getId).collect(Collectors.toList());
+        }
+
+        assertThat(streamed).containsExactlyInAnyOrder(itemA.getId(), itemB.getId());
+    }
+
+    void assertStreamWithoutTransactionRejected(ItemRepository itemRepository) {
+        assertThatThrownBy(() -> itemRepository.streamAll(new ItemSearchCond()))
+                .isInstanceOf(IllegalTransactionStateException.class);
+    }
+
+    private ItemRepository transactional(ItemRepository target) {
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.addAdvice(new TransactionInterceptor(transactionManager, new AnnotationTransactionAttributeSource()));
+        return (ItemRepository) proxyFactory.getProxy();
+    }
+}
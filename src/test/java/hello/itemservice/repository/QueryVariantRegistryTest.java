@@ -0,0 +1,47 @@
+package hello.itemservice.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryVariantRegistryTest {
+
+    AtomicInteger compiled = new AtomicInteger();
+
+    @Test
+    void precompiledVariantsAreHits() {
+        QueryVariantRegistry<String> registry = new QueryVariantRegistry<>("test", this::compile);
+        assertThat(compiled.get()).isEqualTo(ItemSearchShape.COUNT);
+
+        ItemSearchCond byName = new ItemSearchCond("itemA", null);
+        String sql = registry.get(byName);
+        assertThat(registry.get(new ItemSearchCond("itemB", null))).isSameAs(sql);//값이 달라도 같은 shape 는 같은 문자열
+        assertThat(registry.get(new ItemSearchCond(null, 1000))).isNotEqualTo(sql);
+
+        assertThat(registry.getHits()).isEqualTo(3);
+        assertThat(registry.getMisses()).isZero();
+        assertThat(compiled.get()).isEqualTo(ItemSearchShape.COUNT);
+    }
+
+    @Test
+    void lazyVariantsAreCompiledOnce() {
+        QueryVariantRegistry<String> registry = new QueryVariantRegistry<>("test", this::compile, false);
+        assertThat(compiled.get()).isZero();
+
+        registry.get(new ItemSearchCond("itemA", null));
+        registry.get(new ItemSearchCond("itemB", null));
+        registry.get(new ItemSearchCond());
+
+        assertThat(registry.getMisses()).isEqualTo(2);
+        assertThat(registry.getHits()).isEqualTo(1);
+        assertThat(compiled.get()).isEqualTo(2);
+        assertThat(registry.toString()).isEqualTo("test{hits=1, misses=2}");
+    }
+
+    private String compile(int shape) {
+        compiled.incrementAndGet();
+        return "shape-" + shape;
+    }
+}
@@ -0,0 +1,155 @@
+package hello.itemservice.repository.batch;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ItemBatchLoaderTest {
+
+    /**
+     * findAllById 호출 횟수를 센다.
+     */
+    static class CountingItemRepository extends MemoryItemRepository {
+        final AtomicInteger batches = new AtomicInteger();
+        final AtomicInteger singles = new AtomicInteger();
+
+        @Override
+        public Optional<Item> findById(Long id) {
+            singles.incrementAndGet();
+            return super.findById(id);
+        }
+
+        @Override
+        public List<Item> findAllById(Collection<Long> ids) {
+            batches.incrementAndGet();
+            return super.findAllById(ids);
+        }
+    }
+
+    CountingItemRepository itemRepository = new CountingItemRepository();
+
+    /**
+     * 요청 범위처럼 필요한 id 를 모두 load 한 뒤 dispatch 한다.
+     */
+    @Test
+    void manualDispatch() {
+        Item itemA = itemRepository.save(new Item("itemA", 10000, 10));
+        Item itemB = itemRepository.save(new Item("itemB", 20000, 20));
+        ItemBatchLoader loader = new ItemBatchLoader(itemRepository::findAllById, Duration.ZERO, 100);
+
+        CompletableFuture<Optional<Item>> a1 = loader.load(itemA.getId());
+        CompletableFuture<Optional<Item>> a2 = loader.load(itemA.getId());
+        CompletableFuture<Optional<Item>> b = loader.load(itemB.getId());
+        CompletableFuture<Optional<Item>> missing = loader.load(Long.MAX_VALUE);
+        assertThat(a1).isNotDone();
+
+        loader.dispatch();
+
+        assertThat(itemRepository.batches.get()).isEqualTo(1);
+        assertThat(a1.join().orElseThrow().getItemName()).isEqualTo("itemA");
+        assertThat(a2.join().orElseThrow()).isNotSameAs(a1.join().orElseThrow());//호출자마다 복사본
+        assertThat(b.join().orElseThrow().getPrice()).isEqualTo(20000);
+        assertThat(missing.join()).isEmpty();
+    }
+
+    @Test
+    void fullBatchDispatchesImmediately() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(itemRepository.save(new Item("item" + i, 1000, 1)).getId());
+        }
+        ItemBatchLoader loader = new ItemBatchLoader(itemRepository::findAllById, Duration.ZERO, 2);
+
+        List<CompletableFuture<Optional<Item>>> futures = new ArrayList<>();
+        ids.forEach(id -> futures.add(loader.load(id)));
+
+        assertThat(itemRepository.batches.get()).isEqualTo(2);//2건씩 두 번, 마지막 1건은 대기
+        assertThat(futures.get(4)).isNotDone();
+        loader.close();
+        assertThat(futures).allMatch(future -> future.join().isPresent());
+    }
+
+    /**
+     * 동시에 들어온 findById 가 window 안에서 findAllById 로 묶인다.
+     */
+    @Test
+    void concurrentFindByIdIsBatched() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            ids.add(itemRepository.save(new Item("item" + i, 1000, i)).getId());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(ids.size());
+        try (BatchingItemRepository batching = new BatchingItemRepository(itemRepository, Duration.ofMillis(50), 1000)) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Optional<Item>>> futures = new ArrayList<>();
+            for (Long id : ids) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return batching.findById(id);
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < ids.size(); i++) {
+                assertThat(futures.get(i).get(5, TimeUnit.SECONDS).orElseThrow().getId()).isEqualTo(ids.get(i));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(itemRepository.batches.get()).isLessThan(ids.size());
+    }
+
+    /**
+     * window 가 0 인 저장소: load 로 예약하고 dispatch 로 조회한다. findById 는 기다리지 않고 바로 조회한다.
+     */
+    @Test
+    void repositoryManualDispatch() {
+        Item itemA = itemRepository.save(new Item("itemA", 10000, 10));
+        Item itemB = itemRepository.save(new Item("itemB", 20000, 20));
+        try (BatchingItemRepository batching = new BatchingItemRepository(itemRepository, Duration.ZERO, 100)) {
+            CompletableFuture<Optional<Item>> a = batching.load(itemA.getId());
+            CompletableFuture<Optional<Item>> b = batching.load(itemB.getId());
+            assertThat(batching.findById(itemA.getId())).isPresent();
+            assertThat(a).isNotDone();
+
+            batching.dispatch();
+
+            assertThat(itemRepository.batches.get()).isEqualTo(1);
+            assertThat(a.join().orElseThrow().getItemName()).isEqualTo("itemA");
+            assertThat(b.join().orElseThrow().getItemName()).isEqualTo("itemB");
+        }
+    }
+
+    /**
+     * 트랜잭션 안의 findById 는 로더 스레드로 보내지 않고 호출한 스레드에서 바로 조회한다.
+     */
+    @Test
+    void findByIdInTransactionBypassesLoader() {
+        Item item = itemRepository.save(new Item("itemA", 10000, 10));
+        try (BatchingItemRepository batching = new BatchingItemRepository(itemRepository, Duration.ofMinutes(1), 1000)) {
+            TransactionSynchronizationManager.setActualTransactionActive(true);
+            try {
+                assertThat(batching.findById(item.getId())).isPresent();//window(1분)를 기다리지 않는다.
+            } finally {
+                TransactionSynchronizationManager.setActualTransactionActive(false);
+            }
+        }
+        assertThat(itemRepository.singles.get()).isEqualTo(1);
+        assertThat(itemRepository.batches.get()).isZero();
+    }
+}
@@ -0,0 +1,183 @@
+package hello.itemservice.repository.columnar;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 컬럼 저장소는 Item 을 보관하지 않고 컬럼 값으로 다시 만든다.
+ * : 저장한 값(null, 경계값 포함)이 그대로 읽혀야 하고, 상품명 사전은 현재 쓰이는 이름만 유지해야 한다.
+ */
+class ColumnarItemRepositoryTest {
+
+    ColumnarItemRepository itemRepository = new ColumnarItemRepository();
+
+    @Test
+    void saveAndFindById() {
+        Item saved = itemRepository.save(new Item("itemA", 10000, 10));
+
+        Item found = itemRepository.findById(saved.getId()).orElseThrow();
+        assertThat(found).isEqualTo(saved);
+        assertThat(found).isNotSameAs(saved);
+        assertThat(itemRepository.findById(saved.getId() + 1)).isNotPresent();
+        assertThat(itemRepository.findById(null)).isNotPresent();
+    }
+
+    /**
+     * null 은 별도 비트셋에 기록하므로 Integer.MIN_VALUE 도 값으로 저장된다.
+     */
+    @Test
+    void nullAndMinValue() {
+        Item nulls = itemRepository.save(new Item(null, null, null));
+        Item minValues = itemRepository.save(new Item("min", Integer.MIN_VALUE, Integer.MIN_VALUE));
+
+        Item foundNulls = itemRepository.findById(nulls.getId()).orElseThrow();
+        assertThat(foundNulls.getItemName()).isNull();
+        assertThat(foundNulls.getPrice()).isNull();
+        assertThat(foundNulls.getQuantity()).isNull();
+
+        Item foundMin = itemRepository.findById(minValues.getId()).orElseThrow();
+        assertThat(foundMin.getPrice()).isEqualTo(Integer.MIN_VALUE);
+        assertThat(foundMin.getQuantity()).isEqualTo(Integer.MIN_VALUE);
+        assertThat(itemRepository.findAll(new ItemSearchCond(null, 0))).containsExactly(foundMin);
+
+        itemRepository.update(minValues.getId(), new ItemUpdateDto("min", null, 1));
+        assertThat(itemRepository.findById(minValues.getId()).orElseThrow().getPrice()).isNull();
+        assertThat(itemRepository.findAll(new ItemSearchCond(null, 0))).isEmpty();
+    }
+
+    @Test
+    void updateItem() {
+        Item item = itemRepository.save(new Item("itemA", 10000, 10));
+
+        itemRepository.update(item.getId(), new ItemUpdateDto("renamed", 20000, 30));
+
+        Item found = itemRepository.findById(item.getId()).orElseThrow();
+        assertThat(found.getItemName()).isEqualTo("renamed");
+        assertThat(found.getPrice()).isEqualTo(20000);
+        assertThat(found.getQuantity()).isEqualTo(30);
+        assertThatThrownBy(() -> itemRepository.update(item.getId() + 1, new ItemUpdateDto("x", 1, 1)))
+                .isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    void findByNameAndMaxPrice() {
+        Item item1 = itemRepository.save(new Item("itemA-1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("itemA-2", 20000, 20));
+        Item item3 = itemRepository.save(new Item("itemB-1", 30000, 30));
+
+        assertThat(itemRepository.findAll(new ItemSearchCond())).containsExactly(item1, item2, item3);
+        assertThat(itemRepository.findAll(new ItemSearchCond("itemA", null))).containsExactly(item1, item2);
+        assertThat(itemRepository.findAll(new ItemSearchCond(null, 20000))).containsExactly(item1, item2);
+        assertThat(itemRepository.findAll(new ItemSearchCond("-1", 10000))).containsExactly(item1);
+        assertThat(itemRepository.findAll(new ItemSearchCond("itemC", null))).isEmpty();
+    }
+
+    /**
+     * 이름을 바꾸면 이전 이름은 사전에서 지워지고, 이전 이름으로 검색되지 않는다.
+     */
+    @Test
+    void renameReleasesOldName() {
+        Item item1 = itemRepository.save(new Item("shared", 10000, 10));
+        Item item2 = itemRepository.save(new Item("shared", 20000, 20));
+
+        for (int i = 0; i < 100; i++) {
+            itemRepository.update(item1.getId(), new ItemUpdateDto("rename" + i, 10000, 10));
+        }
+        assertThat(itemRepository.findAll(new ItemSearchCond("rename", null))).extracting(Item::getItemName)
+                .containsExactly("rename99");
+        assertThat(itemRepository.findAll(new ItemSearchCond("shared", null))).extracting(Item::getId)
+                .containsExactly(item2.getId());
+
+        itemRepository.update(item2.getId(), new ItemUpdateDto("rename99", 20000, 20));
+        assertThat(itemRepository.findAll(new ItemSearchCond("shared", null))).isEmpty();
+        assertThat(itemRepository.findAll(new ItemSearchCond("rename99", null))).hasSize(2);
+    }
+
+    @Test
+    void dictionaryReusesFreedCodes() {
+        NameDictionary dictionary = new NameDictionary();
+        int a = dictionary.encode("a");
+        assertThat(dictionary.encode("a")).isEqualTo(a);
+
+        dictionary.release(a);
+        assertThat(dictionary.decode(a)).isEqualTo("a");//아직 한 행이 사용 중
+        dictionary.release(a);
+        assertThat(dictionary.size()).isZero();
+        assertThat(dictionary.codesContaining("a").isEmpty()).isTrue();
+
+        int b = dictionary.encode("b");
+        assertThat(b).isEqualTo(a);
+        assertThat(dictionary.decode(b)).isEqualTo("b");
+    }
+
+    @Test
+    void keysetPaging() {
+        List<Long> itemIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            itemIds.add(itemRepository.save(new Item("item" + i, (i + 1) * 1000, 1)).getId());
+        }
+
+        assertThat(page(null, null, null, 2)).containsExactly(itemIds.get(0), itemIds.get(1));
+        assertThat(page(null, itemIds.get(1), null, 2)).containsExactly(itemIds.get(2), itemIds.get(3));
+        assertThat(page(null, itemIds.get(3), null, 2)).containsExactly(itemIds.get(4));
+        assertThat(page(null, null, itemIds.get(4), 2)).containsExactly(itemIds.get(2), itemIds.get(3));
+        assertThat(page(null, null, itemIds.get(1), 2)).containsExactly(itemIds.get(0));
+        assertThat(page(3000, itemIds.get(0), null, 5)).containsExactly(itemIds.get(1), itemIds.get(2));
+        assertThat(page(null, Long.MAX_VALUE, null, 2)).isEmpty();
+    }
+
+    @Test
+    void adjustQuantity() {
+        Item item = itemRepository.save(new Item("itemA", 10000, 10));
+        Item noQuantity = itemRepository.save(new Item("itemB", 10000, null));
+
+        assertThat(itemRepository.adjustQuantity(item.getId(), -3)).isTrue();
+        assertThat(itemRepository.reserve(item.getId(), 8)).isFalse();
+        assertThat(itemRepository.reserve(item.getId(), 7)).isTrue();
+        assertThat(itemRepository.findById(item.getId()).orElseThrow().getQuantity()).isZero();
+
+        assertThat(itemRepository.adjustQuantity(noQuantity.getId(), -1)).isFalse();
+        assertThat(itemRepository.adjustQuantity(noQuantity.getId(), 5)).isTrue();
+        assertThat(itemRepository.findById(noQuantity.getId()).orElseThrow().getQuantity()).isEqualTo(5);
+
+        assertThatThrownBy(() -> itemRepository.adjustQuantity(noQuantity.getId() + 1, 1))
+                .isInstanceOf(NoSuchElementException.class);
+    }
+
+    /**
+     * clearStore 후에도 id 는 이어서 발급되고, 지운 id 로는 조회되지 않는다.
+     */
+    @Test
+    void clearStoreKeepsSequence() {
+        Item before = itemRepository.save(new Item("itemA", 10000, 10));
+        itemRepository.save(new Item("itemB", 20000, 20));
+        itemRepository.clearStore();
+
+        Item after = itemRepository.save(new Item("itemC", 30000, 30));
+
+        assertThat(after.getId()).isGreaterThan(before.getId() + 1);
+        assertThat(itemRepository.findById(before.getId())).isNotPresent();
+        assertThat(itemRepository.findById(after.getId()).orElseThrow().getItemName()).isEqualTo("itemC");
+        assertThat(page(null, before.getId(), null, 10)).containsExactly(after.getId());
+        assertThat(page(null, null, after.getId(), 10)).isEmpty();
+    }
+
+    private List<Long> page(Integer maxPrice, Long afterId, Long beforeId, Integer size) {
+        ItemSearchCond cond = new ItemSearchCond(null, maxPrice);
+        cond.setAfterId(afterId);
+        cond.setBeforeId(beforeId);
+        cond.setSize(size);
+        List<Long> result = new ArrayList<>();
+        itemRepository.findAll(cond).forEach(item -> result.add(item.getId()));
+        return result;
+    }
+}
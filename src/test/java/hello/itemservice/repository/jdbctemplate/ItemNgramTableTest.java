@@ -0,0 +1,110 @@
+package hello.itemservice.repository.jdbctemplate;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemNameNgrams;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JdbcTemplateItemRepositoryV3 + item_ngram 사이드 테이블
+ * : 기본 설정(JdbcTemplateV3Config)은 사이드 테이블을 사용하지 않으므로, 여기서 ItemNgramTable 을 넘겨 직접 만든다.
+ * : 테이블은 테스트용 schema.sql 이 만든다. 테스트가 끝나면 롤백한다.
+ */
+@Transactional
+@SpringBootTest
+class ItemNgramTableTest {
+
+    @Autowired
+    DataSource dataSource;
+
+    JdbcTemplateItemRepositoryV3 itemRepository;
+    JdbcTemplate template;
+
+    @BeforeEach
+    void setUp() {
+        itemRepository = new JdbcTemplateItemRepositoryV3(dataSource, new ItemNgramTable(dataSource));
+        template = new JdbcTemplate(dataSource);
+    }
+
+    @Test
+    void saveIndexesItemName() {
+        Item item = itemRepository.save(new Item("상품하나", 10000, 10));
+
+        assertThat(gramCount(item.getId())).isEqualTo(ItemNameNgrams.indexGrams("상품하나").size());
+        assertThat(findByName("품하")).containsExactly("상품하나");
+        assertThat(findByName("하")).containsExactly("상품하나");
+    }
+
+    /**
+     * 조각이 모두 일치해도 실제로 포함하지 않으면 like 조건으로 걸러진다.
+     */
+    @Test
+    void candidatesAreRechecked() {
+        itemRepository.save(new Item("baab", 1000, 1));//ab, ba 를 모두 갖지만 "aba" 는 없다.
+        itemRepository.save(new Item("aba1", 1000, 1));
+
+        assertThat(findByName("aba")).containsExactly("aba1");
+        assertThat(findByName("ab")).containsExactlyInAnyOrder("baab", "aba1");
+    }
+
+    @Test
+    void updateReindexes() {
+        Item itemA = itemRepository.save(new Item("itemA", 10000, 10));
+        itemRepository.save(new Item("itemB", 20000, 20));
+
+        itemRepository.update(itemA.getId(), new ItemUpdateDto("renamed", 10000, 10));
+
+        assertThat(findByName("item")).containsExactly("itemB");
+        assertThat(findByName("name")).containsExactly("renamed");
+        assertThat(gramCount(itemA.getId())).isEqualTo(ItemNameNgrams.indexGrams("renamed").size());
+    }
+
+    @Test
+    void bulkSaveAndUpdateReindex() {
+        List<Item> items = itemRepository.saveAll(List.of(new Item("itemA", 10000, 10), new Item("itemB", 20000, 20)));
+        assertThat(findByName("temB")).containsExactly("itemB");
+
+        itemRepository.updateAll(Map.of(items.get(0).getId(), new ItemUpdateDto("bulkA", 10000, 10)));
+
+        assertThat(findByName("item")).containsExactly("itemB");
+        assertThat(findByName("lkA")).containsExactly("bulkA");
+    }
+
+    /**
+     * 사이드 테이블 없이 저장한 상품은 item_ngram 행이 없다. 사이드 테이블을 켜면 생성 시점에 채워진다.
+     */
+    @Test
+    void existingItemsAreBackfilled() {
+        JdbcTemplateItemRepositoryV3 withoutTable = new JdbcTemplateItemRepositoryV3(dataSource);
+        Item existing = withoutTable.save(new Item("기존상품", 10000, 10));
+        assertThat(gramCount(existing.getId())).isZero();
+
+        itemRepository = new JdbcTemplateItemRepositoryV3(dataSource, new ItemNgramTable(dataSource));
+
+        assertThat(gramCount(existing.getId())).isEqualTo(ItemNameNgrams.indexGrams("기존상품").size());
+        assertThat(findByName("존상")).containsExactly("기존상품");
+        assertThat(new ItemNgramTable(dataSource).backfill()).isZero();
+    }
+
+    private List<String> findByName(String itemName) {
+        List<Item> found = itemRepository.findAll(new ItemSearchCond(itemName, null));
+        return found.stream().map(Item::getItemName).collect(Collectors.toList());
+    }
+
+    private int gramCount(Long itemId) {
+        return template.queryForObject("select count(*) from item_ngram where item_id = ?", Integer.class, itemId);
+    }
+}
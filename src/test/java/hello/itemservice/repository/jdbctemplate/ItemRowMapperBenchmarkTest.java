@@ -0,0 +1,85 @@
+package hello.itemservice.repository.jdbctemplate;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.domain.ItemRowMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * BeanPropertyRowMapper(리플렉션, 컬럼 이름 조회) vs ItemRowMapper(컴파일 시점 생성, 인덱스 조회) 행당 비용 비교
+ * : 테스트용 schema.sql 로 만든 item 테이블에 행을 넣고 같은 select 를 두 매퍼로 반복 조회한다. 넣은 행은 테스트가 끝나면 지운다.
+ * : 조회 비용은 양쪽에 같이 포함되므로, 두 값의 차이가 매핑 비용의 차이다.
+ * : 시간은 환경에 따라 달라지므로 로그로만 남기고, 테스트는 두 매퍼의 결과가 같은지만 검증한다.
+ * : 일반 test 태스크에서는 제외된다. ./gradlew benchmark 로 실행한다. (build.gradle)
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest
+class ItemRowMapperBenchmarkTest {
+
+    static final int ROWS = 100_000;
+    static final int ITERATIONS = 10;
+
+    @Autowired
+    DataSource dataSource;
+
+    JdbcTemplate template;
+
+    @BeforeEach
+    void setUp() {
+        template = new JdbcTemplate(dataSource);
+
+        List<Object[]> rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new Object[]{"item" + (i % 1000), i % 50_000, i % 100});
+        }
+        template.batchUpdate("insert into item(item_name, price, quantity) values(?,?,?)", rows);
+    }
+
+    @AfterEach
+    void tearDown() {
+        template.update("delete from item");
+    }
+
+    @Test
+    void rowMapperCostPerRow() {
+        String sql = "select " + ItemRowMapper.COLUMNS + " from item";
+
+        //warm up (JIT)
+        for (int i = 0; i < 3; i++) {
+            template.query(sql, BeanPropertyRowMapper.newInstance(Item.class));
+            template.query(sql, ItemRowMapper.INSTANCE);
+        }
+
+        double reflective = nanosPerRow(sql, () -> BeanPropertyRowMapper.newInstance(Item.class));//기존 리포지토리처럼 조회마다 매퍼 생성
+        double generated = nanosPerRow(sql, () -> ItemRowMapper.INSTANCE);
+        log.info("BeanPropertyRowMapper={}ns/row, ItemRowMapper={}ns/row", String.format("%.1f", reflective), String.format("%.1f", generated));
+
+        List<Item> expected = template.query(sql, BeanPropertyRowMapper.newInstance(Item.class));
+        List<Item> actual = template.query(sql, ItemRowMapper.INSTANCE);
+        assertThat(actual).hasSize(ROWS).isEqualTo(expected);
+    }
+
+    private double nanosPerRow(String sql, Supplier<RowMapper<Item>> mapper) {
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            template.query(sql, mapper.get());
+        }
+        return (System.nanoTime() - start) / (double) (ROWS * ITERATIONS);
+    }
+}
@@ -0,0 +1,56 @@
+package hello.itemservice.repository.jdbctemplate;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.QueryVariantRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * findAll 쿼리는 shape 별로 미리 만들어 두므로, 어떤 조건으로 조회해도 misses 가 늘지 않아야 한다.
+ */
+@Transactional
+@SpringBootTest
+class JdbcTemplateFindAllQueriesTest {
+
+    @Autowired
+    DataSource dataSource;
+
+    @Test
+    void v1() {
+        JdbcTemplateItemRepositoryV1 itemRepository = new JdbcTemplateItemRepositoryV1(dataSource);
+        findAllWithEveryCondition(itemRepository, itemRepository.getFindAllQueries());
+    }
+
+    @Test
+    void v2() {
+        JdbcTemplateItemRepositoryV2 itemRepository = new JdbcTemplateItemRepositoryV2(dataSource);
+        findAllWithEveryCondition(itemRepository, itemRepository.getFindAllQueries());
+    }
+
+    @Test
+    void v3() {
+        JdbcTemplateItemRepositoryV3 itemRepository = new JdbcTemplateItemRepositoryV3(dataSource);
+        findAllWithEveryCondition(itemRepository, itemRepository.getFindAllQueries());
+    }
+
+    private void findAllWithEveryCondition(ItemRepository itemRepository, QueryVariantRegistry<String> queries) {
+        itemRepository.save(new Item("itemA", 10000, 10));
+        long hits = queries.getHits();
+
+        assertThat(itemRepository.findAll(new ItemSearchCond())).hasSize(1);
+        assertThat(itemRepository.findAll(new ItemSearchCond("itemA", null))).hasSize(1);
+        assertThat(itemRepository.findAll(new ItemSearchCond(null, 10000))).hasSize(1);
+        assertThat(itemRepository.findAll(new ItemSearchCond("itemA", 5000))).isEmpty();
+
+        assertThat(queries.getHits()).isEqualTo(hits + 4);
+        assertThat(queries.getMisses()).isZero();
+    }
+}
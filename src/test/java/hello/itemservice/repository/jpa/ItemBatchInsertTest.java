@@ -0,0 +1,69 @@
+package hello.itemservice.repository.jpa;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JPA 배치 insert 모드(batch 프로필) 검증
+ * : 하이버네이트 통계의 PreparedStatement 수로 1,000 건 저장에 실제로 몇 번의 문장이 나갔는지 센다.
+ * : IDENTITY 전략이면 insert 1,000 번이다.
+ * : SEQUENCE(pooled, allocationSize 50) + batch_size 50 이면 insert 배치 20 번 + 시퀀스 호출 약 20 번이다.
+ */
+@Slf4j
+@Transactional
+@ActiveProfiles({"test", "batch"})
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ItemBatchInsertTest {
+
+    static final int ITEMS = 1000;
+    static final int JDBC_BATCH_SIZE = 50;
+    static final int ALLOCATION_SIZE = 50;
+
+    @Autowired
+    ItemRepository itemRepository;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void statementsPerThousandInserts() {
+        List<Item> items = new ArrayList<>(ITEMS);
+        for (int i = 0; i < ITEMS; i++) {
+            items.add(new Item("item" + i, 1000 + i, i % 100));
+        }
+
+        itemRepository.saveAll(items);
+
+        long statements = statistics.getPrepareStatementCount();
+        log.info("inserts={}, statements={}, entityInserts={}", ITEMS, statements, statistics.getEntityInsertCount());
+
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(ITEMS);
+        //insert 배치 + 시퀀스 호출 (pooled 옵티마이저는 처음 한 번 시퀀스를 두 번 호출한다)
+        long expectedMax = ITEMS / JDBC_BATCH_SIZE + ITEMS / ALLOCATION_SIZE + 1;
+        assertThat(statements).isLessThanOrEqualTo(expectedMax);
+        assertThat(items).extracting(Item::getId).doesNotContainNull().doesNotHaveDuplicates();
+    }
+}
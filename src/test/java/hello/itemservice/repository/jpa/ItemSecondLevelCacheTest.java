@@ -0,0 +1,109 @@
+package hello.itemservice.repository.jpa;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 하이버네이트 2차 캐시 + 쿼리 캐시(cache 프로필) 검증
+ * : 캐시는 트랜잭션 사이에서 공유되므로, 테스트 트랜잭션(롤백) 대신 조회마다 새 트랜잭션을 커밋한다.
+ * : 두 번째 트랜잭션부터 SQL 이 나가지 않는지 하이버네이트 통계의 PreparedStatement 수로 확인한다.
+ */
+@Slf4j
+@ActiveProfiles({"test", "cache"})
+@SpringBootTest
+class ItemSecondLevelCacheTest {
+
+    static final String ITEM_REGION = Item.class.getName();
+
+    @Autowired
+    ItemRepository itemRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+    Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        emf.getCache().evictAll();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        tx.executeWithoutResult(status -> em.createQuery("delete from Item").executeUpdate());
+    }
+
+    @Test
+    void findByIdAcrossTransactions() {
+        Long itemId = tx.execute(status -> itemRepository.save(new Item("itemA", 10000, 10)).getId());
+
+        tx.executeWithoutResult(status -> itemRepository.findById(itemId));
+        long statements = statistics.getPrepareStatementCount();
+        Item found = tx.execute(status -> itemRepository.findById(itemId).orElseThrow());
+
+        CacheRegionStatistics region = statistics.getDomainDataRegionStatistics(ITEM_REGION);
+        log.info("region={}, hits={}, misses={}, puts={}", ITEM_REGION, region.getHitCount(), region.getMissCount(), region.getPutCount());
+        assertThat(found.getItemName()).isEqualTo("itemA");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+        assertThat(region.getHitCount()).isPositive();
+    }
+
+    @Test
+    void bulkUpdateEvictsRegion() {
+        Long itemId = tx.execute(status -> itemRepository.save(new Item("itemA", 10000, 10)).getId());
+        tx.executeWithoutResult(status -> itemRepository.findById(itemId));
+
+        tx.executeWithoutResult(status -> itemRepository.update(itemId, new ItemUpdateDto("itemB", 20000, 20)));
+        tx.executeWithoutResult(status -> itemRepository.reserve(itemId, 5));
+
+        Item found = tx.execute(status -> itemRepository.findById(itemId).orElseThrow());
+        assertThat(found.getItemName()).isEqualTo("itemB");
+        assertThat(found.getQuantity()).isEqualTo(15);
+    }
+
+    @Test
+    void queryCacheAcrossTransactions() {
+        tx.executeWithoutResult(status -> {
+            itemRepository.save(new Item("itemA", 10000, 10));
+            itemRepository.save(new Item("itemB", 20000, 20));
+        });
+        ItemSearchCond cond = new ItemSearchCond("item", 15000);
+
+        tx.executeWithoutResult(status -> itemRepository.findAll(cond));
+        long statements = statistics.getPrepareStatementCount();
+        int found = tx.execute(status -> itemRepository.findAll(cond).size());
+
+        assertThat(found).isEqualTo(1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+        assertThat(statistics.getQueryCacheHitCount()).isPositive();
+    }
+}
@@ -0,0 +1,115 @@
+package hello.itemservice.repository.jpa;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * saveAll, updateAll, streamAll 은 자신이 영속성 컨텍스트에 올린 엔티티만 detach 한다.
+ * : 호출자가 같은 트랜잭션에서 먼저 조회한 엔티티는 영속 상태로 남아야 한다.
+ * : 저장소 빈 대신 주입받은 EntityManager 로 구현체를 직접 만들어 테스트 트랜잭션(롤백) 안에서 호출한다.
+ */
+@Transactional
+@SpringBootTest
+class JpaItemRepositoryBulkTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Test
+    void bulkKeepsCallerEntitiesManaged() {
+        assertBulkKeepsCallerEntitiesManaged(new JpaItemRepository(em));
+    }
+
+    @Test
+    void bulkKeepsCallerEntitiesManagedV3() {
+        assertBulkKeepsCallerEntitiesManaged(new JpaItemRepositoryV3(em));
+    }
+
+    @Test
+    void updateAllUnknownId() {
+        assertUpdateAllUnknownIdThrows(new JpaItemRepository(em));
+    }
+
+    @Test
+    void updateAllUnknownIdV3() {
+        assertUpdateAllUnknownIdThrows(new JpaItemRepositoryV3(em));
+    }
+
+    @Test
+    void streamKeepsCallerEntitiesManaged() {
+        assertStreamKeepsCallerEntitiesManaged(new JpaItemRepository(em));
+    }
+
+    @Test
+    void streamKeepsCallerEntitiesManagedV3() {
+        assertStreamKeepsCallerEntitiesManaged(new JpaItemRepositoryV3(em));
+    }
+
+    void assertStreamKeepsCallerEntitiesManaged(ItemRepository itemRepository) {
+        //given
+        Item managed = new Item("itemA", 10000, 10);
+        em.persist(managed);
+        Item other = new Item("itemB", 20000, 20);
+        em.persist(other);
+        em.flush();
+        em.detach(other);
+
+        //when
+        List<Item> streamed;
+        try (Stream<Item> stream = itemRepository.streamAll(new ItemSearchCond(null, null))) {
+            streamed = stream.collect(Collectors.toList());
+        }
+
+        //then: 먼저 관리되던 엔티티는 같은 인스턴스로 남고, 스트림이 읽은 엔티티는 준영속 상태다.
+        assertThat(streamed).extracting(Item::getId).containsExactlyInAnyOrder(managed.getId(), other.getId());
+        assertThat(em.contains(managed)).isTrue();
+        assertThat(streamed).filteredOn(item -> item.getId().equals(managed.getId())).singleElement().isSameAs(managed);
+        assertThat(streamed).filteredOn(item -> item.getId().equals(other.getId())).noneMatch(em::contains);
+    }
+
+    void assertBulkKeepsCallerEntitiesManaged(ItemRepository itemRepository) {
+        //given: 호출자가 관리 중인 엔티티
+        Item managed = new Item("itemA", 10000, 10);
+        em.persist(managed);
+        em.flush();
+
+        //when
+        List<Item> saved = itemRepository.saveAll(List.of(new Item("itemB", 20000, 20), new Item("itemC", 30000, 30)));
+        itemRepository.updateAll(Map.of(
+                managed.getId(), new ItemUpdateDto("itemA2", 11000, 11),
+                saved.get(0).getId(), new ItemUpdateDto("itemB2", 22000, 22)));
+
+        //then
+        assertThat(em.contains(managed)).isTrue();
+        assertThat(managed.getItemName()).isEqualTo("itemA2");
+        assertThat(saved).noneMatch(em::contains);
+        assertThat(itemRepository.findById(saved.get(0).getId()).get().getItemName()).isEqualTo("itemB2");
+        assertThat(itemRepository.findById(saved.get(1).getId()).get().getItemName()).isEqualTo("itemC");
+    }
+
+    void assertUpdateAllUnknownIdThrows(ItemRepository itemRepository) {
+        Item item = itemRepository.save(new Item("itemA", 10000, 10));
+
+        assertThatThrownBy(() -> itemRepository.updateAll(Map.of(
+                item.getId(), new ItemUpdateDto("itemA2", 11000, 11),
+                Long.MAX_VALUE, new ItemUpdateDto("itemX", 1, 1))))
+                .isInstanceOf(NoSuchElementException.class)
+                .hasMessageContaining(String.valueOf(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,212 @@
+package hello.itemservice.repository.memory;
+
+import hello.itemservice.domain.Item;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 락 없는 읽기 + 세그먼트 락 쓰기
+ * : 동시에 저장해도 id 가 겹치거나 항목이 유실되면 안 된다.
+ * : 리사이즈, 삭제 도중에도 get 은 저장된 값 또는 null 만 보고, 다른 키의 값을 보면 안 된다.
+ */
+class ConcurrentLongMapTest {
+
+    static final int THREADS = 8;
+
+    @Test
+    void concurrentSaveProducesUniqueIds() throws Exception {
+        MemoryItemRepository itemRepository = new MemoryItemRepository();
+        int perThread = 5_000;
+
+        List<Future<List<Long>>> futures = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    List<Long> ids = new ArrayList<>();
+                    for (int i = 0; i < perThread; i++) {
+                        ids.add(itemRepository.save(new Item("item" + thread + "-" + i, i, 1)).getId());
+                    }
+                    return ids;
+                }));
+            }
+            Set<Long> ids = new HashSet<>();
+            for (Future<List<Long>> future : futures) {
+                ids.addAll(future.get(30, TimeUnit.SECONDS));
+            }
+
+            assertThat(ids).hasSize(THREADS * perThread);
+            for (Long id : ids) {
+                assertThat(itemRepository.findById(id)).isPresent();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 세그먼트 2개, 초기 용량 16 에서 시작해 쓰는 동안 리사이즈가 계속 일어난다.
+     * : published 까지의 키는 이미 저장되었으므로, 어느 테이블을 보든 항상 찾아야 한다.
+     */
+    @Test
+    void getDuringResize() throws Exception {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>(2);
+        int keys = 200_000;
+        AtomicLong published = new AtomicLong();
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (long key = 1; key <= keys; key++) {
+                    map.put(key, key * 10);
+                    published.set(key);
+                }
+                running.set(false);
+            });
+            List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                readers.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (running.get()) {
+                        long last = published.get();
+                        if (last == 0) {
+                            continue;
+                        }
+                        long key = 1 + random.nextLong(last);
+                        assertThat(map.get(key)).isEqualTo(key * 10);
+                        assertThat(map.get(keys + key)).isNull();
+                    }
+                    return null;
+                }));
+            }
+            writer.get(30, TimeUnit.SECONDS);
+            for (Future<?> reader : readers) {
+                reader.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+
+        assertThat(map.size()).isEqualTo(keys);
+        long count = 0;
+        for (Long ignored : map) {
+            count++;
+        }
+        assertThat(count).isEqualTo(keys);
+    }
+
+    @Test
+    void removeLeavesOtherKeysReachable() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>(2);
+        for (long key = 1; key <= 1000; key++) {
+            map.put(key, "v" + key);
+        }
+        for (long key = 2; key <= 1000; key += 2) {
+            assertThat(map.remove(key)).isEqualTo("v" + key);
+        }
+
+        assertThat(map.remove(2)).isNull();
+        assertThat(map.size()).isEqualTo(500);
+        for (long key = 1; key <= 1000; key++) {
+            assertThat(map.get(key)).isEqualTo(key % 2 == 0 ? null : "v" + key);//TOMBSTONE 뒤의 키도 찾는다.
+        }
+        List<String> values = new ArrayList<>();
+        map.forEach(values::add);
+        assertThat(values).hasSize(500).allMatch(value -> Long.parseLong(value.substring(1)) % 2 == 1);
+
+        map.put(2, "again");
+        assertThat(map.get(2)).isEqualTo("again");
+        assertThat(map.size()).isEqualTo(501);
+
+        assertThatThrownBy(() -> map.put(0, "zero")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> map.put(Long.MIN_VALUE, "min")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * 넣고 지우기를 반복해도 TOMBSTONE 이 재사용되거나 정리되어 테이블이 계속 커지지 않는다.
+     */
+    @Test
+    void tombstonesAreReused() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>(2);
+        for (long key = 1; key <= 100_000; key++) {
+            map.put(key, "v");
+            map.remove(key);
+        }
+        assertThat(map.size()).isZero();
+        assertThat(map.capacity()).isLessThanOrEqualTo(64);
+
+        for (int round = 0; round < 1000; round++) {
+            map.put(7, "v" + round);
+            map.remove(7);
+        }
+        map.put(7, "last");
+        assertThat(map.get(7)).isEqualTo("last");
+        assertThat(map.capacity()).isLessThanOrEqualTo(64);
+    }
+
+    /**
+     * 쓰는 스레드는 키를 넣고 64 개 전의 키를 지운다. 지운 슬롯은 다른 키가 재사용한다.
+     * : 읽는 쪽은 자기 키의 값 또는 null 만 봐야 한다.
+     */
+    @Test
+    void getDuringRemoveNeverSeesOtherKeysValue() throws Exception {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>(2);
+        AtomicLong written = new AtomicLong();
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (long key = 1; key <= 300_000; key++) {
+                    map.put(key, key);
+                    if (key > 64) {
+                        map.remove(key - 64);
+                    }
+                    written.set(key);
+                }
+                running.set(false);
+            });
+            List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                readers.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (running.get()) {
+                        long key = Math.max(1, written.get() - random.nextInt(128));
+                        Long value = map.get(key);
+                        if (value != null) {
+                            assertThat(value).isEqualTo(key);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            writer.get(30, TimeUnit.SECONDS);
+            for (Future<?> reader : readers) {
+                reader.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+
+        assertThat(map.size()).isEqualTo(64);
+        assertThat(map.capacity()).isLessThanOrEqualTo(1024);
+    }
+}
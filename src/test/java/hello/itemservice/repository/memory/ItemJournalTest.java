@@ -0,0 +1,59 @@
+package hello.itemservice.repository.memory;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MemoryItemRepository + ItemJournal 재시작 복구 테스트
+ * : 스프링 없이 저장소를 두 번 생성해서, 두 번째 저장소가 스냅샷 + 로그로 같은 상태를 복구하는지 확인한다.
+ */
+class ItemJournalTest {
+
+    @TempDir
+    Path journalDir;
+
+    @Test
+    void recoverFromSnapshotAndLogTail() {
+        //given
+        ItemJournal journal = newJournal();
+        MemoryItemRepository repository = new MemoryItemRepository(journal);
+        Item item1 = repository.save(new Item("itemA-1", 10000, 10));
+        Item item2 = repository.save(new Item("itemA-2", 20000, 20));
+        journal.snapshot(repository.findAll(new ItemSearchCond()));
+
+        //스냅샷 이후의 변경은 로그에만 남는다.
+        repository.update(item1.getId(), new ItemUpdateDto("itemB-1", 5000, 1));
+        Item item3 = repository.save(new Item("itemC-1", 30000, 30));
+        journal.close();
+
+        //when
+        MemoryItemRepository recovered = new MemoryItemRepository(newJournal());
+
+        //then
+        assertThat(recovered.findAll(new ItemSearchCond()))
+                .containsExactly(
+                        item(item1.getId(), "itemB-1", 5000, 1),
+                        item2,
+                        item3);
+        assertThat(recovered.findAll(new ItemSearchCond("itemB", 5000))).hasSize(1);
+        assertThat(recovered.save(new Item("itemD-1", 1000, 1)).getId()).isEqualTo(item3.getId() + 1);
+    }
+
+    private ItemJournal newJournal() {
+        return new ItemJournal(journalDir, Duration.ofMillis(10), Duration.ofHours(1));
+    }
+
+    private Item item(Long id, String itemName, Integer price, Integer quantity) {
+        Item item = new Item(itemName, price, quantity);
+        item.setId(id);
+        return item;
+    }
+}
@@ -0,0 +1,243 @@
+package hello.itemservice.repository.memory;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemIdAllocator;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * maxPrice 조건은 가격 인덱스로 조회한다. ({@link PriceIndex})
+ * : 가격이 바뀌는 도중에도 같은 상품이 두 번 나오거나, 조건에 맞지 않는 상품이 나오면 안 된다.
+ *
+ * itemName 조건은 n-gram 역색인으로 조회한다. ({@link NgramIndex})
+ * : 후보는 contains 로 다시 확인하고, 이름이 바뀌면 새 이름으로만 검색되어야 한다.
+ *
+ * 조건 없는 키셋 페이징은 id 인덱스로 조회한다.
+ * : id 사이의 빈 구간을 건너뛰고 size 건을 채운다.
+ */
+class MemoryItemRepositoryTest {
+
+    static final int ITEMS = 200;
+    static final int MAX_PRICE = 1000;
+
+    MemoryItemRepository itemRepository = new MemoryItemRepository();
+
+    @Test
+    void findByMaxPrice() {
+        Item item1 = itemRepository.save(new Item("itemA", 10000, 10));
+        Item item2 = itemRepository.save(new Item("itemB", 20000, 20));
+        itemRepository.update(item1.getId(), new ItemUpdateDto("itemA", 30000, 10));
+
+        assertThat(itemRepository.findAll(new ItemSearchCond(null, 20000))).containsExactly(item2);
+        assertThat(itemRepository.findAll(new ItemSearchCond(null, 30000))).extracting(Item::getId)
+                .containsExactly(item1.getId(), item2.getId());
+    }
+
+    @Test
+    void findByNameAfterUpdate() {
+        Item item1 = itemRepository.save(new Item("itemA", 10000, 10));
+        Item item2 = itemRepository.save(new Item("itemB", 20000, 20));
+
+        itemRepository.update(item1.getId(), new ItemUpdateDto("상품하나", 10000, 10));
+
+        assertThat(names(new ItemSearchCond("item", null))).containsExactly("itemB");
+        assertThat(names(new ItemSearchCond("품하", null))).containsExactly("상품하나");
+        assertThat(names(new ItemSearchCond("temA", null))).isEmpty();
+
+        itemRepository.update(item2.getId(), new ItemUpdateDto("itemB", 20000, 20));//같은 이름으로 수정
+        assertThat(names(new ItemSearchCond("temB", null))).containsExactly("itemB");
+    }
+
+    /**
+     * 1글자 검색어는 1글자 조각으로 찾는다. 이름 앞, 중간, 끝 어디에 있어도 찾아야 한다.
+     */
+    @Test
+    void findByOneCharacter() {
+        itemRepository.save(new Item("abc", 1000, 1));
+        itemRepository.save(new Item("xay", 1000, 1));
+        itemRepository.save(new Item("zzc", 1000, 1));
+        itemRepository.save(new Item("상품", 1000, 1));
+
+        assertThat(names(new ItemSearchCond("a", null))).containsExactly("abc", "xay");
+        assertThat(names(new ItemSearchCond("c", null))).containsExactly("abc", "zzc");
+        assertThat(names(new ItemSearchCond("품", null))).containsExactly("상품");
+        assertThat(names(new ItemSearchCond("q", null))).isEmpty();
+    }
+
+    /**
+     * "baab" 는 "aba" 의 조각(ab, ba)을 모두 갖지만 "aba" 를 포함하지 않는다. contains 로 다시 확인해 걸러낸다.
+     */
+    @Test
+    void candidatesAreRechecked() {
+        itemRepository.save(new Item("baab", 1000, 1));
+        itemRepository.save(new Item("aba1", 2000, 1));
+
+        assertThat(names(new ItemSearchCond("aba", null))).containsExactly("aba1");
+        assertThat(names(new ItemSearchCond("ab", null))).containsExactly("baab", "aba1");
+        assertThat(names(new ItemSearchCond("ab", 1000))).containsExactly("baab");
+    }
+
+    /**
+     * 저장소는 복사본을 보관하고 돌려준다. 호출자가 Item 을 수정해도 저장된 값과 인덱스가 그대로여야 한다.
+     */
+    @Test
+    void callerChangesDoNotReachStore() {
+        Item saved = itemRepository.save(new Item("itemA", 10000, 10));
+        saved.setPrice(1);
+        saved.setItemName("changed");
+
+        itemRepository.findById(saved.getId()).orElseThrow().setPrice(2);
+        itemRepository.findAll(new ItemSearchCond("itemA", null)).get(0).setItemName("changed");
+        itemRepository.findAll(new ItemSearchCond(null, 10000)).get(0).setPrice(50000);
+
+        assertThat(itemRepository.findById(saved.getId()).orElseThrow().getPrice()).isEqualTo(10000);
+        assertThat(itemRepository.findAll(new ItemSearchCond(null, 5000))).isEmpty();
+        assertThat(itemRepository.findAll(new ItemSearchCond(null, 10000))).extracting(Item::getItemName)
+                .containsExactly("itemA");
+        assertThat(itemRepository.findAll(new ItemSearchCond("changed", null))).isEmpty();
+        assertThat(itemRepository.findAll(new ItemSearchCond("itemA", null))).extracting(Item::getPrice)
+                .containsExactly(10000);
+    }
+
+    @Test
+    void findByMaxPriceDuringPriceChanges() throws Exception {
+        //given
+        List<Long> itemIds = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            itemIds.add(itemRepository.save(new Item("item" + i, i * 10, 1)).getId());
+        }
+
+        //when: 한 스레드는 가격을 조건 안팎으로 계속 바꾸고, 다른 스레드들은 maxPrice 로 조회한다.
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?> writer = executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    Long itemId = itemIds.get(random.nextInt(ITEMS));
+                    itemRepository.update(itemId, new ItemUpdateDto("item", random.nextInt(MAX_PRICE * 2), 1));
+                }
+            });
+            List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                readers.add(executor.submit(() -> {
+                    for (int round = 0; round < 2000; round++) {
+                        List<Item> result = itemRepository.findAll(new ItemSearchCond(null, MAX_PRICE));
+
+                        //then
+                        assertThat(result).extracting(Item::getId).doesNotHaveDuplicates();
+                        assertThat(result).allMatch(item -> item.getPrice() <= MAX_PRICE);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> reader : readers) {
+                reader.get(30, TimeUnit.SECONDS);
+            }
+            running.set(false);
+            writer.get(5, TimeUnit.SECONDS);
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+
+        //쓰기가 끝난 뒤에는 조건에 맞는 상품이 모두 나온다.
+        long expected = itemIds.stream()
+                .filter(itemId -> itemRepository.findById(itemId).get().getPrice() <= MAX_PRICE)
+                .count();
+        assertThat(itemRepository.findAll(new ItemSearchCond(null, MAX_PRICE))).hasSize((int) expected);
+    }
+
+    /**
+     * 발급기가 id 를 1,000,000 간격으로 발급해도 빈 구간을 따라가지 않고 바로 다음 상품을 찾는다.
+     */
+    @Test
+    void findPageWithSparseIds() {
+        AtomicLong lastId = new AtomicLong();
+        ItemIdAllocator sparse = () -> lastId.addAndGet(1_000_000);
+        MemoryItemRepository sparseRepository = new MemoryItemRepository(null, sparse);
+        List<Long> itemIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            itemIds.add(sparseRepository.save(new Item("item" + i, 1000, 1)).getId());
+        }
+
+        assertThat(page(sparseRepository, null, null, 2)).containsExactly(itemIds.get(0), itemIds.get(1));
+        assertThat(page(sparseRepository, itemIds.get(1), null, 2)).containsExactly(itemIds.get(2), itemIds.get(3));
+        assertThat(page(sparseRepository, itemIds.get(3), null, 2)).containsExactly(itemIds.get(4));
+        assertThat(page(sparseRepository, null, itemIds.get(4), 3))
+                .containsExactly(itemIds.get(1), itemIds.get(2), itemIds.get(3));
+        assertThat(page(sparseRepository, itemIds.get(0), itemIds.get(3), null))
+                .containsExactly(itemIds.get(1), itemIds.get(2));
+        assertThat(page(sparseRepository, Long.MAX_VALUE, null, 2)).isEmpty();
+    }
+
+    /**
+     * streamAll 도 findAll 과 같은 한 페이지를 돌려준다.
+     */
+    @Test
+    void streamAllAppliesKeysetPaging() {
+        List<Long> itemIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            itemIds.add(itemRepository.save(new Item("item" + i, (i + 1) * 1000, 1)).getId());
+        }
+        VersionedMemoryItemRepository versioned = new VersionedMemoryItemRepository();
+        for (int i = 0; i < 5; i++) {
+            versioned.save(new Item("item" + i, (i + 1) * 1000, 1));
+        }
+
+        ItemSearchCond cond = new ItemSearchCond(null, 4000);
+        cond.setAfterId(itemIds.get(0));
+        cond.setSize(2);
+        for (ItemRepository repository : List.of(itemRepository, versioned)) {
+            try (Stream<Item> stream = repository.streamAll(cond)) {
+                assertThat(stream.map(Item::getItemName).collect(Collectors.toList())).containsExactly("item1", "item2");
+            }
+        }
+        cond.setAfterId(null);
+        cond.setBeforeId(itemIds.get(4));
+        try (Stream<Item> stream = itemRepository.streamAll(cond)) {
+            assertThat(stream.map(Item::getId).collect(Collectors.toList())).containsExactly(itemIds.get(2), itemIds.get(3));
+        }
+    }
+
+    @Test
+    void findPageAfterClear() {
+        itemRepository.save(new Item("itemA", 10000, 10));
+        itemRepository.clearStore();
+        Item item = itemRepository.save(new Item("itemB", 20000, 20));
+
+        assertThat(page(itemRepository, 0L, null, 10)).containsExactly(item.getId());
+    }
+
+    private List<String> names(ItemSearchCond cond) {
+        List<String> result = new ArrayList<>();
+        itemRepository.findAll(cond).forEach(item -> result.add(item.getItemName()));
+        return result;
+    }
+
+    private List<Long> page(MemoryItemRepository repository, Long afterId, Long beforeId, Integer size) {
+        ItemSearchCond cond = new ItemSearchCond();
+        cond.setAfterId(afterId);
+        cond.setBeforeId(beforeId);
+        cond.setSize(size);
+        List<Long> result = new ArrayList<>();
+        repository.findAll(cond).forEach(item -> result.add(item.getId()));
+        return result;
+    }
+}
@@ -0,0 +1,91 @@
+package hello.itemservice.repository.memory;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 저장된 버전은 여러 스냅샷이 함께 읽으므로, 조회 결과를 수정해도 저장소에 영향이 없어야 한다.
+ */
+class VersionedMemoryItemRepositoryTest {
+
+    VersionedMemoryItemRepository itemRepository = new VersionedMemoryItemRepository();
+
+    @Test
+    void returnsCopies() {
+        Item saved = itemRepository.save(new Item("itemA", 10000, 10));
+        saved.setPrice(1);
+
+        itemRepository.findById(saved.getId()).orElseThrow().setPrice(2);
+        itemRepository.findAllById(List.of(saved.getId())).get(0).setPrice(3);
+        itemRepository.findAll(new ItemSearchCond()).get(0).setPrice(4);
+        try (Stream<Item> stream = itemRepository.streamAll(new ItemSearchCond())) {
+            stream.forEach(item -> item.setPrice(5));
+        }
+
+        assertThat(itemRepository.findById(saved.getId()).orElseThrow().getPrice()).isEqualTo(10000);
+        assertThat(itemRepository.findAll(new ItemSearchCond(null, 5000))).isEmpty();
+    }
+
+    /**
+     * 쓰는 스레드는 상품 A, B 의 순서로 같은 값(n)을 쓴다. 읽는 스레드는 조회한 Item 을 망가뜨린다.
+     * : findAll 스냅샷에서 B 가 A 보다 앞선 값을 보면 안 된다. (일관된 스냅샷)
+     * : 망가뜨린 값(-1)이 다른 조회에 보이면 안 된다. (복사본)
+     */
+    @Test
+    void concurrentReadsDuringUpdates() throws Exception {
+        Long itemA = itemRepository.save(new Item("itemA", 0, 0)).getId();
+        Long itemB = itemRepository.save(new Item("itemB", 0, 0)).getId();
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (int n = 1; running.get(); n++) {
+                    itemRepository.update(itemA, new ItemUpdateDto("itemA", n, n));
+                    itemRepository.update(itemB, new ItemUpdateDto("itemB", n, n));
+                }
+            });
+            List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                readers.add(executor.submit(() -> {
+                    for (int round = 0; round < 5000; round++) {
+                        List<Item> snapshot = itemRepository.findAll(new ItemSearchCond());
+                        assertThat(snapshot).extracting(Item::getPrice).allMatch(price -> price >= 0);
+                        assertThat(snapshot.get(1).getPrice()).isLessThanOrEqualTo(snapshot.get(0).getPrice());
+                        snapshot.forEach(item -> item.setPrice(-1));
+
+                        Item found = itemRepository.findById(itemB).orElseThrow();
+                        assertThat(found.getPrice()).isEqualTo(found.getQuantity());
+                        found.setPrice(-1);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> reader : readers) {
+                reader.get(30, TimeUnit.SECONDS);
+            }
+            running.set(false);
+            writer.get(5, TimeUnit.SECONDS);
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+
+        assertThat(itemRepository.findAll(new ItemSearchCond()).stream().map(Item::getPrice).collect(Collectors.toList()))
+                .allMatch(price -> price > 0);
+    }
+}
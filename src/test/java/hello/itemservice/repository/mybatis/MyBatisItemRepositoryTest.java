@@ -0,0 +1,51 @@
+package hello.itemservice.repository.mybatis;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 같은 트랜잭션에서 일반(SIMPLE) 매퍼와 saveAll, updateAll 의 배치 세션을 섞어서 사용한다.
+ * : ExecutorType 충돌 예외가 없어야 하고, 배치로 보낸 변경을 이어지는 조회가 봐야 한다.
+ */
+@Transactional
+@SpringBootTest
+class MyBatisItemRepositoryTest {
+
+    @Autowired
+    ItemMapper itemMapper;
+
+    @Autowired
+    SqlSessionTemplate sqlSessionTemplate;
+
+    @Test
+    void batchWritesInsideTransaction() {
+        MyBatisItemRepository itemRepository = new MyBatisItemRepository(itemMapper, sqlSessionTemplate);
+
+        //given: 일반 세션으로 저장, 조회 (1차 캐시에 남는다)
+        Item item = itemRepository.save(new Item("itemA", 10000, 10));
+        assertThat(itemRepository.findById(item.getId()).get().getItemName()).isEqualTo("itemA");
+
+        //when
+        List<Item> saved = itemRepository.saveAll(List.of(new Item("itemB", 20000, 20), new Item("itemC", 30000, 30)));
+        itemRepository.updateAll(Map.of(
+                item.getId(), new ItemUpdateDto("itemA2", 11000, 11),
+                saved.get(0).getId(), new ItemUpdateDto("itemB2", 22000, 22)));
+
+        //then
+        assertThat(saved).extracting(Item::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(itemRepository.findById(item.getId()).get().getItemName()).isEqualTo("itemA2");
+        assertThat(itemRepository.findAllById(List.of(item.getId(), saved.get(0).getId(), saved.get(1).getId())))
+                .extracting(Item::getItemName)
+                .containsExactlyInAnyOrder("itemA2", "itemB2", "itemC");
+    }
+}
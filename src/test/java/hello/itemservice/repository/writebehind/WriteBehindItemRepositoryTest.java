@@ -0,0 +1,166 @@
+package hello.itemservice.repository.writebehind;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * flush 주기를 길게 두고 flush() 를 직접 호출한다.
+ */
+class WriteBehindItemRepositoryTest {
+
+    /**
+     * adjustQuantity 실패, update 지연을 흉내 내는 저장소
+     */
+    static class FaultyItemRepository extends MemoryItemRepository {
+        final AtomicInteger adjustCalls = new AtomicInteger();
+        volatile boolean failAdjust;
+        volatile CountDownLatch updateEntered = new CountDownLatch(1);
+        volatile CountDownLatch updateGate = new CountDownLatch(0);
+
+        @Override
+        public boolean adjustQuantity(Long itemId, int delta) {
+            adjustCalls.incrementAndGet();
+            if (failAdjust) {
+                throw new IllegalStateException("db down");
+            }
+            return super.adjustQuantity(itemId, delta);
+        }
+
+        @Override
+        public void update(Long itemId, ItemUpdateDto updateParam) {
+            updateEntered.countDown();
+            try {
+                updateGate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.update(itemId, updateParam);
+        }
+    }
+
+    FaultyItemRepository delegate = new FaultyItemRepository();
+    WriteBehindItemRepository itemRepository = new WriteBehindItemRepository(delegate, Duration.ofHours(1));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void afterEach() {
+        executor.shutdownNow();
+        delegate.failAdjust = false;
+        itemRepository.close();
+    }
+
+    @Test
+    void adjustIsDeferredUntilFlush() {
+        Long itemId = delegate.save(new Item("itemA", 10000, 10)).getId();
+
+        assertThat(itemRepository.reserve(itemId, 3)).isTrue();
+        assertThat(itemRepository.reserve(itemId, 3)).isTrue();
+        assertThat(itemRepository.reserve(itemId, 5)).isFalse();//보이는 수량 4
+
+        assertThat(delegate.findById(itemId).orElseThrow().getQuantity()).isEqualTo(10);
+        assertThat(itemRepository.findById(itemId).orElseThrow().getQuantity()).isEqualTo(4);
+
+        itemRepository.flush();
+        assertThat(delegate.findById(itemId).orElseThrow().getQuantity()).isEqualTo(4);
+        assertThat(delegate.adjustCalls.get()).isEqualTo(1);//두 번의 차감이 한 번으로 합쳐졌다.
+    }
+
+    @Test
+    void updateFlushesPendingDeltaAndReloads() {
+        Long itemId = delegate.save(new Item("itemA", 10000, 10)).getId();
+        itemRepository.adjustQuantity(itemId, -4);
+
+        itemRepository.update(itemId, new ItemUpdateDto("itemB", 20000, 100));
+        assertThat(delegate.adjustCalls.get()).isEqualTo(1);//update 전에 -4 를 반영했다.
+
+        itemRepository.adjustQuantity(itemId, -1);
+        assertThat(itemRepository.findById(itemId).orElseThrow().getQuantity()).isEqualTo(99);
+
+        itemRepository.updateAll(Map.of(itemId, new ItemUpdateDto("itemC", 30000, 50)));
+        assertThat(itemRepository.findById(itemId).orElseThrow().getQuantity()).isEqualTo(50);
+    }
+
+    /**
+     * 폐기 중 저장소 반영이 실패하면 카운터가 되살아나고, 이후의 변경이 멈추지 않는다.
+     */
+    @Test
+    void failedRetireRestoresCounter() {
+        Long itemId = delegate.save(new Item("itemA", 10000, 10)).getId();
+        itemRepository.adjustQuantity(itemId, -4);
+
+        delegate.failAdjust = true;
+        assertThatThrownBy(() -> itemRepository.update(itemId, new ItemUpdateDto("itemB", 20000, 100)))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(delegate.findById(itemId).orElseThrow().getItemName()).isEqualTo("itemA");//update 는 실행되지 않았다.
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> itemRepository.adjustQuantity(itemId, -1));
+        assertThat(itemRepository.findById(itemId).orElseThrow().getQuantity()).isEqualTo(5);
+
+        //flush 실패는 카운터를 남겨 두고, 저장소가 돌아오면 반영된다.
+        itemRepository.flush();
+        delegate.failAdjust = false;
+        itemRepository.flush();
+        assertThat(delegate.findById(itemId).orElseThrow().getQuantity()).isEqualTo(5);
+    }
+
+    /**
+     * update 가 진행되는 동안 들어온 adjustQuantity 는 update 가 끝날 때까지 기다렸다가 수정된 수량에 반영된다.
+     */
+    @Test
+    void adjustWaitsForUpdate() throws Exception {
+        Long itemId = delegate.save(new Item("itemA", 10000, 10)).getId();
+        itemRepository.adjustQuantity(itemId, -1);
+        delegate.updateGate = new CountDownLatch(1);
+
+        Future<?> update = executor.submit(() -> itemRepository.update(itemId, new ItemUpdateDto("itemA", 10000, 100)));
+        assertThat(delegate.updateEntered.await(5, TimeUnit.SECONDS)).isTrue();//카운터를 폐기하고 저장소를 수정하는 중
+
+        Thread adjuster = new Thread(() -> itemRepository.adjustQuantity(itemId, -1));
+        adjuster.start();
+        waitUntil(() -> adjuster.getState() == Thread.State.WAITING || adjuster.getState() == Thread.State.TIMED_WAITING);
+
+        delegate.updateGate.countDown();
+        update.get(5, TimeUnit.SECONDS);
+        adjuster.join(5000);
+
+        assertThat(adjuster.isAlive()).isFalse();
+        assertThat(itemRepository.findById(itemId).orElseThrow().getQuantity()).isEqualTo(99);
+    }
+
+    @Test
+    void closeDrainsPendingDeltas() {
+        Long itemId = delegate.save(new Item("itemA", 10000, 10)).getId();
+        itemRepository.adjustQuantity(itemId, -4);
+
+        itemRepository.close();
+
+        assertThat(delegate.findById(itemId).orElseThrow().getQuantity()).isEqualTo(6);
+        assertThat(itemRepository.adjustQuantity(itemId, -1)).isTrue();//close 이후에는 저장소로 바로 전달한다.
+        assertThat(delegate.findById(itemId).orElseThrow().getQuantity()).isEqualTo(5);
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package hello.itemservice.service;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.cache.ItemCache;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingItemServiceTest {
+
+    MemoryItemRepository itemRepository = new MemoryItemRepository();
+    ItemCache cache = new ItemCache(16, Duration.ofMinutes(5));
+    CachingItemService itemService = new CachingItemService(new ItemServiceV1(itemRepository), cache);
+
+    @Test
+    void readThroughAndInvalidate() {
+        Item item = itemService.save(new Item("itemA", 10000, 10));
+
+        itemService.findById(item.getId());
+        itemService.findById(item.getId());
+        assertThat(cache.missCount()).isEqualTo(1);
+        assertThat(cache.hitCount()).isEqualTo(1);
+
+        //반환된 인스턴스를 수정해도 캐시에 영향이 없다.
+        itemService.findById(item.getId()).orElseThrow().setPrice(1);
+        assertThat(itemService.findById(item.getId()).orElseThrow().getPrice()).isEqualTo(10000);
+
+        itemService.update(item.getId(), new ItemUpdateDto("itemB", 20000, 20));
+        assertThat(itemService.findById(item.getId()).orElseThrow().getItemName()).isEqualTo("itemB");
+
+        itemService.reserve(item.getId(), 5);
+        assertThat(itemService.findById(item.getId()).orElseThrow().getQuantity()).isEqualTo(15);
+    }
+
+    /**
+     * 한 번씩만 조회하는 상품이 많아도, 반복해서 조회한 상품은 protected 구간에 남는다.
+     * : 기본 설정에 가까운 크기로 확인한다. 모든 stripe 에 hot 상품과 일회성 조회가 함께 들어간다.
+     */
+    @Test
+    void scanDoesNotEvictHotItems() {
+        ItemCache cache = new ItemCache(1000, Duration.ofMinutes(5));
+        CachingItemService itemService = new CachingItemService(new ItemServiceV1(itemRepository), cache);
+
+        List<Long> hotIds = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Long hotId = itemService.save(new Item("hot", 10000, 10)).getId();
+            itemService.findById(hotId);
+            itemService.findById(hotId);
+            hotIds.add(hotId);
+        }
+
+        for (int i = 0; i < 10000; i++) {
+            itemService.findById(itemService.save(new Item("cold", 1000, 1)).getId());
+        }
+
+        long hits = cache.hitCount();
+        hotIds.forEach(itemService::findById);
+        assertThat(cache.hitCount()).isEqualTo(hits + hotIds.size());
+        assertThat(cache.evictionCount()).isGreaterThan(0);
+        assertThat(cache.size()).isLessThanOrEqualTo(1000);
+    }
+
+    /**
+     * maxSize 가 작으면 stripe 수를 줄여서 stripe 마다 probation, protected 구간을 둘 수 있게 한다.
+     */
+    @Test
+    void smallCacheKeepsHotItem() {
+        Item hot = itemService.save(new Item("hot", 10000, 10));
+        itemService.findById(hot.getId());
+        itemService.findById(hot.getId());
+
+        for (int i = 0; i < 1000; i++) {
+            itemService.findById(itemService.save(new Item("cold", 1000, 1)).getId());
+        }
+
+        long hits = cache.hitCount();
+        itemService.findById(hot.getId());
+        assertThat(cache.hitCount()).isEqualTo(hits + 1);
+        assertThat(cache.size()).isEqualTo(16);
+    }
+}
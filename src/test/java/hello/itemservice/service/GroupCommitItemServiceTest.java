@@ -0,0 +1,156 @@
+package hello.itemservice.service;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.jdbctemplate.JdbcTemplateItemRepositoryV3;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 그룹 커밋: 여러 요청의 등록이 적은 수의 트랜잭션으로 묶이는지, 실패한 상품만 예외를 받는지 확인한다.
+ * : DB 는 테스트용 schema.sql 로 만든 스프링 부트의 DataSource 를 사용한다. 쓰기 스레드가 커밋하므로 테스트가 끝나면 행을 지운다.
+ * : 커밋 횟수를 세기 위해 같은 DataSource 로 트랜잭션 매니저를 따로 만든다.
+ */
+@Slf4j
+@SpringBootTest
+class GroupCommitItemServiceTest {
+
+    @Autowired
+    DataSource dataSource;
+
+    JdbcTemplate template;
+    AtomicInteger commits = new AtomicInteger();
+    DataSourceTransactionManager transactionManager;
+    volatile Runnable beforeSaveAll = () -> {
+    };
+    GroupCommitItemService itemService;
+
+    @BeforeEach
+    void setUp() {
+        template = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource) {
+            @Override
+            protected void doCommit(DefaultTransactionStatus status) {
+                commits.incrementAndGet();
+                super.doCommit(status);
+            }
+        };
+        JdbcTemplateItemRepositoryV3 itemRepository = new JdbcTemplateItemRepositoryV3(dataSource) {
+            @Override
+            public List<Item> saveAll(List<Item> items) {
+                beforeSaveAll.run();
+                return super.saveAll(items);
+            }
+        };
+        itemService = new GroupCommitItemService(new ItemServiceV1(itemRepository), itemRepository, transactionManager,
+                1024, 256, Duration.ofSeconds(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        itemService.close();
+        template.update("delete from item");
+    }
+
+    @Test
+    void batchesConcurrentSaves() {
+        int count = 2000;
+        List<CompletableFuture<Item>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(itemService.saveAsync(new Item("item" + i, 1000, 10)));
+        }
+
+        Set<Long> ids = new HashSet<>();
+        for (CompletableFuture<Item> future : futures) {
+            ids.add(future.join().getId());
+        }
+        log.info("saves={}, commits={}", count, commits.get());
+
+        assertThat(ids).hasSize(count).doesNotContainNull();
+        assertThat(template.queryForObject("select count(*) from item", Integer.class)).isEqualTo(count);
+        assertThat(commits.get()).isLessThan(count);
+    }
+
+    @Test
+    void failedItemDoesNotFailBatch() {
+        CompletableFuture<Item> ok1 = itemService.saveAsync(new Item("ok1", 1000, 10));
+        CompletableFuture<Item> bad = itemService.saveAsync(new Item("too long item name", 1000, 10));//varchar(10) 초과
+        CompletableFuture<Item> ok2 = itemService.saveAsync(new Item("ok2", 1000, 10));
+
+        assertThat(ok1.join().getId()).isNotNull();
+        assertThat(ok2.join().getId()).isNotNull();
+        assertThatThrownBy(bad::join).hasCauseInstanceOf(DataAccessException.class);
+        assertThat(template.queryForObject("select count(*) from item", Integer.class)).isEqualTo(2);
+    }
+
+    @Test
+    void saveIsNotRolledBackWithCallerTransaction() {
+        TransactionTemplate callerTransaction = new TransactionTemplate(transactionManager);
+        callerTransaction.executeWithoutResult(status -> {
+            itemService.save(new Item("itemA", 1000, 10));
+            status.setRollbackOnly();
+        });
+
+        //상품은 쓰기 스레드의 트랜잭션에서 이미 커밋되었다.
+        assertThat(template.queryForObject("select count(*) from item", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void saveTimesOutWhenWriterIsSlow() {
+        CountDownLatch release = new CountDownLatch(1);
+        beforeSaveAll = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        assertThatThrownBy(() -> itemService.save(new Item("itemA", 1000, 10)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+        release.countDown();
+        itemService.close();
+        //timeout 은 저장 실패가 아니다. 쓰기 스레드가 풀리면 저장된다.
+        assertThat(template.queryForObject("select count(*) from item", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void writerErrorFailsPendingAndRejectsNewSaves() {
+        beforeSaveAll = () -> {
+            throw new StackOverflowError("writer failure");
+        };
+
+        CompletableFuture<Item> pending = itemService.saveAsync(new Item("itemA", 1000, 10));
+        assertThatThrownBy(pending::join).hasCauseInstanceOf(IllegalStateException.class);
+
+        beforeSaveAll = () -> {
+        };
+        assertThatThrownBy(() -> itemService.save(new Item("itemB", 1000, 10)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("writer stopped");
+        assertThat(template.queryForObject("select count(*) from item", Integer.class)).isZero();
+    }
+}
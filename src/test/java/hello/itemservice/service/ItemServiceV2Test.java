@@ -2,11 +2,14 @@ package hello.itemservice.service;
 
 import hello.itemservice.domain.Item;
 import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemSummary;
 import hello.itemservice.repository.ItemUpdateDto;
 import hello.itemservice.repository.v2.ItemQueryRepositoryV2;
 import hello.itemservice.repository.v2.ItemRepositoryV2;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SelfDirtinessTracker;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,8 +23,11 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.persistence.EntityManager;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 
 @Slf4j
@@ -32,6 +38,9 @@ class ItemServiceV2Test {
     @Autowired
     ItemServiceV2 itemService;
 
+    @Autowired
+    EntityManager em;
+
     @TestConfiguration
     @RequiredArgsConstructor
     static class V2TestConfig {
@@ -80,6 +89,52 @@ class ItemServiceV2Test {
         assertThat(findItem.getPrice()).isEqualTo(updateParam.getPrice());
         assertThat(findItem.getQuantity()).isEqualTo(updateParam.getQuantity());
     }
+    /**
+     * 벌크 update 후 수정한 상품만 detach 되므로, 다시 조회하면 수정된 값을 읽는다. 다른 엔티티는 영속 상태로 남는다.
+     * 없는 상품이면 예외가 발생한다.
+     */
+    @Test
+    void updateWithoutLoading() {
+        //given
+        Item savedItem = itemService.save(new Item("item1", 10000, 10));
+        Item otherItem = itemService.save(new Item("other", 10000, 10));
+
+        //when
+        itemService.update(savedItem.getId(), new ItemUpdateDto("item2", 20000, 30));
+
+        //then
+        Item findItem = itemService.findById(savedItem.getId()).get();
+        assertThat(findItem).isNotSameAs(savedItem);
+        assertThat(em.contains(savedItem)).isFalse();
+        assertThat(em.contains(otherItem)).isTrue();
+        assertThat(findItem.getPrice()).isEqualTo(20000);
+        assertThatThrownBy(() -> itemService.update(-1L, new ItemUpdateDto("item2", 20000, 30)))
+                .isInstanceOf(NoSuchElementException.class);
+    }
+
+    /**
+     * 바이트코드 향상(inline dirty tracking)
+     * : 값이 바뀐 필드만 변경 필드로 기록된다. (@DynamicUpdate 로 update SQL 에도 price 컬럼만 포함된다)
+     * : gradle 빌드로 향상된 클래스에서만 동작한다. IDE 가 직접 컴파일한 클래스(향상 전)로 실행하면 테스트를 건너뛴다.
+     */
+    @Test
+    void updateTracksOnlyChangedFields() {
+        //given
+        Item savedItem = itemService.save(new Item("item1", 10000, 10));
+        em.flush();
+        em.clear();
+
+        //when
+        Item findItem = em.find(Item.class, savedItem.getId());
+        findItem.setItemName("item1");
+        findItem.setPrice(20000);
+        findItem.setQuantity(10);
+
+        //then
+        assumeTrue(findItem instanceof SelfDirtinessTracker, "Item is not bytecode enhanced");
+        assertThat(((SelfDirtinessTracker) findItem).$$_hibernate_getDirtyAttributes()).containsExactly("price");
+    }
+
     /**
      * 검색키워드에 따른 아이템 목록 추출
      */
@@ -110,6 +165,28 @@ class ItemServiceV2Test {
         test("itemA", 10000, item1);
     }
 
+    /**
+     * 목록 화면용 DTO 조회는 엔티티 조회와 같은 결과를 반환하고, 영속성 컨텍스트에 엔티티를 남기지 않는다.
+     */
+    @Test
+    void findItemSummaries() {
+        //given
+        Item item1 = itemService.save(new Item("itemA-1", 10000, 10));
+        Item item2 = itemService.save(new Item("itemA-2", 20000, 20));
+        itemService.save(new Item("itemB-1", 30000, 30));
+        em.flush();
+        em.clear();
+
+        //when
+        ItemSearchCond cond = new ItemSearchCond("itemA", null);
+        cond.setSize(10);
+        List<ItemSummary> result = itemService.findItemSummaries(cond);
+
+        //then
+        assertThat(result).containsExactly(ItemSummary.of(item1), ItemSummary.of(item2));
+        assertThat(em.unwrap(Session.class).getStatistics().getEntityCount()).isZero();
+    }
+
     void test(String itemName, Integer maxPrice, Item... items) {
         List<Item> result = itemService.findItems(new ItemSearchCond(itemName, maxPrice));
         assertThat(result).containsExactly(items);
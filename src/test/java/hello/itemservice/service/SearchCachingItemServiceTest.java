@@ -0,0 +1,118 @@
+package hello.itemservice.service;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.cache.ItemSearchCache;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchCachingItemServiceTest {
+
+    MemoryItemRepository itemRepository = new MemoryItemRepository();
+    ItemSearchCache cache = new ItemSearchCache(1024 * 1024);
+    HookedItemService delegate = new HookedItemService(itemRepository);
+    SearchCachingItemService itemService = new SearchCachingItemService(delegate, cache);
+
+    @Test
+    void sameSearchIsServedFromCache() {
+        itemService.save(new Item("itemA", 10000, 10));
+
+        itemService.findItems(new ItemSearchCond("", null));
+        itemService.findItems(new ItemSearchCond(null, null));//빈 문자열과 null 은 같은 조건
+        assertThat(cache.missCount()).isEqualTo(1);
+        assertThat(cache.hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void writeInvalidatesOnlyAffectedPriceBuckets() {
+        Item cheap = itemService.save(new Item("cheap", 1000, 10));
+        Item expensive = itemService.save(new Item("expensive", 100000, 10));
+        ItemSearchCond cheapSearch = new ItemSearchCond(null, 2000);
+
+        assertThat(itemService.findItemSummaries(cheapSearch)).hasSize(1);
+        itemService.update(expensive.getId(), new ItemUpdateDto("expensive", 90000, 5));
+        assertThat(itemService.findItemSummaries(cheapSearch)).hasSize(1);
+        assertThat(cache.hitCount()).isEqualTo(1);//비싼 상품의 수정은 싼 가격대 검색에 영향이 없다.
+
+        //가격이 구간을 넘어가면 이전 구간과 새 구간 모두 무효화된다.
+        itemService.update(expensive.getId(), new ItemUpdateDto("expensive", 1500, 5));
+        assertThat(itemService.findItemSummaries(cheapSearch)).hasSize(2);
+        itemService.update(expensive.getId(), new ItemUpdateDto("expensive", 100000, 5));
+        assertThat(itemService.findItemSummaries(cheapSearch)).hasSize(1);
+
+        itemService.reserve(cheap.getId(), 3);
+        assertThat(itemService.findItemSummaries(cheapSearch).get(0).getQuantity()).isEqualTo(7);
+    }
+
+    @Test
+    void writeDoesNotReadBeforeState() {
+        Item itemA = itemService.save(new Item("itemA", 1000, 10));
+        itemService.findItems(new ItemSearchCond(null, null));
+
+        itemService.update(itemA.getId(), new ItemUpdateDto("itemA", 2000, 10));
+        itemService.adjustQuantity(itemA.getId(), 5);
+        itemService.reserve(itemA.getId(), 1);
+        assertThat(delegate.findByIdCount).isZero();
+
+        assertThat(itemService.findItems(new ItemSearchCond(null, null)).get(0).getQuantity()).isEqualTo(14);
+    }
+
+    @Test
+    void writeDuringLoadIsNotCached() {
+        Item itemA = itemService.save(new Item("itemA", 1000, 10));
+        ItemSearchCond search = new ItemSearchCond(null, 5000);
+
+        //조회한 뒤, 결과를 캐시에 저장하기 전에 같은 상품의 수량이 바뀐다.
+        delegate.afterFind = () -> itemService.reserve(itemA.getId(), 3);
+        assertThat(itemService.findItems(search).get(0).getQuantity()).isEqualTo(10);
+        delegate.afterFind = null;
+
+        assertThat(itemService.findItems(search).get(0).getQuantity()).isEqualTo(7);
+        assertThat(cache.hitCount()).isZero();
+    }
+
+    @Test
+    void evictsOverMemoryBudget() {
+        ItemSearchCache small = new ItemSearchCache(2048);
+        SearchCachingItemService service = new SearchCachingItemService(new ItemServiceV1(itemRepository), small);
+        for (int i = 0; i < 10; i++) {
+            service.save(new Item("item" + i, 1000, 1));
+        }
+        for (int i = 0; i < 10; i++) {
+            service.findItems(new ItemSearchCond("item" + i, null));
+        }
+        assertThat(small.weightedBytes()).isLessThanOrEqualTo(2048);
+        assertThat(small.evictionCount()).isGreaterThan(0);
+    }
+
+    static class HookedItemService extends ItemServiceV1 {
+
+        int findByIdCount;
+        Runnable afterFind;
+
+        HookedItemService(MemoryItemRepository itemRepository) {
+            super(itemRepository);
+        }
+
+        @Override
+        public Optional<Item> findById(Long id) {
+            findByIdCount++;
+            return super.findById(id);
+        }
+
+        @Override
+        public List<Item> findItems(ItemSearchCond cond) {
+            List<Item> result = super.findItems(cond);
+            if (afterFind != null) {
+                afterFind.run();
+            }
+            return result;
+        }
+    }
+}
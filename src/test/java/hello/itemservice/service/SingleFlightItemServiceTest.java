@@ -0,0 +1,184 @@
+package hello.itemservice.service;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightItemServiceTest {
+
+    static final int CALLERS = 8;
+
+    /**
+     * findById, findAll 이 release 될 때까지 멈추는 저장소
+     */
+    static class SlowItemRepository extends MemoryItemRepository {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch entered = new CountDownLatch(1);
+        volatile CountDownLatch release = new CountDownLatch(0);
+
+        @Override
+        public Optional<Item> findById(Long id) {
+            block();
+            return super.findById(id);
+        }
+
+        @Override
+        public List<Item> findAll(ItemSearchCond cond) {
+            block();
+            return super.findAll(cond);
+        }
+
+        private void block() {
+            calls.incrementAndGet();
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    SlowItemRepository itemRepository = new SlowItemRepository();
+    ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+    @AfterEach
+    void afterEach() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallsShareOneExecution() throws Exception {
+        SingleFlightItemService itemService = new SingleFlightItemService(new ItemServiceV1(itemRepository), Duration.ofSeconds(5));
+        Item item = itemService.save(new Item("hot", 10000, 10));
+        itemRepository.release = new CountDownLatch(1);
+
+        List<Future<Optional<Item>>> futures = new ArrayList<>();
+        futures.add(executor.submit(() -> itemService.findById(item.getId())));
+        assertThat(itemRepository.entered.await(5, TimeUnit.SECONDS)).isTrue();//리더가 저장소 조회 중
+        for (int i = 1; i < CALLERS; i++) {
+            futures.add(executor.submit(() -> itemService.findById(item.getId())));
+        }
+        waitUntil(() -> itemService.sharedCount() == CALLERS - 1);//나머지가 모두 리더의 flight 를 기다리는 중
+        itemRepository.release.countDown();
+
+        List<Item> results = new ArrayList<>();
+        for (Future<Optional<Item>> future : futures) {
+            results.add(future.get(5, TimeUnit.SECONDS).orElseThrow());
+        }
+        assertThat(itemRepository.calls.get()).isEqualTo(1);
+        assertThat(itemService.executionCount()).isEqualTo(1);
+        assertThat(itemService.sharedCount()).isEqualTo(CALLERS - 1);
+        //기다린 요청은 각자의 복사본을 받는다.
+        assertThat(results).extracting(Item::getItemName).containsOnly("hot");
+        Set<Item> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+        instances.addAll(results);
+        assertThat(instances).hasSize(CALLERS);
+    }
+
+    @Test
+    void callAfterWriteDoesNotJoinOlderFlight() throws Exception {
+        SingleFlightItemService itemService = new SingleFlightItemService(new ItemServiceV1(itemRepository), Duration.ofSeconds(5));
+        Item item = itemService.save(new Item("itemA", 10000, 10));
+        itemRepository.release = new CountDownLatch(1);
+
+        Future<Optional<Item>> before = executor.submit(() -> itemService.findById(item.getId()));
+        assertThat(itemRepository.entered.await(5, TimeUnit.SECONDS)).isTrue();
+        itemService.update(item.getId(), new ItemUpdateDto("itemB", 20000, 20));
+
+        //쓰기 이후의 조회는 새로 실행한다.
+        Future<Optional<Item>> after = executor.submit(() -> itemService.findById(item.getId()));
+        waitUntil(() -> itemRepository.calls.get() == 2);
+        itemRepository.release.countDown();
+
+        assertThat(after.get(5, TimeUnit.SECONDS).orElseThrow().getItemName()).isEqualTo("itemB");
+        before.get(5, TimeUnit.SECONDS);
+        assertThat(itemService.executionCount()).isEqualTo(2);
+    }
+
+    @Test
+    void writeToOtherItemDoesNotPreventJoining() throws Exception {
+        SingleFlightItemService itemService = new SingleFlightItemService(new ItemServiceV1(itemRepository), Duration.ofSeconds(5));
+        Item item = itemService.save(new Item("itemA", 10000, 10));
+        Item other = itemService.save(new Item("itemB", 10000, 10));
+        itemRepository.release = new CountDownLatch(1);
+
+        Future<Optional<Item>> leader = executor.submit(() -> itemService.findById(item.getId()));
+        assertThat(itemRepository.entered.await(5, TimeUnit.SECONDS)).isTrue();
+        itemService.update(other.getId(), new ItemUpdateDto("itemB", 20000, 20));
+        itemService.reserve(other.getId(), 1);
+
+        Future<Optional<Item>> follower = executor.submit(() -> itemService.findById(item.getId()));
+        waitUntil(() -> itemService.sharedCount() == 1);
+        itemRepository.release.countDown();
+
+        assertThat(follower.get(5, TimeUnit.SECONDS)).isPresent();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isPresent();
+        assertThat(itemRepository.calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void searchAfterWriteToResultItemIsCalledAgain() throws Exception {
+        SingleFlightItemService itemService = new SingleFlightItemService(new ItemServiceV1(itemRepository), Duration.ofSeconds(5));
+        Item item = itemService.save(new Item("itemA", 1000, 10));
+        ItemSearchCond search = new ItemSearchCond(null, 5000);
+        itemRepository.release = new CountDownLatch(1);
+
+        Future<List<Item>> before = executor.submit(() -> itemService.findItems(search));
+        assertThat(itemRepository.entered.await(5, TimeUnit.SECONDS)).isTrue();
+        itemService.reserve(item.getId(), 3);//가격이 그대로이므로 합류는 하지만, 결과에 든 상품이 바뀌었다.
+
+        Future<List<Item>> after = executor.submit(() -> itemService.findItems(search));
+        waitUntil(() -> itemService.sharedCount() == 1);
+        itemRepository.release.countDown();
+
+        assertThat(after.get(5, TimeUnit.SECONDS)).extracting(Item::getQuantity).containsExactly(7);
+        before.get(5, TimeUnit.SECONDS);
+        assertThat(itemRepository.calls.get()).isEqualTo(2);//합류했지만 리더의 결과를 버리고 직접 조회했다.
+    }
+
+    @Test
+    void timeoutFallsBackToDirectCall() throws Exception {
+        SingleFlightItemService itemService = new SingleFlightItemService(new ItemServiceV1(itemRepository), Duration.ofMillis(50));
+        Item item = itemService.save(new Item("itemA", 10000, 10));
+        itemRepository.release = new CountDownLatch(1);
+
+        Future<Optional<Item>> leader = executor.submit(() -> itemService.findById(item.getId()));
+        assertThat(itemRepository.entered.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<Optional<Item>> follower = executor.submit(() -> itemService.findById(item.getId()));
+        waitUntil(() -> itemService.timeoutCount() == 1);
+        itemRepository.release.countDown();
+
+        assertThat(follower.get(5, TimeUnit.SECONDS)).isPresent();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isPresent();
+        assertThat(itemRepository.calls.get()).isEqualTo(2);
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}
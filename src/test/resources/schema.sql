@@ -1,4 +1,6 @@
 drop table if exists item CASCADE;
+drop sequence if exists item_seq;
+create sequence item_seq start with 1 increment by 50;
 create table item
 (
     id bigint generated by default as identity,
@@ -8,6 +10,23 @@ create table item
     primary key (id)
 );
 
+drop table if exists item_ngram CASCADE;
+create table item_ngram
+(
+    gram varchar(2),
+    item_id bigint,
+    primary key (gram, item_id)
+);
+create index item_ngram_item_id on item_ngram (item_id);
+
+drop table if exists id_block CASCADE;
+create table id_block
+(
+    name varchar(30),
+    next_val bigint not null,
+    primary key (name)
+);
+
 /**
 - 스프링 부트 - 기본 SQL 스크립트를 사용해서 데이터베이스를 초기화하는 기능
 : 메모리 DB는 애플리케이션이 종료될 때 함께 사라지기 때문에, 애플리케이션 실행 시점에 데이터베이스 테이블도 새로 만들어주어야 한다.